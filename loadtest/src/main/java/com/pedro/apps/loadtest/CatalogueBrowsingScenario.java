@@ -0,0 +1,64 @@
+package com.pedro.apps.loadtest;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+// Users looking for a car: searches, delegation listings, quotes and car details, with the occasional full catalogue load.
+// Quotes are for pickups in the next few weeks.
+final class CatalogueBrowsingScenario implements Scenario {
+  
+  private static final String[] MAKES = {"Seat", "Renault", "Toyota", "Volkswagen", "Peugeot", "Ford", "Kia", "Tesla"};
+  private static final int MAX_DAYS_AHEAD = 21;
+  private static final int MAX_RENTAL_DAYS = 7;
+  
+  private final EndpointClient client;
+  private final Fleet fleet;
+  private final LocalDate today;
+  
+  CatalogueBrowsingScenario(EndpointClient client, Fleet fleet) {
+	this.client = client;
+	this.fleet = fleet;
+	this.today = LocalDate.now();
+  }
+  
+  @Override
+  public String name() {
+	return "browse";
+  }
+  
+  @Override
+  public Action next(RandomGenerator random) {
+	int pick = random.nextInt(100);
+	String delegationId = fleet.delegationIds().get(random.nextInt(fleet.delegationIds().size()));
+	if (pick < 30) {
+	  Map<String, Object> query = new HashMap<>();
+	  query.put("make", MAKES[random.nextInt(MAKES.length)]);
+	  query.put("maxPrice", 60 + random.nextInt(100));
+	  query.put("rented", false);
+	  query.put("sortBy", "price");
+	  query.put("descending", false);
+	  query.put("limit", 20);
+	  return new Action("searchCars", () -> client.call("DelegationEndpoint", "searchCars", Map.of("query", query)));
+	}
+	if (pick < 55) {
+	  return new Action("listCarsById", () -> client.call("DelegationEndpoint", "listCarsById", Map.of("carId", delegationId)));
+	}
+	if (pick < 75) {
+	  String deliverId = random.nextInt(4) == 0 ? fleet.delegationIds().get(random.nextInt(fleet.delegationIds().size())) : delegationId;
+	  LocalDate start = today.plusDays(1 + random.nextInt(MAX_DAYS_AHEAD));
+	  String startDate = start.toString();
+	  String endDate = start.plusDays(1 + random.nextInt(MAX_RENTAL_DAYS)).toString();
+	  return new Action("quoteCars", () -> client.call("DelegationEndpoint", "quoteCars",
+		  Map.of("pickUpDelegationId", delegationId, "deliverDelegationId", deliverId, "startDate", startDate, "endDate", endDate)));
+	}
+	if (pick < 90) {
+	  Fleet.CarRef car = fleet.cars().get(random.nextInt(fleet.cars().size()));
+	  return new Action("getCar", () -> client.call("DelegationEndpoint", "getCar",
+		  Map.of("carId", car.delegationId(), "operation", car.operation())));
+	}
+	return new Action("getAllCars", () -> client.call("DelegationEndpoint", "getAllCars", Map.of()));
+  }
+  
+}
@@ -0,0 +1,67 @@
+package com.pedro.apps.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+// Calls Hilla endpoint methods the way the browser client does: POST /connect/{Endpoint}/{method}
+// with the parameters as a JSON object keyed by parameter name.
+final class EndpointClient {
+  
+  private final URI baseUri;
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final CookieManager cookies = new CookieManager();
+  private final HttpClient http;
+  private final Duration timeout;
+  private volatile String csrfToken;
+  
+  EndpointClient(URI baseUri, Duration timeout) {
+	this.baseUri = baseUri;
+	this.timeout = timeout;
+	this.http = HttpClient.newBuilder()
+		.cookieHandler(cookies)
+		.connectTimeout(Duration.ofSeconds(5))
+		.build();
+  }
+  
+  // Loads the index page once to pick up the session and, when Spring Security is enabled, the CSRF cookie
+  void connect() throws IOException, InterruptedException {
+	HttpResponse<Void> response = http.send(HttpRequest.newBuilder(baseUri).timeout(timeout).GET().build(),
+		HttpResponse.BodyHandlers.discarding());
+	if (response.statusCode() >= 400) {
+	  throw new IOException("GET " + baseUri + " returned " + response.statusCode());
+	}
+	csrfToken = cookies.getCookieStore().getCookies().stream()
+		.filter(cookie -> cookie.getName().equals("XSRF-TOKEN"))
+		.map(HttpCookie::getValue)
+		.findFirst()
+		.orElse(null);
+  }
+  
+  JsonNode call(String endpoint, String method, Map<String, ?> parameters) throws IOException, InterruptedException {
+	HttpRequest.Builder request = HttpRequest.newBuilder(baseUri.resolve("/connect/" + endpoint + "/" + method))
+		.timeout(timeout)
+		.header("Content-Type", "application/json")
+		.header("Accept", "application/json")
+		.POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(parameters)));
+	if (csrfToken != null) {
+	  request.header("X-XSRF-TOKEN", csrfToken);
+	}
+	HttpResponse<byte[]> response = http.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+	if (response.statusCode() != 200) {
+	  throw new IOException(endpoint + "." + method + " returned " + response.statusCode() + ": "
+		  + new String(response.body(), 0, Math.min(200, response.body().length)));
+	}
+	return response.body().length == 0 ? null : mapper.readTree(response.body());
+  }
+  
+}
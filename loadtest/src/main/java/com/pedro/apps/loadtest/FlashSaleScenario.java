@@ -0,0 +1,73 @@
+package com.pedro.apps.loadtest;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.random.RandomGenerator;
+
+// A promotion on a handful of cars: many users look at the same cars and book them for the same dates.
+// 80% of the requests are bookings, the rest are reads of the promoted car.
+// The bookings are real rows in the Users table; their operation is booking#<run id>-<n> so they can be found afterwards.
+// They are for dates a quarter ahead, which no one is likely to have booked yet.
+final class FlashSaleScenario implements Scenario {
+  
+  private static final int DAYS_AHEAD = 90;
+  private static final int RENTAL_DAYS = 4;
+  
+  private final EndpointClient client;
+  private final List<Fleet.CarRef> hotCars;
+  private final int users;
+  private final AtomicLong bookings = new AtomicLong();
+  private final String runId = Long.toString(System.currentTimeMillis(), 36);
+  private final String startDate;
+  private final String endDate;
+  
+  FlashSaleScenario(EndpointClient client, Fleet fleet, int users, int hotCars) {
+	this.client = client;
+	this.hotCars = fleet.cars().subList(0, Math.min(hotCars, fleet.cars().size()));
+	this.users = users;
+	LocalDate start = LocalDate.now().plusDays(DAYS_AHEAD);
+	this.startDate = start.toString();
+	this.endDate = start.plusDays(RENTAL_DAYS).toString();
+  }
+  
+  String runId() {
+	return runId;
+  }
+  
+  @Override
+  public String name() {
+	return "flash-sale";
+  }
+  
+  @Override
+  public Action next(RandomGenerator random) {
+	Fleet.CarRef car = hotCars.get(random.nextInt(hotCars.size()));
+	if (random.nextInt(100) < 20) {
+	  return new Action("getCar", () -> client.call("DelegationEndpoint", "getCar",
+		  Map.of("carId", car.delegationId(), "operation", car.operation())));
+	}
+	String userId = TrackingPollingScenario.userId(random.nextInt(users));
+	Map<String, Object> booking = new HashMap<>();
+	booking.put("userId", userId);
+	booking.put("operation", "booking#" + runId + "-" + bookings.incrementAndGet());
+	booking.put("car", Map.of("delegationId", car.delegationId(), "operation", car.operation(), "make", car.make(),
+		"price", car.price(), "lat", 0, "lon", 0));
+	booking.put("startDate", startDate);
+	booking.put("endDate", endDate);
+	booking.put("totalToPayment", car.price() * (RENTAL_DAYS + 1.0));
+	booking.put("status", "active");
+	booking.put("statusPayment", "paid");
+	booking.put("statusBooking", "confirmed");
+	booking.put("pickUpDelegation", delegation(car.delegationId()));
+	booking.put("deliverDelegation", delegation(car.delegationId()));
+	return new Action("saveBooking", () -> client.call("UserEndpoint", "saveBooking", Map.of("booking", booking)));
+  }
+  
+  private static Map<String, Object> delegation(String delegationId) {
+	return Map.of("delegationId", delegationId, "operation", "profile", "latDelegation", 0, "lonDelegation", 0, "availableCarQty", 0);
+  }
+  
+}
@@ -0,0 +1,105 @@
+package com.pedro.apps.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+// The delegations and cars the scenarios pick from, read from the application or seeded through its endpoints
+final class Fleet {
+  
+  record CarRef(String delegationId, String operation, String make, int price) {
+  }
+  
+  private static final String[] MAKES = {"Seat", "Renault", "Toyota", "Volkswagen", "Peugeot", "Ford", "Kia", "Tesla"};
+  private static final String[] COLORS = {"white", "black", "grey", "red", "blue"};
+  
+  private final List<String> delegationIds;
+  private final List<CarRef> cars;
+  
+  private Fleet(List<String> delegationIds, List<CarRef> cars) {
+	this.delegationIds = delegationIds;
+	this.cars = cars;
+  }
+  
+  List<String> delegationIds() {
+	return delegationIds;
+  }
+  
+  List<CarRef> cars() {
+	return cars;
+  }
+  
+  static Fleet load(EndpointClient client) throws Exception {
+	List<CarRef> cars = new ArrayList<>();
+	Set<String> delegationIds = new LinkedHashSet<>();
+	JsonNode allCars = client.call("DelegationEndpoint", "getAllCars", Map.of());
+	for (JsonNode car : allCars) {
+	  cars.add(new CarRef(car.path("delegationId").asText(), car.path("operation").asText(), car.path("make").asText(), car.path("price").asInt()));
+	  delegationIds.add(car.path("delegationId").asText());
+	}
+	if (cars.isEmpty()) {
+	  throw new IllegalStateException("The application has no cars, run with --seed-delegations and --seed-cars");
+	}
+	return new Fleet(new ArrayList<>(delegationIds), cars);
+  }
+  
+  // Creates delegations spread over the Iberian peninsula with carsPerDelegation cars each, deterministic for a given count
+  static void seed(EndpointClient client, int delegations, int carsPerDelegation) throws Exception {
+	Random random = new Random(42);
+	Semaphore concurrency = new Semaphore(64);
+	List<Future<?>> writes = new ArrayList<>();
+	try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+	  for (int d = 0; d < delegations; d++) {
+		String delegationId = String.format("LT%03d", d);
+		Map<String, Object> delegation = Map.of(
+			"delegationId", delegationId,
+			"operation", "profile",
+			"name", "Load test " + delegationId,
+			"city", "City " + d,
+			"latDelegation", 36.5 + random.nextDouble() * 7,
+			"lonDelegation", -8.5 + random.nextDouble() * 11.5,
+			"availableCarQty", carsPerDelegation);
+		writes.add(submit(executor, concurrency, () -> client.call("DelegationEndpoint", "saveDelegation", Map.of("delegation", delegation))));
+		for (int c = 0; c < carsPerDelegation; c++) {
+		  Map<String, Object> car = Map.of(
+			  "delegationId", delegationId,
+			  "operation", "car" + String.format("%04d", c),
+			  "carId", delegationId + "-" + c,
+			  "make", MAKES[random.nextInt(MAKES.length)],
+			  "model", "Model " + random.nextInt(10),
+			  "year", Integer.toString(2015 + random.nextInt(10)),
+			  "color", COLORS[random.nextInt(COLORS.length)],
+			  "rented", false,
+			  "price", 30 + random.nextInt(120),
+			  "bookingDates", Map.of());
+		  writes.add(submit(executor, concurrency, () -> client.call("DelegationEndpoint", "saveCar", Map.of("car", car))));
+		}
+	  }
+	  for (Future<?> write : writes) {
+		write.get();
+	  }
+	}
+  }
+  
+  private static Future<?> submit(ExecutorService executor, Semaphore concurrency, Callable<?> call) {
+	return executor.submit(() -> {
+	  concurrency.acquire();
+	  try {
+		return call.call();
+	  } finally {
+		concurrency.release();
+	  }
+	});
+  }
+  
+}
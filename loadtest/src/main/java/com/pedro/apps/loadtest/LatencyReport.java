@@ -0,0 +1,176 @@
+package com.pedro.apps.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Prints each step as a table and keeps the full histograms: a JSON summary that a later run can be compared against
+// with --baseline, and an HdrHistogram log that HistogramLogAnalyzer or HdrHistogram's plotter can read
+final class LatencyReport {
+  
+  private static final String TOTAL = "total";
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+  private static final double MAX_ERROR_RATIO = 0.01;
+  
+  private final String scenario;
+  private final double sloP99Millis;
+  private final List<OpenModelRunner.StepResult> steps = new ArrayList<>();
+  private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+  
+  LatencyReport(String scenario, double sloP99Millis) {
+	this.scenario = scenario;
+	this.sloP99Millis = sloP99Millis;
+  }
+  
+  void add(OpenModelRunner.StepResult step) {
+	steps.add(step);
+  }
+  
+  void printStep(OpenModelRunner.StepResult step, PrintStream out) {
+	out.printf("%n%s at %.0f req/s: achieved %.1f req/s, dropped %d, unfinished %d%n",
+		scenario, step.targetRate(), step.achievedRate(), step.dropped(), step.unfinished());
+	out.printf("%-20s %9s %7s %9s %9s %9s %9s %9s%n", "action", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+	withTotal(step).forEach((action, histogram) -> {
+	  Map<String, Double> row = summary(histogram);
+	  out.printf("%-20s %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n", action, histogram.getTotalCount(),
+		  errors(step, action), row.get("p50"), row.get("p90"), row.get("p99"), row.get("p99.9"), row.get("max"));
+	});
+	if (sloP99Millis > 0) {
+	  out.println(meetsSlo(step) ? "SLO met" : "SLO missed");
+	}
+  }
+  
+  // The highest rate that held the p99 objective without errors or drops, -1 if none did
+  double capacity() {
+	double capacity = -1;
+	for (OpenModelRunner.StepResult step : steps) {
+	  if (meetsSlo(step)) {
+		capacity = Math.max(capacity, step.targetRate());
+	  }
+	}
+	return capacity;
+  }
+  
+  void printSummary(PrintStream out) {
+	if (sloP99Millis > 0 && steps.size() > 1) {
+	  double capacity = capacity();
+	  out.printf("%nCapacity at p99 <= %.0f ms: %s%n", sloP99Millis,
+		  capacity < 0 ? "below the lowest rate tried" : String.format("%.0f req/s", capacity));
+	}
+  }
+  
+  void compareWith(Path baselineFile, PrintStream out) throws IOException {
+	JsonNode baseline = mapper.readTree(baselineFile.toFile());
+	out.printf("%nChange in p99 against %s%n", baselineFile);
+	out.printf("%-10s %-20s %12s %12s %9s%n", "rate", "action", "baseline ms", "current ms", "change");
+	for (OpenModelRunner.StepResult step : steps) {
+	  JsonNode baselineStep = null;
+	  for (JsonNode candidate : baseline.path("steps")) {
+		if (candidate.path("targetRate").asDouble() == step.targetRate()) {
+		  baselineStep = candidate;
+		}
+	  }
+	  if (baselineStep == null) {
+		continue;
+	  }
+	  for (Map.Entry<String, Histogram> entry : withTotal(step).entrySet()) {
+		JsonNode before = baselineStep.path("actions").path(entry.getKey()).path("p99");
+		if (before.isMissingNode()) {
+		  continue;
+		}
+		double now = summary(entry.getValue()).get("p99");
+		out.printf("%-10.0f %-20s %12.1f %12.1f %+8.1f%%%n", step.targetRate(), entry.getKey(), before.asDouble(), now,
+			before.asDouble() == 0 ? 0 : (now - before.asDouble()) * 100 / before.asDouble());
+	  }
+	}
+  }
+  
+  // Writes <prefix>.json and <prefix>.hlog
+  void write(String prefix) throws IOException {
+	Map<String, Object> report = new LinkedHashMap<>();
+	report.put("scenario", scenario);
+	report.put("sloP99Millis", sloP99Millis);
+	List<Map<String, Object>> stepReports = new ArrayList<>();
+	for (OpenModelRunner.StepResult step : steps) {
+	  Map<String, Object> stepReport = new LinkedHashMap<>();
+	  stepReport.put("targetRate", step.targetRate());
+	  stepReport.put("achievedRate", step.achievedRate());
+	  stepReport.put("dropped", step.dropped());
+	  stepReport.put("unfinished", step.unfinished());
+	  Map<String, Object> actions = new LinkedHashMap<>();
+	  withTotal(step).forEach((action, histogram) -> {
+		Map<String, Object> row = new LinkedHashMap<>(summary(histogram));
+		row.put("count", histogram.getTotalCount());
+		row.put("errors", errors(step, action));
+		actions.put(action, row);
+	  });
+	  stepReport.put("actions", actions);
+	  stepReports.add(stepReport);
+	}
+	report.put("steps", stepReports);
+	if (sloP99Millis > 0) {
+	  report.put("capacity", capacity());
+	}
+	mapper.writeValue(Path.of(prefix + ".json").toFile(), report);
+	
+	try (PrintStream log = new PrintStream(Files.newOutputStream(Path.of(prefix + ".hlog")))) {
+	  HistogramLogWriter writer = new HistogramLogWriter(log);
+	  writer.outputComment("scenario " + scenario + ", latencies in microseconds, tagged rate/action");
+	  writer.outputLogFormatVersion();
+	  writer.outputLegend();
+	  for (OpenModelRunner.StepResult step : steps) {
+		for (Map.Entry<String, Histogram> entry : withTotal(step).entrySet()) {
+		  Histogram histogram = entry.getValue();
+		  histogram.setTag(String.format("%.0f/%s", step.targetRate(), entry.getKey()));
+		  writer.outputIntervalHistogram(histogram);
+		}
+	  }
+	}
+  }
+  
+  private boolean meetsSlo(OpenModelRunner.StepResult step) {
+	Histogram total = withTotal(step).get(TOTAL);
+	long requests = total.getTotalCount();
+	long errors = step.errors().values().stream().mapToLong(Long::longValue).sum();
+	return requests > 0 && step.dropped() == 0 && step.unfinished() == 0
+		&& errors <= requests * MAX_ERROR_RATIO
+		&& total.getValueAtPercentile(99) / 1000.0 <= sloP99Millis;
+  }
+  
+  private static Map<String, Histogram> withTotal(OpenModelRunner.StepResult step) {
+	Map<String, Histogram> histograms = new LinkedHashMap<>(step.latencies());
+	Histogram total = new Histogram(OpenModelRunner.HIGHEST_TRACKABLE_MICROS, 3);
+	step.latencies().values().forEach(total::add);
+	histograms.put(TOTAL, total);
+	return histograms;
+  }
+  
+  private static long errors(OpenModelRunner.StepResult step, String action) {
+	if (TOTAL.equals(action)) {
+	  return step.errors().values().stream().mapToLong(Long::longValue).sum();
+	}
+	return step.errors().getOrDefault(action, 0L);
+  }
+  
+  private static Map<String, Double> summary(Histogram histogram) {
+	Map<String, Double> row = new LinkedHashMap<>();
+	for (double percentile : PERCENTILES) {
+	  row.put("p" + (percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile)),
+		  histogram.getValueAtPercentile(percentile) / 1000.0);
+	}
+	row.put("max", histogram.getMaxValue() / 1000.0);
+	return row;
+  }
+  
+}
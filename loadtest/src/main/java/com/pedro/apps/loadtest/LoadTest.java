@@ -0,0 +1,87 @@
+package com.pedro.apps.loadtest;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+// Drives the running application through its Hilla endpoints. Arguments are --key=value, see README.md for the list.
+public final class LoadTest {
+  
+  private static final Map<String, String> DEFAULTS = Map.ofEntries(
+	  Map.entry("url", "http://localhost:8080"),
+	  Map.entry("scenario", "browse"),
+	  Map.entry("rates", "50"),
+	  Map.entry("duration", "60"),
+	  Map.entry("warmup", "15"),
+	  Map.entry("users", "1000"),
+	  Map.entry("hot-cars", "5"),
+	  Map.entry("max-in-flight", "2000"),
+	  Map.entry("seed-delegations", "0"),
+	  Map.entry("seed-cars", "20"),
+	  Map.entry("slo-p99-ms", "0"),
+	  Map.entry("timeout-ms", "30000"),
+	  Map.entry("random-seed", "1"),
+	  Map.entry("allow-writes", "false"),
+	  Map.entry("report", ""),
+	  Map.entry("baseline", ""));
+  
+  private LoadTest() {
+  }
+  
+  public static void main(String[] args) throws Exception {
+	Map<String, String> options = new HashMap<>(DEFAULTS);
+	for (String arg : args) {
+	  if (!arg.startsWith("--") || !arg.contains("=")) {
+		throw new IllegalArgumentException("Expected --key=value, got " + arg);
+	  }
+	  String key = arg.substring(2, arg.indexOf('='));
+	  if (!DEFAULTS.containsKey(key)) {
+		throw new IllegalArgumentException("Unknown option --" + key + ", expected one of " + DEFAULTS.keySet());
+	  }
+	  options.put(key, arg.substring(arg.indexOf('=') + 1));
+	}
+	
+	int seedDelegations = Integer.parseInt(options.get("seed-delegations"));
+	boolean allowWrites = Boolean.parseBoolean(options.get("allow-writes"));
+	if (seedDelegations > 0 && !allowWrites) {
+	  throw new IllegalArgumentException("--seed-delegations saves delegations and cars through the application, "
+		  + "run it with --allow-writes=true against a test environment");
+	}
+	
+	EndpointClient client = new EndpointClient(URI.create(options.get("url")),
+		Duration.ofMillis(Long.parseLong(options.get("timeout-ms"))));
+	client.connect();
+	if (seedDelegations > 0) {
+	  System.out.printf("Seeding %d delegations with %s cars each%n", seedDelegations, options.get("seed-cars"));
+	  Fleet.seed(client, seedDelegations, Integer.parseInt(options.get("seed-cars")));
+	}
+	Fleet fleet = Fleet.load(client);
+	
+	Scenario scenario = Scenario.parse(options.get("scenario"), client, fleet,
+		Integer.parseInt(options.get("users")), Integer.parseInt(options.get("hot-cars")), allowWrites);
+	OpenModelRunner runner = new OpenModelRunner(scenario, Integer.parseInt(options.get("max-in-flight")),
+		Long.parseLong(options.get("random-seed")));
+	LatencyReport report = new LatencyReport(scenario.name(), Double.parseDouble(options.get("slo-p99-ms")));
+	Duration warmup = Duration.ofSeconds(Long.parseLong(options.get("warmup")));
+	Duration duration = Duration.ofSeconds(Long.parseLong(options.get("duration")));
+	
+	// With several rates each step gets its own warm-up, so a step is not measured against the previous one's backlog
+	for (String rate : options.get("rates").split(",")) {
+	  OpenModelRunner.StepResult step = runner.run(Double.parseDouble(rate.trim()), warmup, duration);
+	  report.add(step);
+	  report.printStep(step, System.out);
+	}
+	report.printSummary(System.out);
+	
+	if (!options.get("baseline").isEmpty()) {
+	  report.compareWith(Path.of(options.get("baseline")), System.out);
+	}
+	if (!options.get("report").isEmpty()) {
+	  report.write(options.get("report"));
+	  System.out.printf("%nWrote %s.json and %s.hlog%n", options.get("report"), options.get("report"));
+	}
+  }
+  
+}
@@ -0,0 +1,125 @@
+package com.pedro.apps.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Open workload model: requests arrive on a Poisson schedule whatever the application's response time, the way
+// independent users do. Each request runs on its own virtual thread and its latency is measured from the instant it was
+// scheduled to start, not from when it got sent, so a stalled server shows up as queueing time instead of being hidden
+// by fewer requests (coordinated omission).
+final class OpenModelRunner {
+  
+  // Latencies are recorded in microseconds, anything slower than a minute is clamped to a minute
+  static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+  private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+  
+  record StepResult(double targetRate, double achievedRate, long dropped, long unfinished,
+					Map<String, Histogram> latencies, Map<String, Long> errors) {
+  }
+  
+  private static final class ActionStats {
+	final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+	final LongAdder errors = new LongAdder();
+  }
+  
+  private final Scenario scenario;
+  private final int maxInFlight;
+  private final SplittableRandom random;
+  
+  OpenModelRunner(Scenario scenario, int maxInFlight, long seed) {
+	this.scenario = scenario;
+	this.maxInFlight = maxInFlight;
+	this.random = new SplittableRandom(seed);
+  }
+  
+  StepResult run(double rate, Duration warmup, Duration duration) throws InterruptedException {
+	Map<String, ActionStats> stats = new ConcurrentHashMap<>();
+	AtomicInteger inFlight = new AtomicInteger();
+	LongAdder completed = new LongAdder();
+	long dropped = 0;
+	double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+	
+	long start = System.nanoTime();
+	long measureStart = start + warmup.toNanos();
+	long end = measureStart + duration.toNanos();
+	boolean measuring = warmup.isZero();
+	
+	try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+	  long intended = start;
+	  while (true) {
+		intended += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+		if (intended >= end) {
+		  break;
+		}
+		long wait = intended - System.nanoTime();
+		if (wait > 0) {
+		  LockSupport.parkNanos(wait);
+		}
+		if (!measuring && intended >= measureStart) {
+		  measuring = true;
+		}
+		if (inFlight.get() >= maxInFlight) {
+		  // The load generator would otherwise run out of memory against a stalled server, so these are reported
+		  // instead of being silently left out of the latencies
+		  if (measuring) {
+			dropped++;
+		  }
+		  continue;
+		}
+		Scenario.Action action = scenario.next(random.split());
+		ActionStats actionStats = stats.computeIfAbsent(action.name(), name -> new ActionStats());
+		long scheduledAt = intended;
+		boolean measured = measuring;
+		inFlight.incrementAndGet();
+		executor.execute(() -> {
+		  try {
+			action.call().call();
+		  } catch (Exception e) {
+			if (measured) {
+			  actionStats.errors.increment();
+			}
+		  } finally {
+			// Warm-up requests are sent but not recorded, whenever they complete
+			if (measured) {
+			  long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduledAt);
+			  actionStats.recorder.recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+			  completed.increment();
+			}
+			inFlight.decrementAndGet();
+		  }
+		});
+	  }
+	  
+	  // The step lasts as long as requests were issued, the drain wait below is not part of it
+	  long stoppedIssuing = System.nanoTime();
+	  double elapsedSeconds = (stoppedIssuing - measureStart) / 1e9;
+	  long drainDeadline = stoppedIssuing + DRAIN_TIMEOUT.toNanos();
+	  while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+		Thread.sleep(10);
+	  }
+	  long unfinished = inFlight.get();
+	  
+	  Map<String, Histogram> latencies = new TreeMap<>();
+	  Map<String, Long> errors = new TreeMap<>();
+	  stats.forEach((name, s) -> {
+		latencies.put(name, s.recorder.getIntervalHistogram());
+		errors.put(name, s.errors.sumThenReset());
+	  });
+	  executor.shutdownNow();
+	  return new StepResult(rate, completed.sum() / elapsedSeconds, dropped, unfinished, latencies, errors);
+	}
+  }
+  
+}
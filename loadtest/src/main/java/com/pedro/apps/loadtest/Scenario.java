@@ -0,0 +1,49 @@
+package com.pedro.apps.loadtest;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.random.RandomGenerator;
+
+// A kind of traffic: every arrival asks the scenario for the next request of a simulated user.
+// Latencies are reported per action name, so scenarios can be mixed and still compared.
+interface Scenario {
+  
+  record Action(String name, Callable<?> call) {
+  }
+  
+  String name();
+  
+  Action next(RandomGenerator random);
+  
+  // "flash-sale:1,browse:3" mixes scenarios in proportion to their weights.
+  // Scenarios that write to the application's tables are refused unless allowWrites is set.
+  static Scenario parse(String spec, EndpointClient client, Fleet fleet, int users, int hotCars, boolean allowWrites) {
+	List<String> parts = List.of(spec.split(","));
+	if (parts.size() == 1 && !spec.contains(":")) {
+	  return byName(spec, client, fleet, users, hotCars, allowWrites);
+	}
+	WeightedScenario mix = new WeightedScenario(spec);
+	for (String part : parts) {
+	  String[] nameAndWeight = part.trim().split(":");
+	  mix.add(byName(nameAndWeight[0], client, fleet, users, hotCars, allowWrites), nameAndWeight.length > 1 ? Double.parseDouble(nameAndWeight[1]) : 1);
+	}
+	return mix;
+  }
+  
+  private static Scenario byName(String name, EndpointClient client, Fleet fleet, int users, int hotCars, boolean allowWrites) {
+	return switch (name.trim()) {
+	  case "flash-sale" -> {
+		if (!allowWrites) {
+		  throw new IllegalArgumentException("flash-sale writes real bookings, run it with --allow-writes=true against a test environment");
+		}
+		FlashSaleScenario flashSale = new FlashSaleScenario(client, fleet, users, hotCars);
+		System.out.printf("flash-sale bookings of this run have operations starting with booking#%s-%n", flashSale.runId());
+		yield flashSale;
+	  }
+	  case "browse" -> new CatalogueBrowsingScenario(client, fleet);
+	  case "tracking" -> new TrackingPollingScenario(client, users);
+	  default -> throw new IllegalArgumentException("Unknown scenario " + name + ", expected flash-sale, browse or tracking");
+	};
+  }
+  
+}
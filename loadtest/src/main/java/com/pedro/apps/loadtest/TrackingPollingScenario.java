@@ -0,0 +1,33 @@
+package com.pedro.apps.loadtest;
+
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+// Users with the booking page open, polling their bookings for status changes
+final class TrackingPollingScenario implements Scenario {
+  
+  private final EndpointClient client;
+  private final int users;
+  
+  TrackingPollingScenario(EndpointClient client, int users) {
+	this.client = client;
+	this.users = users;
+  }
+  
+  // Shared with the flash sale so a mixed run polls users that actually booked
+  static String userId(int user) {
+	return "loadtest-user-" + user;
+  }
+  
+  @Override
+  public String name() {
+	return "tracking";
+  }
+  
+  @Override
+  public Action next(RandomGenerator random) {
+	String userId = userId(random.nextInt(users));
+	return new Action("getBookingsByUser", () -> client.call("UserEndpoint", "getBookingsByUser", Map.of("userId", userId)));
+  }
+  
+}
@@ -0,0 +1,40 @@
+package com.pedro.apps.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+final class WeightedScenario implements Scenario {
+  
+  private final String name;
+  private final List<Scenario> scenarios = new ArrayList<>();
+  private final List<Double> cumulativeWeights = new ArrayList<>();
+  private double totalWeight;
+  
+  WeightedScenario(String name) {
+	this.name = name;
+  }
+  
+  void add(Scenario scenario, double weight) {
+	totalWeight += weight;
+	scenarios.add(scenario);
+	cumulativeWeights.add(totalWeight);
+  }
+  
+  @Override
+  public String name() {
+	return name;
+  }
+  
+  @Override
+  public Action next(RandomGenerator random) {
+	double pick = random.nextDouble(totalWeight);
+	for (int i = 0; i < scenarios.size(); i++) {
+	  if (pick < cumulativeWeights.get(i)) {
+		return scenarios.get(i).next(random);
+	  }
+	}
+	return scenarios.get(scenarios.size() - 1).next(random);
+  }
+  
+}
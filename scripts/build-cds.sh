@@ -0,0 +1,28 @@
+#!/usr/bin/env bash
+# Builds the fast startup package: production frontend, Spring AOT and a class-data-sharing archive.
+# The CDS archive comes from a training run that starts the application with the startup-measurement
+# profile, runs the startup warm-up including the fleet load and exits once ready. The warm-up calls
+# DynamoDB, so run it with the same AWS access as the deployment: without it the warm-up steps fail,
+# are skipped and their classes are missing from the archive, and with changefeed.mode=streams the
+# application cannot start at all.
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+./mvnw -B clean package -Pproduction,startup -DskipTests
+
+JAR=$(ls target/world-renting-car-*.jar | grep -v original | head -1)
+rm -rf target/app
+java -Djarmode=tools -jar "$JAR" extract --destination target/app
+
+APP_JAR=target/app/$(basename "$JAR")
+java -XX:ArchiveClassesAtExit=target/app/application.jsa \
+  -Dspring.aot.enabled=true \
+  -Dspring.profiles.active=startup-measurement \
+  -Dstartup.exit-when-ready=true \
+  -Dstartup.warmup.load-fleet=true \
+  -Dvaadin.launch-browser=false \
+  -jar "$APP_JAR"
+
+echo
+echo "Start with:"
+echo "  java -XX:SharedArchiveFile=target/app/application.jsa -Dspring.aot.enabled=true -jar $APP_JAR"
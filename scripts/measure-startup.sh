@@ -0,0 +1,43 @@
+#!/usr/bin/env bash
+# Starts the application several times and reports how long it took until it was ready to serve
+# (after the DynamoDB warm-up), as logged by StartupWarmup. Every run is stopped once ready.
+#
+#   scripts/measure-startup.sh [runs] -- <java command>
+#   scripts/measure-startup.sh 5 -- java -jar target/world-renting-car-1.0-SNAPSHOT.jar
+#   scripts/measure-startup.sh 5 -- java -XX:SharedArchiveFile=target/app/application.jsa \
+#       -Dspring.aot.enabled=true -jar target/app/world-renting-car-1.0-SNAPSHOT.jar
+set -euo pipefail
+
+RUNS=${1:-5}
+shift
+[ "${1:-}" = "--" ] && shift
+if [ $# -eq 0 ]; then
+  echo "usage: $0 [runs] -- <java command>" >&2
+  exit 1
+fi
+
+LOG=$(mktemp)
+trap 'rm -f "$LOG"' EXIT
+TIMES=()
+for run in $(seq 1 "$RUNS"); do
+  "$@" --vaadin.launch-browser=false > "$LOG" 2>&1 &
+  PID=$!
+  MS=""
+  for _ in $(seq 1 1200); do
+    MS=$(sed -n 's/.*StartupWarmup.*Ready \([0-9]*\) ms after JVM start.*/\1/p' "$LOG")
+    [ -n "$MS" ] && break
+    kill -0 "$PID" 2>/dev/null || break
+    sleep 0.1
+  done
+  kill "$PID" 2>/dev/null || true
+  wait "$PID" 2>/dev/null || true
+  if [ -z "$MS" ]; then
+    echo "run $run: application did not become ready, log:" >&2
+    tail -20 "$LOG" >&2
+    exit 1
+  fi
+  echo "run $run: ${MS} ms"
+  TIMES+=("$MS")
+done
+
+printf '%s\n' "${TIMES[@]}" | sort -n | awk '{ t[NR] = $1 } END { printf "min %d ms, median %d ms, max %d ms over %d runs\n", t[1], t[int((NR + 1) / 2)], t[NR], NR }'
@@ -0,0 +1,14 @@
+package com.pedro.apps.archive;
+
+import java.util.List;
+
+// Blob storage for cold data: S3 in production, a local directory otherwise
+public interface ArchiveStore {
+  
+  void put(String key, byte[] data);
+  
+  // Returns null when the key does not exist
+  byte[] get(String key);
+  
+  List<String> list(String prefix);
+}
@@ -0,0 +1,78 @@
+package com.pedro.apps.archive;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Local stand-in for S3: keys are relative paths below archive.directory, keys that would resolve
+// outside of it are rejected
+@Component
+@ConditionalOnProperty(name = "archive.store", havingValue = "filesystem", matchIfMissing = true)
+public class FileSystemArchiveStore implements ArchiveStore {
+  
+  private final Path root;
+  
+  public FileSystemArchiveStore(@Value("${archive.directory:data/archive}") String directory) {
+	this.root = Path.of(directory).toAbsolutePath().normalize();
+  }
+  
+  private Path resolve(String key) {
+	Path file = root.resolve(key).normalize();
+	if (!file.startsWith(root)) {
+	  throw new IllegalArgumentException("Archive key " + key + " is outside of " + root);
+	}
+	return file;
+  }
+  
+  @Override
+  public void put(String key, byte[] data) {
+	try {
+	  Path file = resolve(key);
+	  Files.createDirectories(file.getParent());
+	  // Write to a temporary file first so readers never see a half written archive
+	  Path temp = Files.createTempFile(file.getParent(), "upload", ".tmp");
+	  Files.write(temp, data);
+	  Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	} catch (IOException e) {
+	  throw new UncheckedIOException(e);
+	}
+  }
+  
+  @Override
+  public byte[] get(String key) {
+	try {
+	  return Files.readAllBytes(resolve(key));
+	} catch (NoSuchFileException e) {
+	  return null;
+	} catch (IOException e) {
+	  throw new UncheckedIOException(e);
+	}
+  }
+  
+  @Override
+  public List<String> list(String prefix) {
+	// The keys below a prefix ending in a slash all live in that directory
+	Path directory = prefix.endsWith("/") ? resolve(prefix) : resolve(prefix).getParent();
+	if (directory == null || !Files.isDirectory(directory)) {
+	  return List.of();
+	}
+	try (Stream<Path> files = Files.walk(directory)) {
+	  return files.filter(Files::isRegularFile)
+		  .map(file -> root.relativize(file).toString().replace('\\', '/'))
+		  .filter(key -> key.startsWith(prefix) && !key.endsWith(".tmp"))
+		  .sorted()
+		  .toList();
+	} catch (IOException e) {
+	  throw new UncheckedIOException(e);
+	}
+  }
+}
@@ -0,0 +1,48 @@
+package com.pedro.apps.archive;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "archive.store", havingValue = "s3")
+public class S3ArchiveStore implements ArchiveStore {
+  
+  private final S3Client s3Client;
+  private final String bucket;
+  
+  @Autowired
+  public S3ArchiveStore(S3Client s3Client, @Value("${archive.s3-bucket}") String bucket) {
+	this.s3Client = s3Client;
+	this.bucket = bucket;
+  }
+  
+  @Override
+  public void put(String key, byte[] data) {
+	s3Client.putObject(r -> r.bucket(bucket).key(key), RequestBody.fromBytes(data));
+  }
+  
+  @Override
+  public byte[] get(String key) {
+	try {
+	  return s3Client.getObjectAsBytes(r -> r.bucket(bucket).key(key)).asByteArray();
+	} catch (NoSuchKeyException e) {
+	  return null;
+	}
+  }
+  
+  @Override
+  public List<String> list(String prefix) {
+	return s3Client.listObjectsV2Paginator(r -> r.bucket(bucket).prefix(prefix))
+		.contents().stream()
+		.map(S3Object::key)
+		.toList();
+  }
+}
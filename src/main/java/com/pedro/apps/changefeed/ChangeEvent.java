@@ -0,0 +1,44 @@
+package com.pedro.apps.changefeed;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.Map;
+
+// One item modification on a DynamoDB table, as delivered by the change feed
+public class ChangeEvent {
+  public enum Type {INSERT, MODIFY, REMOVE}
+  
+  private final String tableName;
+  private final Type type;
+  private final Map<String, AttributeValue> keys;
+  private final Map<String, AttributeValue> newImage; // null for REMOVE
+  
+  public ChangeEvent(String tableName, Type type, Map<String, AttributeValue> keys, Map<String, AttributeValue> newImage) {
+	this.tableName = tableName;
+	this.type = type;
+	this.keys = keys;
+	this.newImage = newImage;
+  }
+  
+  public String getTableName() {
+	return tableName;
+  }
+  
+  public Type getType() {
+	return type;
+  }
+  
+  public Map<String, AttributeValue> getKeys() {
+	return keys;
+  }
+  
+  public Map<String, AttributeValue> getNewImage() {
+	return newImage;
+  }
+  
+  // String value of a key attribute, e.g. "delegationId" or "operation"
+  public String key(String attribute) {
+	AttributeValue value = keys.get(attribute);
+	return value == null ? null : value.s();
+  }
+}
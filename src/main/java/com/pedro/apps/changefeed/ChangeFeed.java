@@ -0,0 +1,15 @@
+package com.pedro.apps.changefeed;
+
+import java.time.Instant;
+import java.util.function.Consumer;
+
+// Source of item modifications on the Delegations and Users tables, shared by all app nodes
+public interface ChangeFeed {
+  
+  // Registers a listener for the changes of one table. Listeners are called from the feed thread.
+  void subscribe(String tableName, Consumer<ChangeEvent> listener);
+  
+  // Asks the feed to also deliver the changes made since the given time, used after restoring state
+  // from a snapshot. Returns false when the feed cannot look back that far. Subscribe the listeners first.
+  boolean catchUpFrom(Instant since);
+}
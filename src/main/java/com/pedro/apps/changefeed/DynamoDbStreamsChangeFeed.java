@@ -0,0 +1,263 @@
+package com.pedro.apps.changefeed;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.ExpiredIteratorException;
+import software.amazon.awssdk.services.dynamodb.model.GetRecordsResponse;
+import software.amazon.awssdk.services.dynamodb.model.Record;
+import software.amazon.awssdk.services.dynamodb.model.Shard;
+import software.amazon.awssdk.services.dynamodb.model.ShardIteratorType;
+import software.amazon.awssdk.services.dynamodb.streams.DynamoDbStreamsClient;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Change feed reading the DynamoDB Streams of the subscribed tables, enabled with changefeed.mode=streams.
+// The tables need a stream with NEW_IMAGE or NEW_AND_OLD_IMAGES. Every node reads every shard on
+// its own, starting at LATEST because a node builds its in-memory state when it starts, or at
+// TRIM_HORIZON when it restored its state from a snapshot and has to catch up since then.
+// A shard created by a split is only read once its parent shard is closed and fully read, so
+// successive updates of an item are applied in order. While catching up, records created before the
+// snapshot (minus a safety margin, the record timestamps are approximate and come from another clock)
+// are skipped; replaying a few of them again is harmless because applying a record is idempotent.
+@Component
+@ConditionalOnProperty(name = "changefeed.mode", havingValue = "streams")
+public class DynamoDbStreamsChangeFeed implements ChangeFeed {
+  
+  private static final Logger log = LoggerFactory.getLogger(DynamoDbStreamsChangeFeed.class);
+  
+  // Streams keep records for 24 hours
+  private static final Duration STREAM_RETENTION = Duration.ofHours(24);
+  
+  private final DynamoDbClient dynamoDbClient;
+  private final DynamoDbStreamsClient streamsClient;
+  private final long pollMillis;
+  private final int shardRefreshPolls;
+  private final Duration catchUpMargin;
+  private final Map<String, List<Consumer<ChangeEvent>>> listeners = new ConcurrentHashMap<>();
+  private final Map<String, TableStream> streams = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+	Thread thread = new Thread(r, "changefeed-streams");
+	thread.setDaemon(true);
+	return thread;
+  });
+  private long polls;
+  private volatile Instant catchUpSince;
+  
+  @Autowired
+  public DynamoDbStreamsChangeFeed(
+	  DynamoDbClient dynamoDbClient,
+	  DynamoDbStreamsClient streamsClient,
+	  @Value("${changefeed.poll-millis:1000}") long pollMillis,
+	  @Value("${changefeed.shard-refresh-polls:30}") int shardRefreshPolls,
+	  @Value("${changefeed.catch-up-margin-seconds:60}") long catchUpMarginSeconds) {
+	this.dynamoDbClient = dynamoDbClient;
+	this.streamsClient = streamsClient;
+	this.pollMillis = pollMillis;
+	this.shardRefreshPolls = shardRefreshPolls;
+	this.catchUpMargin = Duration.ofSeconds(catchUpMarginSeconds);
+  }
+  
+  @PostConstruct
+  public void start() {
+	poller.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+  }
+  
+  @PreDestroy
+  public void stop() {
+	poller.shutdownNow();
+  }
+  
+  @Override
+  public void subscribe(String tableName, Consumer<ChangeEvent> listener) {
+	listeners.computeIfAbsent(tableName, t -> new CopyOnWriteArrayList<>()).add(listener);
+	streams.computeIfAbsent(tableName, t -> {
+	  String streamArn = dynamoDbClient.describeTable(r -> r.tableName(t)).table().latestStreamArn();
+	  if (streamArn == null) {
+		throw new IllegalStateException("Table " + t + " has no stream enabled");
+	  }
+	  return new TableStream(t, streamArn);
+	});
+  }
+  
+  @Override
+  public boolean catchUpFrom(Instant since) {
+	Instant from = since.minus(catchUpMargin);
+	if (from.isBefore(Instant.now().minus(STREAM_RETENTION))) {
+	  return false;
+	}
+	// Reopen every shard from its oldest record on the next poll; runs on the poller thread
+	poller.execute(() -> {
+	  catchUpSince = from;
+	  streams.values().forEach(stream -> {
+		stream.knownShards.clear();
+		stream.finishedShards.clear();
+		stream.waitingShards.clear();
+		stream.iterators.clear();
+		stream.catchingUp.clear();
+		stream.refreshedSinceCatchUp = false;
+	  });
+	  polls = 0;
+	});
+	return true;
+  }
+  
+  private void poll() {
+	boolean refreshShards = polls++ % shardRefreshPolls == 0;
+	for (TableStream stream : streams.values()) {
+	  try {
+		if (refreshShards) {
+		  refreshShards(stream);
+		  stream.refreshedSinceCatchUp = true;
+		}
+		readShards(stream);
+	  } catch (RuntimeException e) {
+		log.warn("Polling the stream of {} failed", stream.tableName, e);
+	  }
+	}
+	// Not before a table is subscribed: its shards would then open at LATEST and skip the changes to replay
+	if (catchUpSince != null && !streams.isEmpty() && streams.values().stream()
+		.allMatch(stream -> stream.refreshedSinceCatchUp && stream.catchingUp.isEmpty() && stream.waitingShards.isEmpty())) {
+	  // Every shard has been read up to the present: from now on all records are new
+	  log.info("Change feed caught up since {}", catchUpSince);
+	  catchUpSince = null;
+	}
+  }
+  
+  // Opens an iterator for every shard not seen yet. Shards that already existed on the first
+  // refresh start at LATEST, shards created afterwards (after a split) are read from the start
+  // once their parent has been read to its end.
+  private void refreshShards(TableStream stream) {
+	boolean firstRefresh = stream.knownShards.isEmpty() && catchUpSince == null;
+	String lastShardId = null;
+	do {
+	  String exclusiveStart = lastShardId;
+	  var description = streamsClient.describeStream(r -> r.streamArn(stream.streamArn).exclusiveStartShardId(exclusiveStart))
+		  .streamDescription();
+	  for (Shard shard : description.shards()) {
+		if (!stream.knownShards.add(shard.shardId())) {
+		  continue;
+		}
+		boolean closed = shard.sequenceNumberRange().endingSequenceNumber() != null;
+		if (firstRefresh) {
+		  if (closed) {
+			stream.finishedShards.add(shard.shardId()); // its records predate this node
+		  } else {
+			openShard(stream, shard.shardId(), ShardIteratorType.LATEST);
+		  }
+		} else if (shard.parentShardId() != null && stream.knownShards.contains(shard.parentShardId())
+			&& !stream.finishedShards.contains(shard.parentShardId())) {
+		  stream.waitingShards.put(shard.shardId(), shard.parentShardId());
+		} else {
+		  // No parent, or the parent is already read or trimmed from the stream
+		  openShard(stream, shard.shardId(), ShardIteratorType.TRIM_HORIZON);
+		}
+	  }
+	  lastShardId = description.lastEvaluatedShardId();
+	} while (lastShardId != null);
+  }
+  
+  private void openShard(TableStream stream, String shardId, ShardIteratorType type) {
+	stream.iterators.put(shardId, streamsClient.getShardIterator(r -> r
+		.streamArn(stream.streamArn).shardId(shardId).shardIteratorType(type)).shardIterator());
+	if (catchUpSince != null && type == ShardIteratorType.TRIM_HORIZON) {
+	  stream.catchingUp.add(shardId);
+	}
+  }
+  
+  // Shards are read in the order they were discovered
+  private void readShards(TableStream stream) {
+	for (Map.Entry<String, String> shard : new LinkedHashMap<>(stream.iterators).entrySet()) {
+	  GetRecordsResponse response;
+	  try {
+		response = streamsClient.getRecords(r -> r.shardIterator(shard.getValue()));
+	  } catch (ExpiredIteratorException e) {
+		// Forget the shard, the next refresh reopens it
+		stream.iterators.remove(shard.getKey());
+		stream.knownShards.remove(shard.getKey());
+		continue;
+	  }
+	  Instant since = catchUpSince;
+	  boolean reachedSince = response.records().isEmpty();
+	  for (Record record : response.records()) {
+		// When catching up from the shard start, skip what the snapshot already contains
+		if (since == null || !record.dynamodb().approximateCreationDateTime().isBefore(since)) {
+		  dispatch(stream.tableName, record);
+		  reachedSince = true;
+		}
+	  }
+	  if (reachedSince || response.nextShardIterator() == null) {
+		stream.catchingUp.remove(shard.getKey());
+	  }
+	  if (response.nextShardIterator() == null) {
+		// Shard closed and fully read, its children can start now
+		stream.iterators.remove(shard.getKey());
+		stream.finishedShards.add(shard.getKey());
+		startChildren(stream, shard.getKey());
+	  } else {
+		stream.iterators.put(shard.getKey(), response.nextShardIterator());
+	  }
+	}
+  }
+  
+  private void startChildren(TableStream stream, String parentShardId) {
+	List<String> children = stream.waitingShards.entrySet().stream()
+		.filter(waiting -> waiting.getValue().equals(parentShardId))
+		.map(Map.Entry::getKey)
+		.toList();
+	for (String child : children) {
+	  stream.waitingShards.remove(child);
+	  openShard(stream, child, ShardIteratorType.TRIM_HORIZON);
+	}
+  }
+  
+  private void dispatch(String tableName, Record record) {
+	ChangeEvent.Type type = ChangeEvent.Type.valueOf(record.eventNameAsString());
+	ChangeEvent event = new ChangeEvent(tableName, type, record.dynamodb().keys(),
+		record.dynamodb().hasNewImage() ? record.dynamodb().newImage() : null);
+	for (Consumer<ChangeEvent> listener : listeners.getOrDefault(tableName, List.of())) {
+	  try {
+		listener.accept(event);
+	  } catch (RuntimeException e) {
+		log.warn("Change listener failed on {}", tableName, e);
+	  }
+	}
+  }
+  
+  private static class TableStream {
+	private final String tableName;
+	private final String streamArn;
+	// Only touched by the poller thread
+	private final Set<String> knownShards = new HashSet<>();
+	private final Set<String> finishedShards = new HashSet<>();
+	private final Map<String, String> waitingShards = new LinkedHashMap<>(); // child shard -> parent shard
+	private final Map<String, String> iterators = new LinkedHashMap<>();
+	// Shards opened at TRIM_HORIZON that have not yet been read up to the catch-up time
+	private final Set<String> catchingUp = new HashSet<>();
+	// A stream subscribed while catching up must list its shards before the catch-up can end
+	private boolean refreshedSinceCatchUp;
+	
+	TableStream(String tableName, String streamArn) {
+	  this.tableName = tableName;
+	  this.streamArn = streamArn;
+	}
+  }
+}
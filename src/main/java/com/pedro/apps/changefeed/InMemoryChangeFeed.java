@@ -0,0 +1,36 @@
+package com.pedro.apps.changefeed;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Local stand-in for DynamoDB Streams: events are delivered synchronously to the listeners of this
+// process when publish() is called, which DelegationRepositoryImpl does after every save. Used by
+// default, in tests and for single-node runs.
+@Component
+@ConditionalOnProperty(name = "changefeed.mode", havingValue = "local", matchIfMissing = true)
+public class InMemoryChangeFeed implements ChangeFeed {
+  
+  private final Map<String, List<Consumer<ChangeEvent>>> listeners = new ConcurrentHashMap<>();
+  
+  @Override
+  public void subscribe(String tableName, Consumer<ChangeEvent> listener) {
+	listeners.computeIfAbsent(tableName, t -> new CopyOnWriteArrayList<>()).add(listener);
+  }
+  
+  // Events only exist while they are published, there is no history to replay
+  @Override
+  public boolean catchUpFrom(Instant since) {
+	return false;
+  }
+  
+  public void publish(ChangeEvent event) {
+	listeners.getOrDefault(event.getTableName(), List.of()).forEach(listener -> listener.accept(event));
+  }
+}
@@ -1,12 +1,19 @@
 package com.pedro.apps.config;
 
+import com.pedro.apps.inmemory.InMemoryDynamoDbClient;
+import com.pedro.apps.inmemory.LatencyProfile;
+import com.pedro.apps.inmemory.ThrottlingProfile;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClientBuilder;
+import software.amazon.awssdk.services.dynamodb.streams.DynamoDbStreamsClient;
 
 @Configuration
 public class DynamoDBConfig {
@@ -23,11 +30,39 @@ public class DynamoDBConfig {
   private String region;
   
   @Bean
-  public DynamoDbClient dynamoDbClient() {
-	return DynamoDbClient.builder()
+  @ConditionalOnProperty(name = "dynamodb.backend", havingValue = "aws", matchIfMissing = true)
+  public DynamoDbClient dynamoDbClient(DynamoDbAdmissionController admissionController) {
+	DynamoDbClientBuilder builder = DynamoDbClient.builder()
 		.credentialsProvider(DefaultCredentialsProvider.create())
-		.region(Region.of(region))
-		.build();
+		.region(Region.of(region));
+	if (admissionController.isEnabled()) {
+	  builder.overrideConfiguration(c -> c.addExecutionInterceptor(admissionController));
+	}
+	return builder.build();
+  }
+  
+  // In-process stand-in for load tests and local benchmarks: the tables start empty and live as long as the JVM.
+  // Latency and throttling come from LatencyProfile / ThrottlingProfile beans when declared, else from the properties.
+  @Bean
+  @ConditionalOnProperty(name = "dynamodb.backend", havingValue = "in-memory")
+  public DynamoDbClient inMemoryDynamoDbClient(
+	  ObjectProvider<LatencyProfile> latencyProfile,
+	  ObjectProvider<ThrottlingProfile> throttlingProfile,
+	  @Value("${dynamodb.in-memory.tables:Delegations:delegationId:operation,Users:userId:operation}") String tables,
+	  @Value("${dynamodb.in-memory.latency-ms:0}") double latencyMillis,
+	  @Value("${dynamodb.in-memory.latency-tail-ms:0}") double latencyTailMillis,
+	  @Value("${dynamodb.in-memory.read-units-per-second:0}") double readUnitsPerSecond,
+	  @Value("${dynamodb.in-memory.write-units-per-second:0}") double writeUnitsPerSecond,
+	  @Value("${dynamodb.in-memory.burst-seconds:5}") double burstSeconds) {
+	InMemoryDynamoDbClient client = new InMemoryDynamoDbClient(
+		latencyProfile.getIfAvailable(() -> LatencyProfile.of(latencyMillis, latencyTailMillis)),
+		throttlingProfile.getIfAvailable(() -> ThrottlingProfile.provisioned(readUnitsPerSecond, writeUnitsPerSecond, burstSeconds)));
+	// "Name:hashKey[:rangeKey]", comma separated
+	for (String table : tables.split(",")) {
+	  String[] parts = table.trim().split(":");
+	  client.createTable(parts[0], parts[1], parts.length > 2 ? parts[2] : null);
+	}
+	return client;
   }
   
   @Bean
@@ -36,6 +71,15 @@ public class DynamoDBConfig {
 		.dynamoDbClient(dynamoDbClient)
 		.build();
   }
+  
+  @Bean
+  @ConditionalOnProperty(name = "changefeed.mode", havingValue = "streams")
+  public DynamoDbStreamsClient dynamoDbStreamsClient() {
+	return DynamoDbStreamsClient.builder()
+		.credentialsProvider(DefaultCredentialsProvider.create())
+		.region(Region.of(region))
+		.build();
+  }
 
 	    /*@Bean
     public DynamoDbClient dynamoDbClient() {
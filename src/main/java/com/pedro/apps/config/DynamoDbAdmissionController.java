@@ -0,0 +1,372 @@
+package com.pedro.apps.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.SdkResponse;
+import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Admission control in front of the DynamoDB client, shared by every repository. Each request attempt
+// (retries included) takes capacity units from a per-table token bucket before it is sent, reads and
+// writes in separate buckets. The bucket rate adapts to the table: it is cut multiplicatively when
+// DynamoDB throttles and grows back additively while the bucket is in use without throttling, and the
+// consumed capacity DynamoDB reports replaces the estimate taken up front.
+// Booking writes may empty the bucket and wait the longest for tokens, other calls keep a reserve
+// free for them and catalogue scans only run while the bucket is half full. A request that cannot
+// get its tokens within its priority's wait limit fails fast with DynamoDbOverloadedException, except
+// the follow-up pages of a scan or query: those wait for their tokens, a paginated read that has
+// started is never failed half way.
+// Disabled by default. Enable it for provisioned tables with initial rates close to their provisioned
+// capacity; on-demand tables scale on their own and would only be slowed down by the buckets.
+@Component
+public class DynamoDbAdmissionController implements ExecutionInterceptor {
+  
+  private static final Logger log = LoggerFactory.getLogger(DynamoDbAdmissionController.class);
+  
+  public enum Priority {CRITICAL, NORMAL, BACKGROUND}
+  
+  // Up-front estimates, corrected with the consumed capacity of the response
+  private static final double QUERY_ESTIMATE = 4;
+  // A page holds up to 1 MB, 256 strongly consistent units; with a Limit, one unit per item (up to 4 KB)
+  private static final double FULL_PAGE_UNITS = 256;
+  private static final long THROTTLE_COOLDOWN_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+  private static final long INCREASE_AFTER_THROTTLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+  
+  private static final ExecutionAttribute<List<Reservation>> RESERVATIONS = new ExecutionAttribute<>("AdmissionReservations");
+  
+  private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+  private final boolean enabled;
+  private final double initialReadRate;
+  private final double initialWriteRate;
+  private final double minRate;
+  private final double maxRate;
+  private final double increasePerSecond;
+  private final double decreaseFactor;
+  private final double burstSeconds;
+  private final Map<Priority, Double> reserves = Map.of(Priority.CRITICAL, 0.0, Priority.NORMAL, 0.1, Priority.BACKGROUND, 0.5);
+  private final Map<Priority, Long> maxWaitNanos;
+  
+  public DynamoDbAdmissionController(
+	  @Value("${dynamodb.admission.enabled:false}") boolean enabled,
+	  @Value("${dynamodb.admission.initial-read-rate:100}") double initialReadRate,
+	  @Value("${dynamodb.admission.initial-write-rate:50}") double initialWriteRate,
+	  @Value("${dynamodb.admission.min-rate:5}") double minRate,
+	  @Value("${dynamodb.admission.max-rate:4000}") double maxRate,
+	  @Value("${dynamodb.admission.increase-per-second:10}") double increasePerSecond,
+	  @Value("${dynamodb.admission.decrease-factor:0.7}") double decreaseFactor,
+	  @Value("${dynamodb.admission.burst-seconds:1}") double burstSeconds,
+	  @Value("${dynamodb.admission.max-wait-ms.critical:1000}") long criticalWaitMillis,
+	  @Value("${dynamodb.admission.max-wait-ms.normal:250}") long normalWaitMillis,
+	  @Value("${dynamodb.admission.max-wait-ms.background:100}") long backgroundWaitMillis) {
+	this.enabled = enabled;
+	this.initialReadRate = initialReadRate;
+	this.initialWriteRate = initialWriteRate;
+	this.minRate = minRate;
+	this.maxRate = maxRate;
+	this.increasePerSecond = increasePerSecond;
+	this.decreaseFactor = decreaseFactor;
+	this.burstSeconds = burstSeconds;
+	this.maxWaitNanos = Map.of(
+		Priority.CRITICAL, TimeUnit.MILLISECONDS.toNanos(criticalWaitMillis),
+		Priority.NORMAL, TimeUnit.MILLISECONDS.toNanos(normalWaitMillis),
+		Priority.BACKGROUND, TimeUnit.MILLISECONDS.toNanos(backgroundWaitMillis));
+  }
+  
+  public boolean isEnabled() {
+	return enabled;
+  }
+  
+  @Override
+  public SdkRequest modifyRequest(Context.ModifyRequest context, ExecutionAttributes executionAttributes) {
+	// Ask DynamoDB for the consumed capacity so the buckets are charged what the request really cost
+	return switch (context.request()) {
+	  case GetItemRequest r when r.returnConsumedCapacity() == null -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build();
+	  case PutItemRequest r when r.returnConsumedCapacity() == null -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build();
+	  case UpdateItemRequest r when r.returnConsumedCapacity() == null -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build();
+	  case DeleteItemRequest r when r.returnConsumedCapacity() == null -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build();
+	  case QueryRequest r when r.returnConsumedCapacity() == null -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build();
+	  case ScanRequest r when r.returnConsumedCapacity() == null -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build();
+	  case BatchGetItemRequest r when r.returnConsumedCapacity() == null -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build();
+	  case BatchWriteItemRequest r when r.returnConsumedCapacity() == null -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build();
+	  case TransactGetItemsRequest r when r.returnConsumedCapacity() == null -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build();
+	  case TransactWriteItemsRequest r when r.returnConsumedCapacity() == null -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build();
+	  default -> context.request();
+	};
+  }
+  
+  // Runs once per attempt, so SDK retries of a throttled request queue behind the same buckets
+  @Override
+  public void beforeTransmission(Context.BeforeTransmission context, ExecutionAttributes executionAttributes) {
+	Priority priority = priority(context.request());
+	long maxWait = isNextPage(context.request()) ? Long.MAX_VALUE : maxWaitNanos.get(priority);
+	List<Reservation> reservations = new ArrayList<>();
+	long waitNanos = 0;
+	for (Demand demand : demands(context.request())) {
+	  TokenBucket bucket = bucket(demand.tableName(), demand.write());
+	  long wait = bucket.reserve(demand.units(), reserves.get(priority), maxWait);
+	  if (wait < 0) {
+		reservations.forEach(reservation -> reservation.bucket().refund(reservation.units()));
+		throw new DynamoDbOverloadedException(
+			"DynamoDB table " + demand.tableName() + " is over capacity, " + priority + " request rejected");
+	  }
+	  reservations.add(new Reservation(bucket, demand.units()));
+	  waitNanos = Math.max(waitNanos, wait);
+	}
+	executionAttributes.putAttribute(RESERVATIONS, reservations);
+	if (waitNanos > 0) {
+	  try {
+		TimeUnit.NANOSECONDS.sleep(waitNanos);
+	  } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw AbortedException.create("Interrupted while waiting for DynamoDB capacity");
+	  }
+	}
+  }
+  
+  @Override
+  public void afterTransmission(Context.AfterTransmission context, ExecutionAttributes executionAttributes) {
+	if (context.httpResponse().statusCode() != 400) {
+	  return;
+	}
+	boolean throttled = context.httpResponse().firstMatchingHeader("x-amzn-ErrorType")
+		.filter(type -> type.contains("ProvisionedThroughputExceeded") || type.contains("ThrottlingException")
+			|| type.contains("RequestLimitExceeded"))
+		.isPresent();
+	List<Reservation> reservations = executionAttributes.getAttribute(RESERVATIONS);
+	if (throttled && reservations != null) {
+	  reservations.forEach(reservation -> reservation.bucket().onThrottle());
+	}
+  }
+  
+  @Override
+  public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+	List<Reservation> reservations = executionAttributes.getAttribute(RESERVATIONS);
+	if (reservations == null) {
+	  return;
+	}
+	Map<String, Double> consumed = consumedCapacity(context.response());
+	for (Reservation reservation : reservations) {
+	  Double units = consumed.get(reservation.bucket().tableName());
+	  if (units != null) {
+		reservation.bucket().refund(reservation.units() - units);
+	  }
+	  reservation.bucket().onSuccess();
+	}
+  }
+  
+  private TokenBucket bucket(String tableName, boolean write) {
+	return buckets.computeIfAbsent(tableName + (write ? "#write" : "#read"),
+		name -> new TokenBucket(name, tableName, write ? initialWriteRate : initialReadRate));
+  }
+  
+  // Bookings (and the delegation stats written in the same transaction) are the critical path,
+  // full-table scans feed the catalogue and the batch jobs and are the first to be shed
+  static Priority priority(SdkRequest request) {
+	return switch (request) {
+	  case TransactWriteItemsRequest r -> Priority.CRITICAL;
+	  case PutItemRequest r when isBooking(r.item()) -> Priority.CRITICAL;
+	  case BatchWriteItemRequest r when r.requestItems().values().stream()
+		  .flatMap(Collection::stream)
+		  .anyMatch(write -> write.putRequest() != null && isBooking(write.putRequest().item())) -> Priority.CRITICAL;
+	  case ScanRequest r -> Priority.BACKGROUND;
+	  default -> Priority.NORMAL;
+	};
+  }
+  
+  // Pages after the first one of a scan or query
+  static boolean isNextPage(SdkRequest request) {
+	return switch (request) {
+	  case ScanRequest r -> r.hasExclusiveStartKey() && !r.exclusiveStartKey().isEmpty();
+	  case QueryRequest r -> r.hasExclusiveStartKey() && !r.exclusiveStartKey().isEmpty();
+	  default -> false;
+	};
+  }
+  
+  private static boolean isBooking(Map<String, AttributeValue> item) {
+	AttributeValue operation = item.get("operation");
+	return operation != null && operation.s() != null && operation.s().startsWith("booking");
+  }
+  
+  // Control plane calls (DescribeTable, ...) are not admission controlled
+  static List<Demand> demands(SdkRequest request) {
+	return switch (request) {
+	  case GetItemRequest r -> List.of(new Demand(r.tableName(), false, readUnits(r.consistentRead(), 1)));
+	  case QueryRequest r -> List.of(new Demand(r.tableName(), false, readUnits(r.consistentRead(), QUERY_ESTIMATE)));
+	  case ScanRequest r -> List.of(new Demand(r.tableName(), false,
+		  readUnits(r.consistentRead(), r.limit() == null ? FULL_PAGE_UNITS : Math.min(FULL_PAGE_UNITS, r.limit()))));
+	  case PutItemRequest r -> List.of(new Demand(r.tableName(), true, 1));
+	  case UpdateItemRequest r -> List.of(new Demand(r.tableName(), true, 1));
+	  case DeleteItemRequest r -> List.of(new Demand(r.tableName(), true, 1));
+	  case BatchGetItemRequest r -> {
+		List<Demand> demands = new ArrayList<>();
+		r.requestItems().forEach((tableName, keys) ->
+			demands.add(new Demand(tableName, false, readUnits(keys.consistentRead(), keys.keys().size()))));
+		yield demands;
+	  }
+	  case BatchWriteItemRequest r -> {
+		List<Demand> demands = new ArrayList<>();
+		r.requestItems().forEach((tableName, writes) -> demands.add(new Demand(tableName, true, writes.size())));
+		yield demands;
+	  }
+	  case TransactWriteItemsRequest r -> {
+		// Transactional writes cost two write units per item
+		Map<String, Double> units = new HashMap<>();
+		for (TransactWriteItem item : r.transactItems()) {
+		  units.merge(transactTable(item), 2.0, Double::sum);
+		}
+		yield units.entrySet().stream().map(e -> new Demand(e.getKey(), true, e.getValue())).toList();
+	  }
+	  case TransactGetItemsRequest r -> {
+		Map<String, Double> units = new HashMap<>();
+		r.transactItems().forEach(item -> units.merge(item.get().tableName(), 2.0, Double::sum));
+		yield units.entrySet().stream().map(e -> new Demand(e.getKey(), false, e.getValue())).toList();
+	  }
+	  default -> List.of();
+	};
+  }
+  
+  private static String transactTable(TransactWriteItem item) {
+	if (item.put() != null) {
+	  return item.put().tableName();
+	}
+	if (item.update() != null) {
+	  return item.update().tableName();
+	}
+	if (item.delete() != null) {
+	  return item.delete().tableName();
+	}
+	return item.conditionCheck().tableName();
+  }
+  
+  // Eventually consistent reads cost half
+  private static double readUnits(Boolean consistentRead, double units) {
+	return Boolean.TRUE.equals(consistentRead) ? units : units / 2;
+  }
+  
+  private static Map<String, Double> consumedCapacity(SdkResponse response) {
+	List<ConsumedCapacity> consumed = switch (response) {
+	  case GetItemResponse r -> single(r.consumedCapacity());
+	  case PutItemResponse r -> single(r.consumedCapacity());
+	  case UpdateItemResponse r -> single(r.consumedCapacity());
+	  case DeleteItemResponse r -> single(r.consumedCapacity());
+	  case QueryResponse r -> single(r.consumedCapacity());
+	  case ScanResponse r -> single(r.consumedCapacity());
+	  case BatchGetItemResponse r -> r.consumedCapacity();
+	  case BatchWriteItemResponse r -> r.consumedCapacity();
+	  case TransactGetItemsResponse r -> r.consumedCapacity();
+	  case TransactWriteItemsResponse r -> r.consumedCapacity();
+	  default -> List.of();
+	};
+	Map<String, Double> units = new HashMap<>();
+	for (ConsumedCapacity capacity : consumed) {
+	  if (capacity.tableName() != null && capacity.capacityUnits() != null) {
+		units.merge(capacity.tableName(), capacity.capacityUnits(), Double::sum);
+	  }
+	}
+	return units;
+  }
+  
+  private static List<ConsumedCapacity> single(ConsumedCapacity capacity) {
+	return capacity == null ? List.of() : List.of(capacity);
+  }
+  
+  record Demand(String tableName, boolean write, double units) {
+  }
+  
+  private record Reservation(TokenBucket bucket, double units) {
+  }
+  
+  private final class TokenBucket {
+	
+	private final String name;
+	private final String tableName;
+	private double rate;
+	private double tokens;
+	private long refilledAt;
+	private long increasedAt;
+	private long throttledAt;
+	
+	TokenBucket(String name, String tableName, double rate) {
+	  this.name = name;
+	  this.tableName = tableName;
+	  this.rate = rate;
+	  this.tokens = rate * burstSeconds;
+	  this.refilledAt = System.nanoTime();
+	  this.increasedAt = refilledAt;
+	  this.throttledAt = refilledAt - INCREASE_AFTER_THROTTLE_NANOS;
+	}
+	
+	String tableName() {
+	  return tableName;
+	}
+	
+	synchronized double rate() {
+	  return rate;
+	}
+	
+	// Takes the units and returns how long the caller has to wait before sending, or -1 when that
+	// would be longer than maxWait. The bucket must stay above reserve * capacity after the request;
+	// a request bigger than what is left above the reserve only needs the bucket full down to it.
+	synchronized long reserve(double units, double reserve, long maxWait) {
+	  refill(System.nanoTime());
+	  double capacity = rate * burstSeconds;
+	  double floor = capacity * reserve;
+	  double missing = floor + Math.min(units, capacity - floor) - tokens;
+	  long wait = missing <= 0 ? 0 : (long) (missing / rate * 1_000_000_000L);
+	  if (wait > maxWait) {
+		return -1;
+	  }
+	  tokens -= units;
+	  return wait;
+	}
+	
+	synchronized void refund(double units) {
+	  tokens = Math.min(rate * burstSeconds, tokens + units);
+	}
+	
+	synchronized void onThrottle() {
+	  long now = System.nanoTime();
+	  refill(now);
+	  // Every request in flight when the table started throttling reports it, back off once per burst
+	  if (now - throttledAt < THROTTLE_COOLDOWN_NANOS) {
+		return;
+	  }
+	  throttledAt = now;
+	  rate = Math.max(minRate, rate * decreaseFactor);
+	  tokens = Math.min(tokens, 0);
+	  log.info("{} throttled, rate lowered to {} units/s", name, Math.round(rate));
+	}
+	
+	synchronized void onSuccess() {
+	  long now = System.nanoTime();
+	  refill(now);
+	  // Probe for more capacity only while the bucket is actually the limit and has not throttled lately
+	  if (tokens < rate * burstSeconds / 2 && now - throttledAt > INCREASE_AFTER_THROTTLE_NANOS) {
+		rate = Math.min(maxRate, rate + increasePerSecond * (now - increasedAt) / 1e9);
+	  }
+	  increasedAt = now;
+	}
+	
+	private void refill(long now) {
+	  tokens = Math.min(rate * burstSeconds, tokens + rate * (now - refilledAt) / 1e9);
+	  refilledAt = now;
+	}
+	
+  }
+  
+}
@@ -0,0 +1,15 @@
+package com.pedro.apps.config;
+
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+// Thrown instead of sending a DynamoDB request when the table has no capacity left for the
+// request's priority. The SDK does not retry it: the caller fails fast instead of queueing up.
+public class DynamoDbOverloadedException extends SdkClientException {
+  
+  private static final long serialVersionUID = 1L;
+  
+  public DynamoDbOverloadedException(String message) {
+	super(SdkClientException.builder().message(message));
+  }
+  
+}
@@ -0,0 +1,167 @@
+package com.pedro.apps.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Runs repository reads and, for hedged ones, sends a second identical read when the first has not
+// answered after the p95 latency of the recent reads of the same operation; the first answer wins.
+// Hedges are limited to a budget (a fraction of all reads) so a slow table does not get twice the load.
+// Once one request has answered the other one is cancelled.
+@Component
+public class HedgedReads {
+  
+  private static final int MIN_SAMPLES = 50;
+  // The budget is kept in millionths of a hedge so it can live in one lock-free counter
+  private static final long TOKEN = 1_000_000;
+  private static final long MAX_BUDGET_TOKENS = 10 * TOKEN;
+  
+  private final Map<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  private final boolean enabled;
+  private final long initialDelayNanos;
+  private final long minDelayNanos;
+  private final long budgetPerRead;
+  private final AtomicLong budgetTokens = new AtomicLong(MAX_BUDGET_TOKENS);
+  
+  public HedgedReads(
+	  @Value("${dynamodb.hedging.enabled:true}") boolean enabled,
+	  @Value("${dynamodb.hedging.initial-delay-ms:20}") long initialDelayMillis,
+	  @Value("${dynamodb.hedging.min-delay-ms:2}") long minDelayMillis,
+	  @Value("${dynamodb.hedging.budget:0.1}") double budget) {
+	this.enabled = enabled;
+	this.initialDelayNanos = TimeUnit.MILLISECONDS.toNanos(initialDelayMillis);
+	this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+	this.budgetPerRead = Math.round(budget * TOKEN);
+  }
+  
+  // operation names the kind of read (e.g. "Delegations.get"), each kind has its own latency window
+  public <T> T read(String operation, ReadOptions options, Supplier<T> read) {
+	LatencyWindow window = windows.computeIfAbsent(operation, o -> new LatencyWindow());
+	earnBudget();
+	if (!enabled || !options.isHedged()) {
+	  long start = System.nanoTime();
+	  T result = read.get();
+	  window.record(System.nanoTime() - start);
+	  return result;
+	}
+	CompletableFuture<T> result = new CompletableFuture<>();
+	AtomicInteger inFlight = new AtomicInteger(1);
+	Future<?> first = executor.submit(() -> attempt(read, window, result, inFlight));
+	Future<?> hedge = null;
+	try {
+	  try {
+		return result.get(window.hedgeDelayNanos(initialDelayNanos, minDelayNanos), TimeUnit.NANOSECONDS);
+	  } catch (TimeoutException e) {
+		if (spendBudget()) {
+		  inFlight.incrementAndGet();
+		  hedge = executor.submit(() -> attempt(read, window, result, inFlight));
+		}
+	  }
+	  return result.join();
+	} catch (ExecutionException | CompletionException e) {
+	  throw unwrap(e.getCause());
+	} catch (InterruptedException e) {
+	  Thread.currentThread().interrupt();
+	  throw new IllegalStateException("Interrupted while reading " + operation, e);
+	} finally {
+	  // The loser is interrupted, which aborts its SDK call; its outcome is ignored since the result is set
+	  cancel(first);
+	  cancel(hedge);
+	}
+  }
+  
+  private static void cancel(Future<?> attempt) {
+	if (attempt != null && !attempt.isDone()) {
+	  attempt.cancel(true);
+	}
+  }
+  
+  // The read fails only when every request sent for it failed. Any Throwable completes it, so the caller never
+  // waits on a request that is gone. A loser cancelled after the other answered records the time until then,
+  // a lower bound of its latency: leaving it out would keep only the fast requests and lower the p95.
+  private <T> void attempt(Supplier<T> read, LatencyWindow window, CompletableFuture<T> result, AtomicInteger inFlight) {
+	long start = System.nanoTime();
+	try {
+	  T value = read.get();
+	  window.record(System.nanoTime() - start);
+	  result.complete(value);
+	} catch (Throwable e) {
+	  if (result.isDone()) {
+		window.record(System.nanoTime() - start);
+	  } else if (inFlight.decrementAndGet() == 0) {
+		result.completeExceptionally(e);
+	  }
+	}
+  }
+  
+  private void earnBudget() {
+	// Skips the write once the budget is full, which is the common case, to keep the counter uncontended
+	if (budgetTokens.get() < MAX_BUDGET_TOKENS) {
+	  budgetTokens.getAndUpdate(tokens -> Math.min(MAX_BUDGET_TOKENS, tokens + budgetPerRead));
+	}
+  }
+  
+  private boolean spendBudget() {
+	long tokens = budgetTokens.get();
+	while (tokens >= TOKEN) {
+	  if (budgetTokens.compareAndSet(tokens, tokens - TOKEN)) {
+		return true;
+	  }
+	  tokens = budgetTokens.get();
+	}
+	return false;
+  }
+  
+  private static RuntimeException unwrap(Throwable cause) {
+	if (cause instanceof Error error) {
+	  throw error;
+	}
+	return cause instanceof RuntimeException runtime ? runtime : new IllegalStateException(cause);
+  }
+  
+  // Ring of the latest read latencies; the p95 is recomputed at most every 100 ms
+  private static final class LatencyWindow {
+	
+	private static final long RECOMPUTE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	
+	private final long[] samples = new long[512];
+	private long count;
+	private long p95;
+	private long computedAt;
+	
+	synchronized void record(long nanos) {
+	  samples[(int) (count++ % samples.length)] = nanos;
+	}
+	
+	synchronized long hedgeDelayNanos(long initialDelay, long minDelay) {
+	  if (count < MIN_SAMPLES) {
+		return initialDelay;
+	  }
+	  long now = System.nanoTime();
+	  if (p95 == 0 || now - computedAt > RECOMPUTE_NANOS) {
+		long[] sorted = Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+		Arrays.sort(sorted);
+		p95 = sorted[(int) (sorted.length * 0.95)];
+		computedAt = now;
+	  }
+	  return Math.max(minDelay, p95);
+	}
+	
+  }
+  
+}
@@ -0,0 +1,46 @@
+package com.pedro.apps.config;
+
+// How a repository read is sent to DynamoDB. Eventually consistent reads cost half the capacity of
+// strongly consistent ones and are fine for the catalogue; reads that must see a write that just
+// happened (a user's own bookings) ask for strong consistency. Hedged reads send a second request
+// when the first one is slower than the recent p95 and keep whichever answers first.
+public final class ReadOptions {
+  
+  private static final ReadOptions EVENTUAL = new ReadOptions(false, false);
+  private static final ReadOptions STRONG = new ReadOptions(true, false);
+  
+  private final boolean consistentRead;
+  private final boolean hedged;
+  
+  private ReadOptions(boolean consistentRead, boolean hedged) {
+	this.consistentRead = consistentRead;
+	this.hedged = hedged;
+  }
+  
+  // The SDK default
+  public static ReadOptions eventual() {
+	return EVENTUAL;
+  }
+  
+  public static ReadOptions strong() {
+	return STRONG;
+  }
+  
+  public ReadOptions hedged() {
+	return new ReadOptions(consistentRead, true);
+  }
+  
+  public boolean isConsistentRead() {
+	return consistentRead;
+  }
+  
+  public boolean isHedged() {
+	return hedged;
+  }
+  
+  @Override
+  public String toString() {
+	return "ReadOptions{consistentRead=" + consistentRead + ", hedged=" + hedged + "}";
+  }
+  
+}
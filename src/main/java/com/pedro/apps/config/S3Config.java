@@ -0,0 +1,26 @@
+package com.pedro.apps.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+@Configuration
+public class S3Config {
+  
+  @Value("${aws.region:eu-central-1}")
+  private String region;
+  
+  // Only needed when the booking archive is kept in S3
+  @Bean
+  @ConditionalOnProperty(name = "archive.store", havingValue = "s3")
+  public S3Client s3Client() {
+	return S3Client.builder()
+		.credentialsProvider(DefaultCredentialsProvider.create())
+		.region(Region.of(region))
+		.build();
+  }
+}
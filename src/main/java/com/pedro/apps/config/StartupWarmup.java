@@ -0,0 +1,131 @@
+package com.pedro.apps.config;
+
+import com.pedro.apps.delegations.Car;
+import com.pedro.apps.delegations.CarCatalogueIndex;
+import com.pedro.apps.delegations.Delegation;
+import com.pedro.apps.delegations.DelegationDirectory;
+import com.pedro.apps.delegations.DelegationStats;
+import com.pedro.apps.users.Booking;
+import com.pedro.apps.users.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Does the expensive first-use work before the application reports ready, so the first users after
+// a scale-out do not pay for it. Runners finish before ApplicationReadyEvent, which is what flips the
+// readiness probe to ACCEPTING_TRAFFIC. Also logs how long the startup took, measured from JVM start.
+// Loading the fleet scans the Delegations table, so it is off by default (startup.warmup.load-fleet); with
+// changefeed.mode=streams the fleet snapshot is restored instead. With startup.exit-when-ready and the
+// startup-measurement profile the application exits once ready: the CDS training run of scripts/build-cds.sh
+// uses it so the archive also holds the classes used by the warm-up. Outside that profile the flag is ignored.
+@Component
+public class StartupWarmup implements ApplicationRunner {
+  
+  private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+  private static final String MEASUREMENT_PROFILE = "startup-measurement";
+  
+  private final DynamoDbClient dynamoDbClient;
+  private final CarCatalogueIndex carCatalogueIndex;
+  private final DelegationDirectory delegationDirectory;
+  private final boolean enabled;
+  private final int connections;
+  private final boolean loadFleet;
+  private final boolean exitWhenReady;
+  
+  @Autowired
+  public StartupWarmup(
+	  DynamoDbClient dynamoDbClient,
+	  CarCatalogueIndex carCatalogueIndex,
+	  DelegationDirectory delegationDirectory,
+	  @Value("${startup.warmup.enabled:true}") boolean enabled,
+	  @Value("${startup.warmup.connections:4}") int connections,
+	  @Value("${startup.warmup.load-fleet:false}") boolean loadFleet,
+	  @Value("${startup.exit-when-ready:false}") boolean exitWhenReady,
+	  Environment environment) {
+	this.dynamoDbClient = dynamoDbClient;
+	this.carCatalogueIndex = carCatalogueIndex;
+	this.delegationDirectory = delegationDirectory;
+	this.enabled = enabled;
+	this.connections = connections;
+	this.loadFleet = loadFleet;
+	this.exitWhenReady = exitWhenReady && environment.acceptsProfiles(Profiles.of(MEASUREMENT_PROFILE));
+	if (exitWhenReady && !this.exitWhenReady) {
+	  log.warn("startup.exit-when-ready is ignored without the {} profile", MEASUREMENT_PROFILE);
+	}
+  }
+  
+  @Override
+  public void run(ApplicationArguments args) {
+	if (!enabled) {
+	  return;
+	}
+	long start = System.nanoTime();
+	// Bean table schemas are built by reflection once and cached by the SDK
+	for (Class<?> bean : List.of(Car.class, Delegation.class, DelegationStats.class, Booking.class, User.class)) {
+	  TableSchema.fromBean(bean);
+	}
+	long schemasDone = System.nanoTime();
+	
+	// Concurrent calls open that many pooled connections (TLS handshake, credentials, endpoint resolution)
+	ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	List<CompletableFuture<Void>> calls = new ArrayList<>();
+	for (int i = 0; i < connections; i++) {
+	  String table = i % 2 == 0 ? "Delegations" : "Users";
+	  calls.add(CompletableFuture.runAsync(() -> dynamoDbClient.describeTable(r -> r.tableName(table)), executor));
+	}
+	try {
+	  CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).join();
+	} catch (RuntimeException e) {
+	  log.warn("DynamoDB warm-up failed, continuing: {}", e.toString());
+	} finally {
+	  executor.shutdown();
+	}
+	long connectionsDone = System.nanoTime();
+	
+	if (loadFleet) {
+	  try {
+		// No-ops when a fleet snapshot was restored
+		delegationDirectory.all();
+		if (!carCatalogueIndex.isLoaded()) {
+		  carCatalogueIndex.reload();
+		}
+	  } catch (RuntimeException e) {
+		log.warn("Fleet load failed, it will load on first use: {}", e.toString());
+	  }
+	}
+	long fleetDone = System.nanoTime();
+	log.info("Warm-up: schemas {} ms, connections {} ms, fleet {} ms",
+		millis(start, schemasDone), millis(schemasDone, connectionsDone), millis(connectionsDone, fleetDone));
+  }
+  
+  @EventListener(ApplicationReadyEvent.class)
+  public void ready(ApplicationReadyEvent event) {
+	// Parsed by scripts/measure-startup.sh
+	log.info("Ready {} ms after JVM start", ManagementFactory.getRuntimeMXBean().getUptime());
+	if (exitWhenReady) {
+	  System.exit(SpringApplication.exit(event.getApplicationContext()));
+	}
+  }
+  
+  private static long millis(long from, long to) {
+	return (to - from) / 1_000_000;
+  }
+}
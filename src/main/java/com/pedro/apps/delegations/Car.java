@@ -23,6 +23,9 @@ public class Car {
   public enum status {AVAILABLE, RENTED, MAINTENANCE, OUT_OF_ORDER}
   private Map<String, Boolean> bookingDates;
   
+  public Car() {
+  }
+  
   public Car(String delegationId, String operation, String carId, String make, String model, String year, String color, Boolean rented, float lat, float lon, int price, Map<String, Boolean> bookingDates) {
 	this.delegationId = delegationId;
 	this.operation = operation;
@@ -0,0 +1,381 @@
+package com.pedro.apps.delegations;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-memory search index over every car of every delegation.
+// Attributes are stored column by column: make, model and color are dictionary encoded with one
+// bitmap per distinct value, year and price are plain int columns and rented is a single bitmap.
+// A search ANDs the bitmaps, scans the range columns over the surviving rows and keeps the top `limit`
+// of them in a bounded heap.
+@Component
+public class CarCatalogueIndex {
+  
+  private final DelegationRepository delegationRepository;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  
+  // Row ids are assigned in insertion order and never reused, keyed by delegationId + "#" + operation
+  private final Map<String, Integer> rowByKey = new HashMap<>();
+  // Live row of each carId, so a car saved under another delegation replaces its old row
+  private final Map<String, Integer> rowByCarId = new HashMap<>();
+  private final List<Car> rows = new ArrayList<>();
+  private final Dictionary makes = new Dictionary();
+  private final Dictionary models = new Dictionary();
+  private final Dictionary colors = new Dictionary();
+  private int[] makeCodes = new int[1024];
+  private int[] modelCodes = new int[1024];
+  private int[] colorCodes = new int[1024];
+  private int[] years = new int[1024];
+  private int[] prices = new int[1024];
+  private final BitSet rentedRows = new BitSet();
+  // Rows of removed cars stay allocated but are left out of every search
+  private final BitSet liveRows = new BitSet();
+  // Upserts and removals made while reload() scans the table, replayed on top of the scan; null when no scan runs
+  private List<Runnable> changesDuringReload;
+  private volatile boolean loaded;
+  
+  @Autowired
+  public CarCatalogueIndex(DelegationRepository delegationRepository) {
+	this.delegationRepository = delegationRepository;
+  }
+  
+  public List<Car> search(CarSearchQuery query) {
+	ensureLoaded();
+	lock.readLock().lock();
+	try {
+	  BitSet match = (BitSet) liveRows.clone();
+	  if (!makes.filter(match, query.getMake())
+		  || !models.filter(match, query.getModel())
+		  || !colors.filter(match, query.getColor())) {
+		return List.of();
+	  }
+	  if (query.getRented() != null) {
+		if (query.getRented()) {
+		  match.and(rentedRows);
+		} else {
+		  match.andNot(rentedRows);
+		}
+	  }
+	  filterRange(match, years, query.getYearFrom(), query.getYearTo());
+	  filterRange(match, prices, query.getMinPrice(), query.getMaxPrice());
+	  
+	  int[] sortColumn = "price".equalsIgnoreCase(query.getSortBy()) ? prices
+		  : "year".equalsIgnoreCase(query.getSortBy()) ? years
+		  : null;
+	  int total = match.cardinality();
+	  int limit = query.getLimit() > 0 ? Math.min(query.getLimit(), total) : total;
+	  List<Car> result = new ArrayList<>(limit);
+	  if (sortColumn == null) {
+		for (int row = match.nextSetBit(0); row >= 0 && result.size() < limit; row = match.nextSetBit(row + 1)) {
+		  result.add(copy(rows.get(row)));
+		}
+		return result;
+	  }
+	  // Sort key in the high 32 bits, row id in the low 32 bits. The best limit matches so far are kept in a
+	  // max-heap whose root is the worst of them, so a small page over many matches only sorts the page.
+	  long[] heap = new long[limit];
+	  int n = 0;
+	  for (int row = match.nextSetBit(0); row >= 0 && limit > 0; row = match.nextSetBit(row + 1)) {
+		long key = query.isDescending() ? -(long) sortColumn[row] : sortColumn[row];
+		long packed = (key << 32) | row;
+		if (n < limit) {
+		  heap[n] = packed;
+		  siftUp(heap, n++);
+		} else if (packed < heap[0]) {
+		  heap[0] = packed;
+		  siftDown(heap, n);
+		}
+	  }
+	  Arrays.sort(heap, 0, n);
+	  for (int i = 0; i < n; i++) {
+		result.add(copy(rows.get((int) heap[i])));
+	  }
+	  return result;
+	} finally {
+	  lock.readLock().unlock();
+	}
+  }
+  
+  private static void siftUp(long[] heap, int i) {
+	while (i > 0 && heap[(i - 1) / 2] < heap[i]) {
+	  swap(heap, i, (i - 1) / 2);
+	  i = (i - 1) / 2;
+	}
+  }
+  
+  private static void siftDown(long[] heap, int size) {
+	int i = 0;
+	while (2 * i + 1 < size) {
+	  int child = 2 * i + 2 < size && heap[2 * i + 2] > heap[2 * i + 1] ? 2 * i + 2 : 2 * i + 1;
+	  if (heap[i] >= heap[child]) {
+		return;
+	  }
+	  swap(heap, i, child);
+	  i = child;
+	}
+  }
+  
+  private static void swap(long[] heap, int i, int j) {
+	long value = heap[i];
+	heap[i] = heap[j];
+	heap[j] = value;
+  }
+  
+  // Adds a car or replaces the indexed version of it, called after every saveCar
+  public void upsert(Car car) {
+	lock.writeLock().lock();
+	try {
+	  if (changesDuringReload != null) {
+		changesDuringReload.add(() -> upsertLocked(car));
+	  }
+	  upsertLocked(car);
+	} finally {
+	  lock.writeLock().unlock();
+	}
+  }
+  
+  private void upsertLocked(Car car) {
+	String key = car.getDelegationId() + "#" + car.getOperation();
+	Integer existing = rowByKey.get(key);
+	int row;
+	if (existing != null) {
+	  row = existing;
+	  String previousCarId = rows.get(row).getCarId();
+	  if (previousCarId != null && !previousCarId.equals(car.getCarId()) && existing.equals(rowByCarId.get(previousCarId))) {
+		// Same item, new carId: the old carId no longer lives here
+		rowByCarId.remove(previousCarId);
+	  }
+	  makes.clear(makeCodes[row], row);
+	  models.clear(modelCodes[row], row);
+	  colors.clear(colorCodes[row], row);
+	  rows.set(row, car);
+	} else {
+	  row = rows.size();
+	  rows.add(car);
+	  rowByKey.put(key, row);
+	  ensureCapacity(row + 1);
+	}
+	makeCodes[row] = makes.add(car.getMake(), row);
+	modelCodes[row] = models.add(car.getModel(), row);
+	colorCodes[row] = colors.add(car.getColor(), row);
+	years[row] = parseYear(car.getYear());
+	prices[row] = car.getPrice();
+	rentedRows.set(row, Boolean.TRUE.equals(car.getRented()));
+	liveRows.set(row);
+	if (car.getCarId() != null) {
+	  Integer previous = rowByCarId.put(car.getCarId(), row);
+	  if (previous != null && previous != row) {
+		// The car moved to another delegation, its old item is no longer the current one
+		liveRows.clear(previous);
+	  }
+	}
+  }
+  
+  // Drops a car from the search results, called when another node deletes it
+  public void remove(String delegationId, String operation) {
+	lock.writeLock().lock();
+	try {
+	  if (changesDuringReload != null) {
+		changesDuringReload.add(() -> removeLocked(delegationId, operation));
+	  }
+	  removeLocked(delegationId, operation);
+	} finally {
+	  lock.writeLock().unlock();
+	}
+  }
+  
+  private void removeLocked(String delegationId, String operation) {
+	Integer row = rowByKey.get(delegationId + "#" + operation);
+	if (row != null) {
+	  liveRows.clear(row);
+	  Car car = rows.get(row);
+	  if (car.getCarId() != null && row.equals(rowByCarId.get(car.getCarId()))) {
+		rowByCarId.remove(car.getCarId());
+	  }
+	}
+  }
+  
+  // Rebuilds the index from a full scan of the Delegations table. The scan runs without the lock, so changes
+  // that arrive meanwhile are applied to the current index and replayed on the new one.
+  public synchronized void reload() {
+	lock.writeLock().lock();
+	try {
+	  changesDuringReload = new ArrayList<>();
+	} finally {
+	  lock.writeLock().unlock();
+	}
+	List<Car> cars;
+	try {
+	  cars = delegationRepository.listAllCars();
+	} catch (RuntimeException e) {
+	  lock.writeLock().lock();
+	  try {
+		changesDuringReload = null;
+	  } finally {
+		lock.writeLock().unlock();
+	  }
+	  throw e;
+	}
+	lock.writeLock().lock();
+	try {
+	  List<Runnable> replay = changesDuringReload;
+	  changesDuringReload = null;
+	  load(cars);
+	  replay.forEach(Runnable::run);
+	} finally {
+	  lock.writeLock().unlock();
+	}
+  }
+  
+  // Replaces the whole index, e.g. with the cars of a fleet snapshot
+  public void load(List<Car> cars) {
+	lock.writeLock().lock();
+	try {
+	  rowByKey.clear();
+	  rowByCarId.clear();
+	  rows.clear();
+	  makes.reset();
+	  models.reset();
+	  colors.reset();
+	  rentedRows.clear();
+	  liveRows.clear();
+	  for (Car car : cars) {
+		upsertLocked(car);
+	  }
+	  loaded = true;
+	} finally {
+	  lock.writeLock().unlock();
+	}
+  }
+  
+  public boolean isLoaded() {
+	return loaded;
+  }
+  
+  // Every indexed car, in row order. Like search(), returns copies: the indexed rows are only changed through upsert
+  public List<Car> allCars() {
+	lock.readLock().lock();
+	try {
+	  List<Car> cars = new ArrayList<>(liveRows.cardinality());
+	  for (int row = liveRows.nextSetBit(0); row >= 0; row = liveRows.nextSetBit(row + 1)) {
+		cars.add(copy(rows.get(row)));
+	  }
+	  return cars;
+	} finally {
+	  lock.readLock().unlock();
+	}
+  }
+  
+  // Number of indexed cars of each delegation, rented or not
+  public Map<String, Integer> carCountByDelegation() {
+	ensureLoaded();
+	lock.readLock().lock();
+	try {
+	  Map<String, Integer> counts = new HashMap<>();
+	  for (int row = liveRows.nextSetBit(0); row >= 0; row = liveRows.nextSetBit(row + 1)) {
+		counts.merge(rows.get(row).getDelegationId(), 1, Integer::sum);
+	  }
+	  return counts;
+	} finally {
+	  lock.readLock().unlock();
+	}
+  }
+  
+  private static Car copy(Car car) {
+	Map<String, Boolean> bookingDates = car.getBookingDates() == null ? null : new HashMap<>(car.getBookingDates());
+	return new Car(car.getDelegationId(), car.getOperation(), car.getCarId(), car.getMake(), car.getModel(), car.getYear(),
+		car.getColor(), car.getRented(), car.getLat(), car.getLon(), car.getPrice(), bookingDates);
+  }
+  
+  private void ensureLoaded() {
+	if (!loaded) {
+	  synchronized (this) {
+		if (!loaded) {
+		  reload();
+		}
+	  }
+	}
+  }
+  
+  private void ensureCapacity(int size) {
+	if (size > prices.length) {
+	  int capacity = Math.max(size, prices.length * 2);
+	  makeCodes = Arrays.copyOf(makeCodes, capacity);
+	  modelCodes = Arrays.copyOf(modelCodes, capacity);
+	  colorCodes = Arrays.copyOf(colorCodes, capacity);
+	  years = Arrays.copyOf(years, capacity);
+	  prices = Arrays.copyOf(prices, capacity);
+	}
+  }
+  
+  private static void filterRange(BitSet match, int[] column, Integer from, Integer to) {
+	if (from == null && to == null) {
+	  return;
+	}
+	int min = from == null ? Integer.MIN_VALUE : from;
+	int max = to == null ? Integer.MAX_VALUE : to;
+	for (int row = match.nextSetBit(0); row >= 0; row = match.nextSetBit(row + 1)) {
+	  if (column[row] < min || column[row] > max) {
+		match.clear(row);
+	  }
+	}
+  }
+  
+  private static int parseYear(String year) {
+	try {
+	  return year == null ? 0 : Integer.parseInt(year.trim());
+	} catch (NumberFormatException e) {
+	  return 0;
+	}
+  }
+  
+  // Maps each distinct (case-insensitive) value to a code and keeps the bitmap of rows holding it
+  private static class Dictionary {
+	private final Map<String, Integer> codes = new HashMap<>();
+	private final List<BitSet> bitmaps = new ArrayList<>();
+	
+	int add(String value, int row) {
+	  Integer code = codes.computeIfAbsent(normalize(value), v -> {
+		bitmaps.add(new BitSet());
+		return bitmaps.size() - 1;
+	  });
+	  bitmaps.get(code).set(row);
+	  return code;
+	}
+	
+	void clear(int code, int row) {
+	  bitmaps.get(code).clear(row);
+	}
+	
+	// Returns false when the value is unknown, meaning nothing can match
+	boolean filter(BitSet match, String value) {
+	  if (value == null || value.isEmpty()) {
+		return true;
+	  }
+	  Integer code = codes.get(normalize(value));
+	  if (code == null) {
+		return false;
+	  }
+	  match.and(bitmaps.get(code));
+	  return true;
+	}
+	
+	void reset() {
+	  codes.clear();
+	  bitmaps.clear();
+	}
+	
+	private static String normalize(String value) {
+	  return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+	}
+  }
+}
@@ -0,0 +1,76 @@
+package com.pedro.apps.delegations;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Write sharding for delegations with very large fleets.
+// Car items of a sharded delegation are stored under the partition key "delegationId#shard", where the
+// shard comes from a stable hash of the car's sort key. The delegation profile and the cars written
+// before sharding was turned on stay under the plain delegationId.
+// Configured as delegations.car-shards=MAD01:8,BCN02:4 (delegations not listed are not sharded).
+// To change the shard count of a delegation, or to stop sharding it, deploy the new setting to every node and
+// then call DelegationRepository.reshardCars for it: that moves each car to its new partition and deletes the
+// old copy. Until then reads cover the shards of the highest count recorded for the delegation and return one
+// copy per car. Delegation ids must not end in "#<digits>", which is how shard partitions are recognised.
+@Component
+public class CarKeySharding {
+  
+  private static final char SEPARATOR = '#';
+  
+  private final Map<String, Integer> shardCounts = new HashMap<>();
+  
+  public CarKeySharding(@Value("${delegations.car-shards:}") String spec) {
+	for (String entry : spec.split(",")) {
+	  if (entry.isBlank()) {
+		continue;
+	  }
+	  String[] parts = entry.trim().split(":");
+	  int shards = Integer.parseInt(parts[1].trim());
+	  if (shards > 1) {
+		shardCounts.put(parts[0].trim(), shards);
+	  }
+	}
+  }
+  
+  public int shardCount(String delegationId) {
+	return shardCounts.getOrDefault(delegationId, 1);
+  }
+  
+  public boolean isSharded(String delegationId) {
+	return shardCount(delegationId) > 1;
+  }
+  
+  // Partition key a car with this sort key is written to
+  public String physicalKey(String delegationId, String operation) {
+	int shards = shardCount(delegationId);
+	if (shards <= 1) {
+	  return delegationId;
+	}
+	return shardKey(delegationId, Math.floorMod(operation.hashCode(), shards));
+  }
+  
+  public String shardKey(String delegationId, int shard) {
+	return delegationId + SEPARATOR + shard;
+  }
+  
+  // Strips the shard suffix from a partition key read back from the table. Also done for delegations that are
+  // no longer sharded, whose cars may still be stored in shards until they are resharded.
+  public String logicalKey(String partitionKey) {
+	if (partitionKey == null) {
+	  return null;
+	}
+	int separator = partitionKey.lastIndexOf(SEPARATOR);
+	if (separator <= 0 || separator == partitionKey.length() - 1) {
+	  return partitionKey;
+	}
+	for (int i = separator + 1; i < partitionKey.length(); i++) {
+	  if (!Character.isDigit(partitionKey.charAt(i))) {
+		return partitionKey;
+	  }
+	}
+	return partitionKey.substring(0, separator);
+  }
+}
@@ -0,0 +1,118 @@
+package com.pedro.apps.delegations;
+
+// Price of one available car for a requested date range, as returned by the quote engine
+public class CarQuote {
+  private String delegationId;
+  private String operation;
+  private String carId;
+  private String make;
+  private String model;
+  private String year;
+  private String color;
+  private int dailyRate;
+  private int days;
+  private double oneWaySurcharge;
+  private double total;
+  
+  public CarQuote(String delegationId, String operation, String carId, String make, String model, String year, String color, int dailyRate, int days, double oneWaySurcharge, double total) {
+	this.delegationId = delegationId;
+	this.operation = operation;
+	this.carId = carId;
+	this.make = make;
+	this.model = model;
+	this.year = year;
+	this.color = color;
+	this.dailyRate = dailyRate;
+	this.days = days;
+	this.oneWaySurcharge = oneWaySurcharge;
+	this.total = total;
+  }
+  
+  public String getDelegationId() {
+	return delegationId;
+  }
+  
+  public void setDelegationId(String delegationId) {
+	this.delegationId = delegationId;
+  }
+  
+  public String getOperation() {
+	return operation;
+  }
+  
+  public void setOperation(String operation) {
+	this.operation = operation;
+  }
+  
+  public String getCarId() {
+	return carId;
+  }
+  
+  public void setCarId(String carId) {
+	this.carId = carId;
+  }
+  
+  public String getMake() {
+	return make;
+  }
+  
+  public void setMake(String make) {
+	this.make = make;
+  }
+  
+  public String getModel() {
+	return model;
+  }
+  
+  public void setModel(String model) {
+	this.model = model;
+  }
+  
+  public String getYear() {
+	return year;
+  }
+  
+  public void setYear(String year) {
+	this.year = year;
+  }
+  
+  public String getColor() {
+	return color;
+  }
+  
+  public void setColor(String color) {
+	this.color = color;
+  }
+  
+  public int getDailyRate() {
+	return dailyRate;
+  }
+  
+  public void setDailyRate(int dailyRate) {
+	this.dailyRate = dailyRate;
+  }
+  
+  public int getDays() {
+	return days;
+  }
+  
+  public void setDays(int days) {
+	this.days = days;
+  }
+  
+  public double getOneWaySurcharge() {
+	return oneWaySurcharge;
+  }
+  
+  public void setOneWaySurcharge(double oneWaySurcharge) {
+	this.oneWaySurcharge = oneWaySurcharge;
+  }
+  
+  public double getTotal() {
+	return total;
+  }
+  
+  public void setTotal(double total) {
+	this.total = total;
+  }
+}
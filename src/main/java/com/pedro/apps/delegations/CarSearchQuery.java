@@ -0,0 +1,107 @@
+package com.pedro.apps.delegations;
+
+// Filter, sort and limit options for a catalogue search. Null fields are not filtered on.
+public class CarSearchQuery {
+  private String make;
+  private String model;
+  private String color;
+  private Integer yearFrom;
+  private Integer yearTo;
+  private Integer minPrice;
+  private Integer maxPrice;
+  private Boolean rented;
+  private String sortBy; // "price" or "year", unsorted otherwise
+  private boolean descending;
+  private int limit; // 0 returns every match
+  
+  public CarSearchQuery() {
+  }
+  
+  public String getMake() {
+	return make;
+  }
+  
+  public void setMake(String make) {
+	this.make = make;
+  }
+  
+  public String getModel() {
+	return model;
+  }
+  
+  public void setModel(String model) {
+	this.model = model;
+  }
+  
+  public String getColor() {
+	return color;
+  }
+  
+  public void setColor(String color) {
+	this.color = color;
+  }
+  
+  public Integer getYearFrom() {
+	return yearFrom;
+  }
+  
+  public void setYearFrom(Integer yearFrom) {
+	this.yearFrom = yearFrom;
+  }
+  
+  public Integer getYearTo() {
+	return yearTo;
+  }
+  
+  public void setYearTo(Integer yearTo) {
+	this.yearTo = yearTo;
+  }
+  
+  public Integer getMinPrice() {
+	return minPrice;
+  }
+  
+  public void setMinPrice(Integer minPrice) {
+	this.minPrice = minPrice;
+  }
+  
+  public Integer getMaxPrice() {
+	return maxPrice;
+  }
+  
+  public void setMaxPrice(Integer maxPrice) {
+	this.maxPrice = maxPrice;
+  }
+  
+  public Boolean getRented() {
+	return rented;
+  }
+  
+  public void setRented(Boolean rented) {
+	this.rented = rented;
+  }
+  
+  public String getSortBy() {
+	return sortBy;
+  }
+  
+  public void setSortBy(String sortBy) {
+	this.sortBy = sortBy;
+  }
+  
+  public boolean isDescending() {
+	return descending;
+  }
+  
+  public void setDescending(boolean descending) {
+	this.descending = descending;
+  }
+  
+  public int getLimit() {
+	return limit;
+  }
+  
+  public void setLimit(int limit) {
+	this.limit = limit;
+  }
+}
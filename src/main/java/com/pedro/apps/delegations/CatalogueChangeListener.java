@@ -0,0 +1,63 @@
+package com.pedro.apps.delegations;
+
+import com.pedro.apps.changefeed.ChangeEvent;
+import com.pedro.apps.changefeed.ChangeFeed;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+
+// Keeps the car catalogue index and the delegation directory of this node in sync with the writes made by any node
+@Component
+public class CatalogueChangeListener {
+  
+  private static final TableSchema<Car> CAR_SCHEMA = TableSchema.fromBean(Car.class);
+  private static final TableSchema<Delegation> DELEGATION_SCHEMA = TableSchema.fromBean(Delegation.class);
+  
+  private final ChangeFeed changeFeed;
+  private final CarCatalogueIndex carCatalogueIndex;
+  private final DelegationDirectory delegationDirectory;
+  private final CarKeySharding sharding;
+  
+  @Autowired
+  public CatalogueChangeListener(ChangeFeed changeFeed, CarCatalogueIndex carCatalogueIndex, DelegationDirectory delegationDirectory, CarKeySharding sharding) {
+	this.changeFeed = changeFeed;
+	this.carCatalogueIndex = carCatalogueIndex;
+	this.delegationDirectory = delegationDirectory;
+	this.sharding = sharding;
+  }
+  
+  @PostConstruct
+  public void subscribe() {
+	changeFeed.subscribe("Delegations", this::onChange);
+  }
+  
+  void onChange(ChangeEvent event) {
+	String operation = event.key("operation");
+	if ("profile".equals(operation)) {
+	  if (event.getType() == ChangeEvent.Type.REMOVE) {
+		delegationDirectory.remove(event.key("delegationId"));
+	  } else if (event.getNewImage() != null) {
+		delegationDirectory.upsert(DELEGATION_SCHEMA.mapToItem(event.getNewImage()));
+	  }
+	  return;
+	}
+	// Besides profiles only car items are kept in memory, the stats partitions share the table too
+	if (operation == null || !operation.startsWith("car")) {
+	  return;
+	}
+	if (event.getType() == ChangeEvent.Type.REMOVE) {
+	  String partitionKey = event.key("delegationId");
+	  String delegationId = sharding.logicalKey(partitionKey);
+	  // A stale copy deleted by reshardCars: the car itself lives on in the partition it belongs to now
+	  if (partitionKey.equals(sharding.physicalKey(delegationId, operation))) {
+		carCatalogueIndex.remove(delegationId, operation);
+	  }
+	} else if (event.getNewImage() != null) {
+	  Car car = CAR_SCHEMA.mapToItem(event.getNewImage());
+	  // Items of sharded delegations are stored under "delegationId#shard"
+	  car.setDelegationId(sharding.logicalKey(car.getDelegationId()));
+	  carCatalogueIndex.upsert(car);
+	}
+  }
+}
@@ -18,6 +18,9 @@ public class Delegation {
   private String phone;
   private String email;
   
+  public Delegation() {
+  }
+  
   public Delegation(String delegationId, String operation, String name, String address, String city, float latDelegation, float lonDelegation, int availableCarQty, String phone, String email) {
 	this.delegationId = delegationId;
 	this.operation = operation;
@@ -0,0 +1,118 @@
+package com.pedro.apps.delegations;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// In-memory copy of every delegation profile (operation = "profile"), kept current by saveDelegation
+// and the change feed, so lookups such as the quote engine's do not hit DynamoDB
+@Component
+public class DelegationDirectory {
+  
+  private static final String PROFILE = "profile";
+  
+  private final DelegationRepository delegationRepository;
+  // Replaced as a whole by load() and reload(), so readers never see a half-filled directory
+  private volatile Map<String, Delegation> profiles = new ConcurrentHashMap<>();
+  // Upserts and removals made while reload() scans the table, replayed on top of the scan; null when no scan runs
+  private List<Consumer<Map<String, Delegation>>> changesDuringReload;
+  // Guards the swap of profiles and changesDuringReload, held only briefly so the feed never waits for a scan
+  private final Object changeLock = new Object();
+  private volatile boolean loaded;
+  
+  @Autowired
+  public DelegationDirectory(DelegationRepository delegationRepository) {
+	this.delegationRepository = delegationRepository;
+  }
+  
+  public Delegation get(String delegationId) {
+	ensureLoaded();
+	return profiles.get(delegationId);
+  }
+  
+  public List<Delegation> all() {
+	ensureLoaded();
+	return new ArrayList<>(profiles.values());
+  }
+  
+  public void upsert(Delegation delegation) {
+	if (PROFILE.equals(delegation.getOperation())) {
+	  apply(map -> map.put(delegation.getDelegationId(), delegation));
+	}
+  }
+  
+  public void remove(String delegationId) {
+	apply(map -> map.remove(delegationId));
+  }
+  
+  private void apply(Consumer<Map<String, Delegation>> change) {
+	synchronized (changeLock) {
+	  if (changesDuringReload != null) {
+		changesDuringReload.add(change);
+	  }
+	  change.accept(profiles);
+	}
+  }
+  
+  // Replaces every profile, e.g. with the delegations of a fleet snapshot
+  public synchronized void load(List<Delegation> delegations) {
+	Map<String, Delegation> loadedProfiles = profilesOf(delegations);
+	synchronized (changeLock) {
+	  profiles = loadedProfiles;
+	  loaded = true;
+	}
+  }
+  
+  // Rebuilds the directory from a full scan of the Delegations table. The scan runs without the change lock, so
+  // changes that arrive meanwhile are applied to the current directory and replayed on the new one.
+  public synchronized void reload() {
+	synchronized (changeLock) {
+	  changesDuringReload = new ArrayList<>();
+	}
+	List<Delegation> delegations;
+	try {
+	  delegations = delegationRepository.listAllDelegations();
+	} catch (RuntimeException e) {
+	  synchronized (changeLock) {
+		changesDuringReload = null;
+	  }
+	  throw e;
+	}
+	Map<String, Delegation> loadedProfiles = profilesOf(delegations);
+	synchronized (changeLock) {
+	  changesDuringReload.forEach(change -> change.accept(loadedProfiles));
+	  changesDuringReload = null;
+	  profiles = loadedProfiles;
+	  loaded = true;
+	}
+  }
+  
+  private static Map<String, Delegation> profilesOf(List<Delegation> delegations) {
+	Map<String, Delegation> map = new ConcurrentHashMap<>();
+	for (Delegation delegation : delegations) {
+	  if (PROFILE.equals(delegation.getOperation())) {
+		map.put(delegation.getDelegationId(), delegation);
+	  }
+	}
+	return map;
+  }
+  
+  public boolean isLoaded() {
+	return loaded;
+  }
+  
+  private void ensureLoaded() {
+	if (!loaded) {
+	  synchronized (this) {
+		if (!loaded) {
+		  reload();
+		}
+	  }
+	}
+  }
+}
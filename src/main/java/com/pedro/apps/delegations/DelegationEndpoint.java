@@ -1,7 +1,9 @@
 package com.pedro.apps.delegations;
 
+import com.pedro.apps.config.ReadOptions;
 import com.vaadin.flow.server.auth.AnonymousAllowed;
 import com.vaadin.hilla.Endpoint;
+import jakarta.annotation.security.RolesAllowed;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.List;
@@ -11,40 +13,48 @@ import java.util.List;
 public class DelegationEndpoint {
   
   private final DelegationRepository delegationRepository;
+  private final QuoteEngine quoteEngine;
+  private final CarCatalogueIndex carCatalogueIndex;
+  private final DelegationDirectory delegationDirectory;
   
   @Autowired
-  public DelegationEndpoint(DelegationRepository delegationRepository) {
+  public DelegationEndpoint(DelegationRepository delegationRepository, QuoteEngine quoteEngine, CarCatalogueIndex carCatalogueIndex, DelegationDirectory delegationDirectory) {
 	this.delegationRepository = delegationRepository;
+	this.quoteEngine = quoteEngine;
+	this.carCatalogueIndex = carCatalogueIndex;
+	this.delegationDirectory = delegationDirectory;
   }
   
   //Save Delegation
   public void saveDelegation(Delegation delegation) {
 	delegationRepository.save(delegation);
+	delegationDirectory.upsert(delegation);
   }
   
   //Save Car
   public void saveCar(Car car) {
 	delegationRepository.save(car);
+	carCatalogueIndex.upsert(car);
   }
   
   //Get Delegation by keys
   public Delegation getDelegation(String delegationId, String operation) {
-	return delegationRepository.get(delegationId, operation, Delegation.class);
+	return delegationRepository.get(delegationId, operation, Delegation.class, ReadOptions.eventual().hedged());
   }
   
   //Get Car by keys
   public Car getCar(String carId, String operation) {
-	return delegationRepository.get(carId, operation, Car.class);
+	return delegationRepository.get(carId, operation, Car.class, ReadOptions.eventual().hedged());
   }
   
   // List Delegations by delegationId
   public List<Delegation> listDelegationsById(String delegationId) {
-	return delegationRepository.listByPartitionKey(delegationId, Delegation.class);
+	return delegationRepository.listByPartitionKey(delegationId, Delegation.class, ReadOptions.eventual().hedged());
   }
   
   // List Cars by id (partition key)
   public List<Car> listCarsById(String carId) {
-	return delegationRepository.listByPartitionKey(carId, Car.class);
+	return delegationRepository.listByPartitionKey(carId, Car.class, ReadOptions.eventual().hedged());
   }
   
   //List all cars for all delegations
@@ -57,4 +67,30 @@ public class DelegationEndpoint {
 	return delegationRepository.listAllDelegations();
   }
   
+  //Quote every available car of a delegation for a date range (yyyy-MM-dd), cheapest first
+  public List<CarQuote> quoteCars(String pickUpDelegationId, String deliverDelegationId, String startDate, String endDate) {
+	return quoteEngine.quote(pickUpDelegationId, deliverDelegationId, startDate, endDate);
+  }
+  
+  //Search the car catalogue with filters, sorting and a result limit
+  public List<Car> searchCars(CarSearchQuery query) {
+	return carCatalogueIndex.search(query);
+  }
+  
+  //Move the cars of a delegation to the shards of its configured shard count, administrators only
+  @RolesAllowed("ADMIN")
+  public int reshardCars(String delegationId) {
+	return delegationRepository.reshardCars(delegationId);
+  }
+  
+  //Get the aggregated stats (totals and utilisation) of the given delegations
+  public List<DelegationStats> getDelegationStats(List<String> delegationIds) {
+	return delegationRepository.getStats(delegationIds);
+  }
+  
+  //Get the daily stats of a delegation between two dates (yyyy-MM-dd)
+  public List<DelegationStats> getDailyStats(String delegationId, String fromDate, String toDate) {
+	return delegationRepository.listDailyStats(delegationId, fromDate, toDate);
+  }
+  
 }
\ No newline at end of file
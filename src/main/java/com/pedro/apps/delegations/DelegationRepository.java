@@ -1,5 +1,7 @@
 package com.pedro.apps.delegations;
 
+import com.pedro.apps.config.ReadOptions;
+
 import java.util.List;
 
 //This interface defines methods for interacting with a DynamoDB database in a car delegation/rental system
@@ -12,10 +14,27 @@ public interface DelegationRepository {
   
   <T> List<T> listByPartitionKey(String partitionKey, Class<T> clazz);
   
+  //Same reads with the consistency (eventual or strong) and hedging chosen by the caller, the methods above read eventually consistent without hedging
+  <T> T get(String partitionKey, String sortKey, Class<T> clazz, ReadOptions options);
+  
+  <T> List<T> listByPartitionKey(String partitionKey, Class<T> clazz, ReadOptions options);
+  
   //Specific methods where both Car and Delegation classes are annotated with DynamoDB and use @DynamoDbBean annotations
   List<Car> listAllCars();
   
   List<Delegation> listAllDelegations();
   
   <T> List<T> listAllItems(Class<T> clazz);
+  
+  //Moves every car of a delegation to the partition its configured shard count puts it in and deletes the copies left
+  //in other partitions, returns the number of cars moved. Run once after changing delegations.car-shards on every node.
+  int reshardCars(String delegationId);
+  
+  //Aggregated stats: the totals item of each delegation and the daily items of one delegation between two dates (yyyy-MM-dd)
+  List<DelegationStats> getStats(List<String> delegationIds);
+  
+  List<DelegationStats> listDailyStats(String delegationId, String fromDate, String toDate);
+  
+  //Writes the rollup fields of the totals item without touching its counters
+  void saveStatsRollup(DelegationStats rollup);
 }
\ No newline at end of file
@@ -1,56 +1,321 @@
 package com.pedro.apps.delegations;
 
+import com.pedro.apps.changefeed.ChangeEvent;
+import com.pedro.apps.changefeed.InMemoryChangeFeed;
+import com.pedro.apps.config.HedgedReads;
+import com.pedro.apps.config.ReadOptions;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 import software.amazon.awssdk.enhanced.dynamodb.*;
+import software.amazon.awssdk.enhanced.dynamodb.model.GetItemEnhancedRequest;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.ReadBatch;
 import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Repository
 public class DelegationRepositoryImpl implements DelegationRepository {
   
+  private static final int MAX_BATCH_GET = 100;
+  private static final String SHARD_LAYOUT = "shardLayout";
+  private static final long SHARD_LAYOUT_CACHE_MILLIS = 60_000;
+  
   private final DynamoDbEnhancedClient enhancedClient;
+  private final DynamoDbClient dynamoDbClient;
   private final String tableName = "Delegations";
+  private final CarKeySharding sharding;
+  private final HedgedReads hedgedReads;
+  // Only present with changefeed.mode=local, which has no DynamoDB Streams behind it
+  private final InMemoryChangeFeed localChangeFeed;
+  // Shard partitions of a sharded delegation are queried concurrently
+  private final ExecutorService scatterExecutor = Executors.newVirtualThreadPerTaskExecutor();
+  private final Map<String, CachedShardCount> shardCounts = new ConcurrentHashMap<>();
   
   @Autowired
-  public DelegationRepositoryImpl(DynamoDbEnhancedClient enhancedClient) {
+  public DelegationRepositoryImpl(DynamoDbEnhancedClient enhancedClient, DynamoDbClient dynamoDbClient, CarKeySharding sharding, HedgedReads hedgedReads, ObjectProvider<InMemoryChangeFeed> localChangeFeed) {
 	this.enhancedClient = enhancedClient;
+	this.dynamoDbClient = dynamoDbClient;
+	this.sharding = sharding;
+	this.hedgedReads = hedgedReads;
+	this.localChangeFeed = localChangeFeed.getIfAvailable();
   }
   
   @Override
   public <T> void save(T item) {
+	TableSchema<T> schema = TableSchema.fromBean((Class<T>) item.getClass());
 	DynamoDbTable<T> table =
 		enhancedClient.table(
 			tableName,
-			TableSchema.fromBean((Class<T>) item.getClass()));
+			schema);
+	if (item instanceof Car car && sharding.isSharded(car.getDelegationId())) {
+	  recordShardCount(car.getDelegationId());
+	  // Write a copy under the shard partition, the caller's car keeps the plain delegationId
+	  Map<String, AttributeValue> image = new HashMap<>(schema.itemToMap(item, true));
+	  image.put("delegationId", AttributeValue.fromS(sharding.physicalKey(car.getDelegationId(), car.getOperation())));
+	  table.putItem(schema.mapToItem(image));
+	  publishLocally(image);
+	  return;
+	}
 	table.putItem(item);
+	publishLocally(schema.itemToMap(item, true));
+  }
+  
+  // With the local change feed the writes of this process are the whole feed
+  private void publishLocally(Map<String, AttributeValue> image) {
+	if (localChangeFeed == null) {
+	  return;
+	}
+	Map<String, AttributeValue> keys = Map.of("delegationId", image.get("delegationId"), "operation", image.get("operation"));
+	localChangeFeed.publish(new ChangeEvent(tableName, ChangeEvent.Type.MODIFY, keys, image));
+  }
+  
+  @PreDestroy
+  public void stop() {
+	scatterExecutor.shutdown();
   }
   
   @Override
   public <T> T get(String partitionKey, String sortKey, Class<T> clazz) {
+	return get(partitionKey, sortKey, clazz, ReadOptions.eventual());
+  }
+  
+  @Override
+  public <T> T get(String partitionKey, String sortKey, Class<T> clazz, ReadOptions options) {
 	DynamoDbTable<T> table = enhancedClient.table(tableName, TableSchema.fromBean(clazz));
-	Key key = Key.builder()
-		.partitionValue(partitionKey)
-		.sortValue(sortKey)
+	if (clazz != Car.class) {
+	  return getItem(table, partitionKey, sortKey, options);
+	}
+	String physicalKey = sharding.physicalKey(partitionKey, sortKey);
+	T item = getItem(table, physicalKey, sortKey, options);
+	if (item != null) {
+	  return restoreLogicalKey(item);
+	}
+	// Not where it belongs: the car may still be in the base partition or the shard of an earlier shard count
+	List<CompletableFuture<T>> elsewhere = new ArrayList<>();
+	for (String candidate : carPartitions(partitionKey)) {
+	  if (!candidate.equals(physicalKey)) {
+		elsewhere.add(CompletableFuture.supplyAsync(() -> getItem(table, candidate, sortKey, options), scatterExecutor));
+	  }
+	}
+	return elsewhere.stream().map(CompletableFuture::join).filter(Objects::nonNull).findFirst().map(this::restoreLogicalKey).orElse(null);
+  }
+  
+  private <T> T getItem(DynamoDbTable<T> table, String partitionKey, String sortKey, ReadOptions options) {
+	GetItemEnhancedRequest request = GetItemEnhancedRequest.builder()
+		.key(key(partitionKey, sortKey))
+		.consistentRead(options.isConsistentRead())
 		.build();
-	return table.getItem(key);
+	return hedgedReads.read(tableName + ".get", options, () -> table.getItem(request));
   }
   
   @Override
   public <T> List<T> listByPartitionKey(String partitionKey, Class<T> clazz) {
+	return listByPartitionKey(partitionKey, clazz, ReadOptions.eventual());
+  }
+  
+  @Override
+  public <T> List<T> listByPartitionKey(String partitionKey, Class<T> clazz, ReadOptions options) {
 	DynamoDbTable<T> table = enhancedClient.table(tableName, TableSchema.fromBean(clazz));
-	QueryConditional queryConditional = QueryConditional.keyEqualTo(k -> k.partitionValue(partitionKey));
+	List<String> partitionKeys = carPartitions(partitionKey);
+	if (partitionKeys.size() == 1) {
+	  return restoreLogicalKeys(table.tableSchema(), queryPartition(table, partitionKey, options));
+	}
+	// Scatter-gather over the base partition (profile and unsharded cars) and every shard that may hold cars
+	List<CompletableFuture<List<T>>> partitions = new ArrayList<>();
+	for (String key : partitionKeys) {
+	  partitions.add(CompletableFuture.supplyAsync(() -> queryPartition(table, key, options), scatterExecutor));
+	}
 	List<T> items = new ArrayList<>();
-	table.query(queryConditional).items().forEach(items::add);
-	return items;
+	partitions.forEach(partition -> items.addAll(partition.join()));
+	return restoreLogicalKeys(table.tableSchema(), items);
+  }
+  
+  // A hedged partition query re-runs the whole query (all pages) when the first one is slow
+  private <T> List<T> queryPartition(DynamoDbTable<T> table, String partitionKey, ReadOptions options) {
+	QueryEnhancedRequest request = QueryEnhancedRequest.builder()
+		.queryConditional(QueryConditional.keyEqualTo(k -> k.partitionValue(partitionKey)))
+		.consistentRead(options.isConsistentRead())
+		.build();
+	return hedgedReads.read(tableName + ".query", options, () -> {
+	  List<T> items = new ArrayList<>();
+	  table.query(request).items().forEach(items::add);
+	  return items;
+	});
+  }
+  
+  private static Key key(String partitionKey, String sortKey) {
+	return Key.builder()
+		.partitionValue(partitionKey)
+		.sortValue(sortKey)
+		.build();
+  }
+  
+  // A car saved again after the shard count of its delegation changed (or after sharding was turned on) exists
+  // more than once until reshardCars cleans up: the current copy in the partition it is written to now and
+  // stale ones in the base partition or the shard of an earlier count. Only one copy is returned, the one
+  // where the car belongs, else a shard copy rather than the base one. The layout items are left out.
+  private <T> List<T> restoreLogicalKeys(TableSchema<T> schema, List<T> items) {
+	Map<String, T> byCar = new LinkedHashMap<>();
+	Map<String, Integer> rankByCar = new HashMap<>();
+	for (T item : items) {
+	  String partitionKey = stringAttribute(schema, item, "delegationId");
+	  String operation = stringAttribute(schema, item, "operation");
+	  if (SHARD_LAYOUT.equals(operation)) {
+		continue;
+	  }
+	  String delegationId = sharding.logicalKey(partitionKey);
+	  int rank = partitionKey == null || operation == null ? 0
+		  : partitionKey.equals(sharding.physicalKey(delegationId, operation)) ? 2
+		  : partitionKey.equals(delegationId) ? 0 : 1;
+	  String car = delegationId + '\n' + operation;
+	  Integer best = rankByCar.get(car);
+	  if (best == null || rank > best) {
+		byCar.put(car, item);
+		rankByCar.put(car, rank);
+	  }
+	}
+	List<T> restored = new ArrayList<>(byCar.size());
+	byCar.values().forEach(item -> restored.add(restoreLogicalKey(item)));
+	return restored;
+  }
+  
+  private static <T> String stringAttribute(TableSchema<T> schema, T item, String attribute) {
+	AttributeValue value = schema.attributeValue(item, attribute);
+	return value == null ? null : value.s();
   }
   
+  // Cars read from a shard partition carry "delegationId#shard", callers only ever see the delegationId
+  private <T> T restoreLogicalKey(T item) {
+	if (item instanceof Car car) {
+	  car.setDelegationId(sharding.logicalKey(car.getDelegationId()));
+	}
+	return item;
+  }
+  
+  
+  // Partitions that may hold cars of a delegation: the base partition, plus every shard of the configured
+  // shard count or of the highest count recorded in its layout item, whichever is larger
+  private List<String> carPartitions(String delegationId) {
+	int shards = Math.max(sharding.shardCount(delegationId), recordedShardCount(delegationId));
+	List<String> partitionKeys = new ArrayList<>();
+	partitionKeys.add(delegationId);
+	for (int shard = 0; shards > 1 && shard < shards; shard++) {
+	  partitionKeys.add(sharding.shardKey(delegationId, shard));
+	}
+	return partitionKeys;
+  }
+  
+  // The layout item ("shardLayout" in the base partition) holds the highest shard count cars of the delegation
+  // may be stored under. Cached for a while: a node only misses shards when another node runs a higher count.
+  private int recordedShardCount(String delegationId) {
+	long now = System.currentTimeMillis();
+	CachedShardCount cached = shardCounts.get(delegationId);
+	if (cached != null && cached.expiresAt() > now) {
+	  return cached.shards();
+	}
+	Map<String, AttributeValue> item = dynamoDbClient.getItem(r -> r
+		.tableName(tableName)
+		.key(Map.of(
+			"delegationId", AttributeValue.fromS(delegationId),
+			"operation", AttributeValue.fromS(SHARD_LAYOUT)))).item();
+	int shards = item == null || !item.containsKey("maxShards") ? 1 : Integer.parseInt(item.get("maxShards").n());
+	shardCounts.put(delegationId, new CachedShardCount(shards, now + SHARD_LAYOUT_CACHE_MILLIS));
+	return shards;
+  }
+  
+  // Raises the recorded shard count to the configured one before the first write to a shard of this process
+  private void recordShardCount(String delegationId) {
+	int shards = sharding.shardCount(delegationId);
+	if (recordedShardCount(delegationId) >= shards) {
+	  return;
+	}
+	try {
+	  dynamoDbClient.updateItem(r -> r
+		  .tableName(tableName)
+		  .key(Map.of(
+			  "delegationId", AttributeValue.fromS(delegationId),
+			  "operation", AttributeValue.fromS(SHARD_LAYOUT)))
+		  .updateExpression("SET maxShards = :shards")
+		  .conditionExpression("attribute_not_exists(maxShards) OR maxShards < :shards")
+		  .expressionAttributeValues(Map.of(":shards", AttributeValue.fromN(Integer.toString(shards)))));
+	} catch (ConditionalCheckFailedException e) {
+	  // Another node recorded an equal or higher count
+	}
+	shardCounts.remove(delegationId);
+  }
+  
+  @Override
+  public int reshardCars(String delegationId) {
+	DynamoDbTable<Car> table = enhancedClient.table(tableName, TableSchema.fromBean(Car.class));
+	List<CompletableFuture<List<Car>>> partitions = new ArrayList<>();
+	for (String key : carPartitions(delegationId)) {
+	  partitions.add(CompletableFuture.supplyAsync(() -> queryPartition(table, key, ReadOptions.strong()), scatterExecutor));
+	}
+	// operation -> every stored copy of the car
+	Map<String, List<Car>> copies = new LinkedHashMap<>();
+	partitions.forEach(partition -> partition.join().stream()
+		.filter(car -> car.getOperation() != null && car.getOperation().startsWith("car"))
+		.forEach(car -> copies.computeIfAbsent(car.getOperation(), o -> new ArrayList<>()).add(car)));
+	int moved = 0;
+	for (Map.Entry<String, List<Car>> car : copies.entrySet()) {
+	  String target = sharding.physicalKey(delegationId, car.getKey());
+	  List<Car> kept = restoreLogicalKeys(table.tableSchema(), copiesOf(car.getValue()));
+	  if (car.getValue().stream().noneMatch(copy -> copy.getDelegationId().equals(target))) {
+		// Written before the stale copies are deleted, so the car is never missing
+		Map<String, AttributeValue> image = new HashMap<>(table.tableSchema().itemToMap(kept.get(0), true));
+		image.put("delegationId", AttributeValue.fromS(target));
+		table.putItem(table.tableSchema().mapToItem(image));
+		publishLocally(image);
+		moved++;
+	  }
+	  for (Car copy : car.getValue()) {
+		if (!copy.getDelegationId().equals(target)) {
+		  table.deleteItem(key(copy.getDelegationId(), copy.getOperation()));
+		}
+	  }
+	}
+	// Every car now is where the configured count puts it, reads stop looking at the shards of earlier counts
+	int shards = sharding.shardCount(delegationId);
+	Map<String, AttributeValue> layoutKey = Map.of(
+		"delegationId", AttributeValue.fromS(delegationId),
+		"operation", AttributeValue.fromS(SHARD_LAYOUT));
+	if (shards > 1) {
+	  dynamoDbClient.putItem(r -> r.tableName(tableName).item(Map.of(
+		  "delegationId", layoutKey.get("delegationId"),
+		  "operation", layoutKey.get("operation"),
+		  "maxShards", AttributeValue.fromN(Integer.toString(shards)))));
+	} else {
+	  dynamoDbClient.deleteItem(r -> r.tableName(tableName).key(layoutKey));
+	}
+	shardCounts.remove(delegationId);
+	return moved;
+  }
+  
+  // restoreLogicalKeys rewrites the delegationId of the cars it returns, the copies keep their partition key
+  private static List<Car> copiesOf(List<Car> cars) {
+	TableSchema<Car> schema = TableSchema.fromBean(Car.class);
+	return cars.stream().map(car -> schema.mapToItem(schema.itemToMap(car, true))).toList();
+  }
   
   @Override
   public List<Car> listAllCars() {
@@ -73,8 +338,8 @@ public class DelegationRepositoryImpl implements DelegationRepository {
 		.build(); // Construct the ScanEnhancedRequest object
 	// Execute the scan operation and iterate over the results, adding each Car item to the cars list
 	table.scan(scanRequest).items().forEach(cars::add);
-	// Return the list of Car objects
-	return cars;
+	// Return the list of Car objects, with the shard suffix stripped and stale pre-sharding copies dropped
+	return restoreLogicalKeys(table.tableSchema(), cars);
   }
   
   @Override
@@ -98,8 +363,129 @@ public class DelegationRepositoryImpl implements DelegationRepository {
   public <T> List<T> listAllItems(Class<T> clazz) {
 	DynamoDbTable<T> table = enhancedClient.table(tableName, TableSchema.fromBean(clazz));
 	List<T> items = new ArrayList<>();
-	table.scan(ScanEnhancedRequest.builder().build()).items().forEach(items::add);
-	return items;
+	// The stats partitions hold counters, not delegation items
+	Expression filterExpression = Expression.builder()
+		.expression("NOT begins_with(delegationId, :stats)")
+		.expressionValues(Map.of(":stats", AttributeValue.builder().s(DelegationStats.PARTITION_PREFIX).build()))
+		.build();
+	table.scan(ScanEnhancedRequest.builder().filterExpression(filterExpression).build()).items().forEach(items::add);
+	return restoreLogicalKeys(table.tableSchema(), items);
+  }
+  
+  @Override
+  public List<DelegationStats> getStats(List<String> delegationIds) {
+	DynamoDbTable<DelegationStats> table = enhancedClient.table(tableName, TableSchema.fromBean(DelegationStats.class));
+	// The totals item of every counter shard, the counters are added up per delegation
+	Map<String, String> delegationOfPartition = new HashMap<>();
+	List<Key> keys = new ArrayList<>();
+	for (String delegationId : delegationIds) {
+	  for (int shard = 0; shard < DelegationStats.COUNTER_SHARDS; shard++) {
+		String partitionKey = DelegationStats.partitionKey(delegationId, shard);
+		if (delegationOfPartition.putIfAbsent(partitionKey, delegationId) == null) {
+		  keys.add(key(partitionKey, DelegationStats.TOTALS));
+		}
+	  }
+	}
+	Map<String, DelegationStats> stats = new LinkedHashMap<>();
+	for (int from = 0; from < keys.size(); from += MAX_BATCH_GET) {
+	  ReadBatch.Builder<DelegationStats> batch = ReadBatch.builder(DelegationStats.class).mappedTableResource(table);
+	  keys.subList(from, Math.min(keys.size(), from + MAX_BATCH_GET)).forEach(batch::addGetItem);
+	  // The result pages follow unprocessed keys until every item is read
+	  enhancedClient.batchGetItem(r -> r.addReadBatch(batch.build())).resultsForTable(table).forEach(shard -> {
+		String delegationId = delegationOfPartition.get(shard.getDelegationId());
+		DelegationStats totals = stats.computeIfAbsent(delegationId, d -> {
+		  DelegationStats sum = new DelegationStats();
+		  sum.setDelegationId(d);
+		  sum.setOperation(DelegationStats.TOTALS);
+		  return sum;
+		});
+		totals.setBookingCount(totals.getBookingCount() + shard.getBookingCount());
+		totals.setRentedDays(totals.getRentedDays() + shard.getRentedDays());
+		totals.setRevenue(totals.getRevenue() + shard.getRevenue());
+		totals.setOneWayOut(totals.getOneWayOut() + shard.getOneWayOut());
+		totals.setOneWayIn(totals.getOneWayIn() + shard.getOneWayIn());
+		if (shard.getDelegationId().equals(DelegationStats.partitionKey(delegationId))) {
+		  totals.setUtilisation7d(shard.getUtilisation7d());
+		  totals.setUtilisation30d(shard.getUtilisation30d());
+		  totals.setRevenue30d(shard.getRevenue30d());
+		  totals.setRolledUpAt(shard.getRolledUpAt());
+		}
+	  });
+	}
+	return new ArrayList<>(stats.values());
+  }
+  
+  // Expands the month items covering the range into one DelegationStats per day with counters,
+  // adding up the counter shards which are queried concurrently
+  @Override
+  public List<DelegationStats> listDailyStats(String delegationId, String fromDate, String toDate) {
+	LocalDate from = LocalDate.parse(fromDate);
+	LocalDate to = LocalDate.parse(toDate);
+	List<CompletableFuture<List<Map<String, AttributeValue>>>> shards = new ArrayList<>();
+	for (int shard = 0; shard < DelegationStats.COUNTER_SHARDS; shard++) {
+	  Map<String, AttributeValue> values = new HashMap<>();
+	  values.put(":pk", AttributeValue.builder().s(DelegationStats.partitionKey(delegationId, shard)).build());
+	  values.put(":from", AttributeValue.builder().s(DelegationStats.MONTH_PREFIX + YearMonth.from(from)).build());
+	  values.put(":to", AttributeValue.builder().s(DelegationStats.MONTH_PREFIX + YearMonth.from(to)).build());
+	  shards.add(CompletableFuture.supplyAsync(() -> {
+		List<Map<String, AttributeValue>> items = new ArrayList<>();
+		dynamoDbClient.queryPaginator(r -> r
+				.tableName(tableName)
+				.keyConditionExpression("delegationId = :pk AND operation BETWEEN :from AND :to")
+				.expressionAttributeValues(values))
+			.items()
+			.forEach(items::add);
+		return items;
+	  }, scatterExecutor));
+	}
+	Map<LocalDate, DelegationStats> days = new TreeMap<>();
+	shards.forEach(shard -> shard.join().forEach(item -> {
+	  YearMonth month = YearMonth.parse(item.get("operation").s().substring(DelegationStats.MONTH_PREFIX.length()));
+	  item.forEach((attribute, value) -> {
+		int separator = attribute.lastIndexOf('#');
+		if (separator < 0 || value.n() == null) {
+		  return;
+		}
+		LocalDate day = month.atDay(Integer.parseInt(attribute.substring(separator + 1)));
+		if (day.isBefore(from) || day.isAfter(to)) {
+		  return;
+		}
+		DelegationStats stats = days.computeIfAbsent(day, d -> {
+		  DelegationStats daily = new DelegationStats();
+		  daily.setDelegationId(delegationId);
+		  daily.setOperation(DelegationStats.DAY_PREFIX + d);
+		  return daily;
+		});
+		double number = Double.parseDouble(value.n());
+		switch (attribute.substring(0, separator)) {
+		  case "carsRented" -> stats.setCarsRented(stats.getCarsRented() + (long) number);
+		  case "pickUps" -> stats.setPickUps(stats.getPickUps() + (long) number);
+		  case "returns" -> stats.setReturns(stats.getReturns() + (long) number);
+		  case "revenue" -> stats.setRevenue(stats.getRevenue() + number);
+		}
+	  });
+	}));
+	return new ArrayList<>(days.values());
+  }
+  
+  @Override
+  public void saveStatsRollup(DelegationStats rollup) {
+	// SET only the rollup attributes on shard 0, the counters are maintained with ADD by every booking write
+	Map<String, AttributeValue> values = new HashMap<>();
+	values.put(":u7", AttributeValue.builder().n(BigDecimal.valueOf(rollup.getUtilisation7d()).toPlainString()).build());
+	values.put(":u30", AttributeValue.builder().n(BigDecimal.valueOf(rollup.getUtilisation30d()).toPlainString()).build());
+	values.put(":r30", AttributeValue.builder().n(BigDecimal.valueOf(rollup.getRevenue30d()).toPlainString()).build());
+	values.put(":at", AttributeValue.builder().s(rollup.getRolledUpAt()).build());
+	dynamoDbClient.updateItem(r -> r
+		.tableName(tableName)
+		.key(Map.of(
+			"delegationId", AttributeValue.builder().s(DelegationStats.partitionKey(rollup.getDelegationId())).build(),
+			"operation", AttributeValue.builder().s(DelegationStats.TOTALS).build()))
+		.updateExpression("SET utilisation7d = :u7, utilisation30d = :u30, revenue30d = :r30, rolledUpAt = :at")
+		.expressionAttributeValues(values));
+  }
+  
+  private record CachedShardCount(int shards, long expiresAt) {
   }
   
-}
\ No newline at end of file
+}
@@ -0,0 +1,180 @@
+package com.pedro.apps.delegations;
+
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
+
+// Aggregated booking counters of a delegation, stored in the Delegations table under their own partition
+// key "stats#delegationId" so they never show up among the profile and cars of the delegation.
+// operation = "totals" holds the totals plus the utilisation computed by the rollup job,
+// operation = "month#yyyy-MM" holds the day counters of a month as "counter#dd" attributes (e.g. "carsRented#05"),
+// so a booking touches a handful of items whatever its length. Month items carry an "expiresAt" epoch second
+// for the table's TTL. The counters are spread over COUNTER_SHARDS partitions, "stats#delegationId" being shard 0
+// and "stats#delegationId#n" the others, so a busy delegation does not write to a single hot item; the rollup
+// fields live on the totals item of shard 0 and readers add the shards up. Objects handed out by the repository
+// carry the plain delegationId, the counters of a single day are returned with operation = "day#yyyy-MM-dd".
+@DynamoDbBean
+public class DelegationStats {
+  public static final String PARTITION_PREFIX = "stats#";
+  public static final String TOTALS = "totals";
+  public static final String MONTH_PREFIX = "month#";
+  public static final String DAY_PREFIX = "day#";
+  public static final String EXPIRES_AT = "expiresAt";
+  // Month items expire this many days after the month ends
+  public static final int MONTH_RETENTION_DAYS = 400;
+  // Lowering this hides the counters already written to the dropped shards
+  public static final int COUNTER_SHARDS = 8;
+  
+  private String delegationId;
+  private String operation;
+  private long bookingCount;
+  private long rentedDays;
+  private double revenue;
+  private long oneWayOut;
+  private long oneWayIn;
+  private long carsRented; // daily items: cars out on that day
+  private long pickUps; // daily items: bookings starting that day
+  private long returns; // daily items: bookings ending that day at this delegation
+  private double utilisation7d; // totals item: set by the rollup job
+  private double utilisation30d;
+  private double revenue30d;
+  private String rolledUpAt;
+  
+  public DelegationStats() {
+  }
+  
+  public static String partitionKey(String delegationId) {
+	return PARTITION_PREFIX + delegationId;
+  }
+  
+  public static String partitionKey(String delegationId, int shard) {
+	return shard == 0 ? partitionKey(delegationId) : partitionKey(delegationId) + "#" + shard;
+  }
+  
+  @DynamoDbPartitionKey
+  public String getDelegationId() {
+	return delegationId;
+  }
+  
+  public void setDelegationId(String delegationId) {
+	this.delegationId = delegationId;
+  }
+  
+  @DynamoDbSortKey
+  public String getOperation() {
+	return operation;
+  }
+  
+  public void setOperation(String operation) {
+	this.operation = operation;
+  }
+  
+  @DynamoDbAttribute("bookingCount")
+  public long getBookingCount() {
+	return bookingCount;
+  }
+  
+  public void setBookingCount(long bookingCount) {
+	this.bookingCount = bookingCount;
+  }
+  
+  @DynamoDbAttribute("rentedDays")
+  public long getRentedDays() {
+	return rentedDays;
+  }
+  
+  public void setRentedDays(long rentedDays) {
+	this.rentedDays = rentedDays;
+  }
+  
+  @DynamoDbAttribute("revenue")
+  public double getRevenue() {
+	return revenue;
+  }
+  
+  public void setRevenue(double revenue) {
+	this.revenue = revenue;
+  }
+  
+  @DynamoDbAttribute("oneWayOut")
+  public long getOneWayOut() {
+	return oneWayOut;
+  }
+  
+  public void setOneWayOut(long oneWayOut) {
+	this.oneWayOut = oneWayOut;
+  }
+  
+  @DynamoDbAttribute("oneWayIn")
+  public long getOneWayIn() {
+	return oneWayIn;
+  }
+  
+  public void setOneWayIn(long oneWayIn) {
+	this.oneWayIn = oneWayIn;
+  }
+  
+  @DynamoDbAttribute("carsRented")
+  public long getCarsRented() {
+	return carsRented;
+  }
+  
+  public void setCarsRented(long carsRented) {
+	this.carsRented = carsRented;
+  }
+  
+  @DynamoDbAttribute("pickUps")
+  public long getPickUps() {
+	return pickUps;
+  }
+  
+  public void setPickUps(long pickUps) {
+	this.pickUps = pickUps;
+  }
+  
+  @DynamoDbAttribute("returns")
+  public long getReturns() {
+	return returns;
+  }
+  
+  public void setReturns(long returns) {
+	this.returns = returns;
+  }
+  
+  @DynamoDbAttribute("utilisation7d")
+  public double getUtilisation7d() {
+	return utilisation7d;
+  }
+  
+  public void setUtilisation7d(double utilisation7d) {
+	this.utilisation7d = utilisation7d;
+  }
+  
+  @DynamoDbAttribute("utilisation30d")
+  public double getUtilisation30d() {
+	return utilisation30d;
+  }
+  
+  public void setUtilisation30d(double utilisation30d) {
+	this.utilisation30d = utilisation30d;
+  }
+  
+  @DynamoDbAttribute("revenue30d")
+  public double getRevenue30d() {
+	return revenue30d;
+  }
+  
+  public void setRevenue30d(double revenue30d) {
+	this.revenue30d = revenue30d;
+  }
+  
+  @DynamoDbAttribute("rolledUpAt")
+  public String getRolledUpAt() {
+	return rolledUpAt;
+  }
+  
+  public void setRolledUpAt(String rolledUpAt) {
+	this.rolledUpAt = rolledUpAt;
+  }
+}
@@ -0,0 +1,100 @@
+package com.pedro.apps.delegations;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Background job that turns the daily booking counters into utilisation and revenue figures on the
+// totals item of every delegation. Delegations are rolled up in parallel on a dedicated fork-join pool.
+@Component
+public class DelegationStatsRollup {
+  
+  private static final Logger log = LoggerFactory.getLogger(DelegationStatsRollup.class);
+  
+  private final DelegationRepository delegationRepository;
+  private final long intervalMinutes;
+  private final ForkJoinPool pool;
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+	Thread thread = new Thread(r, "delegation-stats-rollup");
+	thread.setDaemon(true);
+	return thread;
+  });
+  
+  @Autowired
+  public DelegationStatsRollup(
+	  DelegationRepository delegationRepository,
+	  @Value("${stats.rollup-minutes:15}") long intervalMinutes,
+	  @Value("${stats.rollup-parallelism:8}") int parallelism) {
+	this.delegationRepository = delegationRepository;
+	this.intervalMinutes = intervalMinutes;
+	this.pool = new ForkJoinPool(parallelism);
+  }
+  
+  @PostConstruct
+  public void start() {
+	if (intervalMinutes > 0) {
+	  scheduler.scheduleWithFixedDelay(this::runSafely, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+	}
+  }
+  
+  @PreDestroy
+  public void stop() {
+	scheduler.shutdownNow();
+	pool.shutdownNow();
+  }
+  
+  public void rollUpAll() throws InterruptedException, ExecutionException {
+	List<Delegation> delegations = delegationRepository.listAllDelegations();
+	LocalDate today = LocalDate.now();
+	String rolledUpAt = Instant.now().toString();
+	// A parallel stream submitted to our own pool runs its fork-join tasks there instead of the common pool
+	pool.submit(() -> delegations.parallelStream().forEach(delegation -> rollUp(delegation, today, rolledUpAt))).get();
+  }
+  
+  private void rollUp(Delegation delegation, LocalDate today, String rolledUpAt) {
+	List<DelegationStats> days = delegationRepository.listDailyStats(
+		delegation.getDelegationId(), today.minusDays(29).toString(), today.toString());
+	String weekStart = DelegationStats.DAY_PREFIX + today.minusDays(6);
+	long carDays7 = 0;
+	long carDays30 = 0;
+	double revenue30 = 0;
+	for (DelegationStats day : days) {
+	  carDays30 += day.getCarsRented();
+	  revenue30 += day.getRevenue();
+	  if (day.getOperation().compareTo(weekStart) >= 0) {
+		carDays7 += day.getCarsRented();
+	  }
+	}
+	int fleet = delegation.getAvailableCarQty();
+	DelegationStats rollup = new DelegationStats();
+	rollup.setDelegationId(delegation.getDelegationId());
+	rollup.setUtilisation7d(fleet > 0 ? carDays7 / (7.0 * fleet) : 0);
+	rollup.setUtilisation30d(fleet > 0 ? carDays30 / (30.0 * fleet) : 0);
+	rollup.setRevenue30d(revenue30);
+	rollup.setRolledUpAt(rolledUpAt);
+	delegationRepository.saveStatsRollup(rollup);
+  }
+  
+  private void runSafely() {
+	try {
+	  rollUpAll();
+	} catch (InterruptedException e) {
+	  Thread.currentThread().interrupt();
+	} catch (Exception e) {
+	  log.warn("Delegation stats rollup failed", e);
+	}
+  }
+}
@@ -0,0 +1,223 @@
+package com.pedro.apps.delegations;
+
+import com.pedro.apps.changefeed.ChangeFeed;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Periodically writes the in-memory fleet state (delegation profiles and cars with their booking
+// calendars) to a compact binary file and restores it at startup with a memory-mapped read, so a
+// restarted node does not scan the Delegations table. After restoring, the change feed replays the
+// writes made since the snapshot was taken. When the feed cannot look back that far the node loads from
+// DynamoDB instead. Only enabled with changefeed.mode=streams: the local feed keeps no history, so a
+// restore would always be followed by the full scan it is meant to avoid.
+// Created after CatalogueChangeListener, so the feed knows the Delegations table before restore() asks it to
+// catch up; a table subscribed later would start reading its stream at the present.
+@Component
+@ConditionalOnProperty(name = "changefeed.mode", havingValue = "streams")
+@DependsOn("catalogueChangeListener")
+public class FleetSnapshot {
+  
+  private static final Logger log = LoggerFactory.getLogger(FleetSnapshot.class);
+  
+  private static final int MAGIC = 0x57524653; // "WRFS"
+  private static final int VERSION = 1;
+  
+  private final CarCatalogueIndex carCatalogueIndex;
+  private final DelegationDirectory delegationDirectory;
+  private final ChangeFeed changeFeed;
+  private final Path file;
+  private final long intervalMinutes;
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+	Thread thread = new Thread(r, "fleet-snapshot");
+	thread.setDaemon(true);
+	return thread;
+  });
+  
+  @Autowired
+  public FleetSnapshot(
+	  CarCatalogueIndex carCatalogueIndex,
+	  DelegationDirectory delegationDirectory,
+	  ChangeFeed changeFeed,
+	  @Value("${snapshot.file:data/fleet.snapshot}") String file,
+	  @Value("${snapshot.interval-minutes:10}") long intervalMinutes) {
+	this.carCatalogueIndex = carCatalogueIndex;
+	this.delegationDirectory = delegationDirectory;
+	this.changeFeed = changeFeed;
+	this.file = Path.of(file);
+	this.intervalMinutes = intervalMinutes;
+  }
+  
+  @PostConstruct
+  public void start() {
+	if (Files.exists(file)) {
+	  try {
+		restore();
+	  } catch (IOException | RuntimeException e) {
+		log.warn("Could not restore {}, loading from DynamoDB", file, e);
+	  }
+	}
+	if (intervalMinutes > 0) {
+	  scheduler.scheduleWithFixedDelay(this::writeSafely, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+	}
+  }
+  
+  @PreDestroy
+  public void stop() {
+	scheduler.shutdownNow();
+	writeSafely();
+  }
+  
+  public void write() throws IOException {
+	// Nothing worth saving until the state has been loaded once
+	if (!carCatalogueIndex.isLoaded() || !delegationDirectory.isLoaded()) {
+	  return;
+	}
+	Instant takenAt = Instant.now();
+	List<Delegation> delegations = delegationDirectory.all();
+	List<Car> cars = carCatalogueIndex.allCars();
+	Files.createDirectories(file.toAbsolutePath().getParent());
+	Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), "fleet", ".tmp");
+	try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+	  out.writeInt(MAGIC);
+	  out.writeInt(VERSION);
+	  out.writeLong(takenAt.toEpochMilli());
+	  out.writeInt(delegations.size());
+	  for (Delegation delegation : delegations) {
+		writeString(out, delegation.getDelegationId());
+		writeString(out, delegation.getOperation());
+		writeString(out, delegation.getName());
+		writeString(out, delegation.getAddress());
+		writeString(out, delegation.getCity());
+		out.writeFloat(delegation.getLatDelegation());
+		out.writeFloat(delegation.getLonDelegation());
+		out.writeInt(delegation.getAvailableCarQty());
+		writeString(out, delegation.getPhone());
+		writeString(out, delegation.getEmail());
+	  }
+	  out.writeInt(cars.size());
+	  for (Car car : cars) {
+		writeString(out, car.getDelegationId());
+		writeString(out, car.getOperation());
+		writeString(out, car.getCarId());
+		writeString(out, car.getMake());
+		writeString(out, car.getModel());
+		writeString(out, car.getYear());
+		writeString(out, car.getColor());
+		out.writeByte(car.getRented() == null ? -1 : car.getRented() ? 1 : 0);
+		out.writeFloat(car.getLat());
+		out.writeFloat(car.getLon());
+		out.writeInt(car.getPrice());
+		Map<String, Boolean> bookingDates = car.getBookingDates();
+		out.writeInt(bookingDates == null ? -1 : bookingDates.size());
+		if (bookingDates != null) {
+		  for (Map.Entry<String, Boolean> date : bookingDates.entrySet()) {
+			writeString(out, date.getKey());
+			out.writeBoolean(Boolean.TRUE.equals(date.getValue()));
+		  }
+		}
+	  }
+	}
+	Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+  
+  private void restore() throws IOException {
+	try (FileChannel channel = FileChannel.open(file)) {
+	  MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+	  if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+		throw new IOException("Not a fleet snapshot file");
+	  }
+	  Instant takenAt = Instant.ofEpochMilli(in.getLong());
+	  int delegationCount = in.getInt();
+	  List<Delegation> delegations = new ArrayList<>(delegationCount);
+	  for (int i = 0; i < delegationCount; i++) {
+		delegations.add(new Delegation(readString(in), readString(in), readString(in), readString(in), readString(in),
+			in.getFloat(), in.getFloat(), in.getInt(), readString(in), readString(in)));
+	  }
+	  int carCount = in.getInt();
+	  List<Car> cars = new ArrayList<>(carCount);
+	  for (int i = 0; i < carCount; i++) {
+		String delegationId = readString(in);
+		String operation = readString(in);
+		String carId = readString(in);
+		String make = readString(in);
+		String model = readString(in);
+		String year = readString(in);
+		String color = readString(in);
+		byte rented = in.get();
+		float lat = in.getFloat();
+		float lon = in.getFloat();
+		int price = in.getInt();
+		int dateCount = in.getInt();
+		Map<String, Boolean> bookingDates = dateCount < 0 ? null : new HashMap<>(dateCount * 2);
+		for (int d = 0; d < dateCount; d++) {
+		  bookingDates.put(readString(in), in.get() != 0);
+		}
+		cars.add(new Car(delegationId, operation, carId, make, model, year, color,
+			rented < 0 ? null : rented == 1, lat, lon, price, bookingDates));
+	  }
+	  delegationDirectory.load(delegations);
+	  carCatalogueIndex.load(cars);
+	  // Replay only after loading, so no change delivered by the feed is overwritten by the snapshot
+	  if (!changeFeed.catchUpFrom(takenAt)) {
+		log.info("The change feed cannot replay changes since {}, loading from DynamoDB", takenAt);
+		delegationDirectory.reload();
+		carCatalogueIndex.reload();
+		return;
+	  }
+	  log.info("Restored {} delegations and {} cars from {}", delegationCount, carCount, takenAt);
+	}
+  }
+  
+  private void writeSafely() {
+	try {
+	  write();
+	} catch (IOException | RuntimeException e) {
+	  log.warn("Could not write {}", file, e);
+	}
+  }
+  
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+	if (value == null) {
+	  out.writeInt(-1);
+	  return;
+	}
+	byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+	out.writeInt(utf8.length);
+	out.write(utf8);
+  }
+  
+  private static String readString(MappedByteBuffer in) {
+	int length = in.getInt();
+	if (length < 0) {
+	  return null;
+	}
+	byte[] utf8 = new byte[length];
+	in.get(utf8);
+	return new String(utf8, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,161 @@
+package com.pedro.apps.delegations;
+
+import com.pedro.apps.config.ReadOptions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+// Computes prices for every available car of a delegation over a date range.
+// The per-day multipliers are resolved once for the whole range, so pricing a car is a single
+// multiplication; availability and totals are evaluated in parallel over primitive arrays.
+@Service
+public class QuoteEngine {
+  
+  private static final long UNAVAILABLE = -1L;
+  private static final double EARTH_RADIUS_KM = 6371.0;
+  
+  private final DelegationRepository delegationRepository;
+  private final DelegationDirectory delegationDirectory;
+  
+  @Value("${quote.weekend-multiplier:1.2}")
+  private double weekendMultiplier;
+  
+  @Value("${quote.high-season-multiplier:1.3}")
+  private double highSeasonMultiplier;
+  
+  @Value("${quote.high-season-months:6,7,8}")
+  private int[] highSeasonMonths;
+  
+  @Value("${quote.one-way-base-surcharge:50}")
+  private double oneWayBaseSurcharge;
+  
+  @Value("${quote.one-way-surcharge-per-km:0.1}")
+  private double oneWaySurchargePerKm;
+  
+  @Value("${quote.max-days:90}")
+  private int maxDays;
+  
+  @Autowired
+  public QuoteEngine(DelegationRepository delegationRepository, DelegationDirectory delegationDirectory) {
+	this.delegationRepository = delegationRepository;
+	this.delegationDirectory = delegationDirectory;
+  }
+  
+  public List<CarQuote> quote(String pickUpDelegationId, String deliverDelegationId, String startDate, String endDate) {
+	LocalDate start = LocalDate.parse(startDate);
+	LocalDate end = LocalDate.parse(endDate);
+	if (end.isBefore(start)) {
+	  throw new IllegalArgumentException("endDate " + endDate + " is before startDate " + startDate);
+	}
+	List<Car> cars = new ArrayList<>();
+	for (Car car : delegationRepository.listByPartitionKey(pickUpDelegationId, Car.class, ReadOptions.eventual().hedged())) {
+	  // Cars share the partition with the delegation profile, keep only the car items
+	  if (car.getOperation() != null && car.getOperation().startsWith("car")) {
+		cars.add(car);
+	  }
+	}
+	return quote(cars, start, end, oneWaySurcharge(pickUpDelegationId, deliverDelegationId));
+  }
+  
+  public List<CarQuote> quote(List<Car> cars, LocalDate start, LocalDate end, double surcharge) {
+	long days = ChronoUnit.DAYS.between(start, end) + 1;
+	if (days > maxDays) {
+	  // The day keys are built per request, an unbounded range would let one call allocate millions of them
+	  throw new IllegalArgumentException("The quote covers " + days + " days, at most " + maxDays + " are allowed");
+	}
+	String[] dayKeys = new String[(int) days];
+	double factorSum = 0;
+	for (int d = 0; d < days; d++) {
+	  LocalDate date = start.plusDays(d);
+	  dayKeys[d] = date.toString();
+	  factorSum += dayFactor(date);
+	}
+	
+	int n = cars.size();
+	int[] rates = new int[n];
+	// Each slot packs the total in cents (high 32 bits) with the car index (low 32 bits),
+	// so sorting the longs orders the cars by price without boxing
+	long[] packed = new long[n];
+	double totalFactor = factorSum;
+	IntStream.range(0, n).parallel().forEach(i -> {
+	  Car car = cars.get(i);
+	  rates[i] = car.getPrice();
+	  if (!isAvailable(car.getBookingDates(), dayKeys)) {
+		packed[i] = UNAVAILABLE;
+		return;
+	  }
+	  long cents = Math.round((rates[i] * totalFactor + surcharge) * 100);
+	  packed[i] = (Math.min(cents, Integer.MAX_VALUE) << 32) | i;
+	});
+	
+	long[] available = Arrays.stream(packed).filter(p -> p != UNAVAILABLE).toArray();
+	Arrays.parallelSort(available);
+	
+	List<CarQuote> quotes = new ArrayList<>(available.length);
+	for (long p : available) {
+	  int i = (int) p;
+	  Car car = cars.get(i);
+	  quotes.add(new CarQuote(car.getDelegationId(), car.getOperation(), car.getCarId(), car.getMake(), car.getModel(),
+		  car.getYear(), car.getColor(), rates[i], (int) days, surcharge, (p >>> 32) / 100.0));
+	}
+	return quotes;
+  }
+  
+  double oneWaySurcharge(String pickUpDelegationId, String deliverDelegationId) {
+	if (deliverDelegationId == null || deliverDelegationId.isEmpty() || deliverDelegationId.equals(pickUpDelegationId)) {
+	  return 0;
+	}
+	Delegation pickUp = delegationDirectory.get(pickUpDelegationId);
+	Delegation deliver = delegationDirectory.get(deliverDelegationId);
+	if (pickUp == null || deliver == null) {
+	  return oneWayBaseSurcharge;
+	}
+	return oneWayBaseSurcharge + oneWaySurchargePerKm * distanceKm(
+		pickUp.getLatDelegation(), pickUp.getLonDelegation(), deliver.getLatDelegation(), deliver.getLonDelegation());
+  }
+  
+  private double dayFactor(LocalDate date) {
+	double factor = 1.0;
+	if (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+	  factor *= weekendMultiplier;
+	}
+	for (int month : highSeasonMonths) {
+	  if (date.getMonthValue() == month) {
+		factor *= highSeasonMultiplier;
+		break;
+	  }
+	}
+	return factor;
+  }
+  
+  // A car is available when none of the requested days is marked as booked in its calendar
+  private static boolean isAvailable(Map<String, Boolean> bookingDates, String[] dayKeys) {
+	if (bookingDates == null || bookingDates.isEmpty()) {
+	  return true;
+	}
+	for (String day : dayKeys) {
+	  if (Boolean.TRUE.equals(bookingDates.get(day))) {
+		return false;
+	  }
+	}
+	return true;
+  }
+  
+  // Great-circle distance between two coordinates using the haversine formula
+  public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+	double dLat = Math.toRadians(lat2 - lat1);
+	double dLon = Math.toRadians(lon2 - lon1);
+	double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+		+ Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+	return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(a));
+  }
+}
@@ -0,0 +1,111 @@
+package com.pedro.apps.inmemory;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+// Comparison, equality and size rules of DynamoDB attribute values
+final class AttributeValues {
+  
+  private AttributeValues() {
+  }
+  
+  // Orders two scalars (S, N or B) of the same type, null when they cannot be compared
+  static Integer compare(AttributeValue a, AttributeValue b) {
+	if (a == null || b == null || a.type() != b.type()) {
+	  return null;
+	}
+	return switch (a.type()) {
+	  case S -> a.s().compareTo(b.s());
+	  case N -> number(a).compareTo(number(b));
+	  case B -> compareBytes(a.b(), b.b());
+	  default -> null;
+	};
+  }
+  
+  static int compareBytes(SdkBytes a, SdkBytes b) {
+	return Arrays.compareUnsigned(a.asByteArrayUnsafe(), b.asByteArrayUnsafe());
+  }
+  
+  static boolean equal(AttributeValue a, AttributeValue b) {
+	if (a == null || b == null || a.type() != b.type()) {
+	  return false;
+	}
+	return switch (a.type()) {
+	  case N -> number(a).compareTo(number(b)) == 0;
+	  case SS -> new HashSet<>(a.ss()).equals(new HashSet<>(b.ss()));
+	  case BS -> new HashSet<>(a.bs()).equals(new HashSet<>(b.bs()));
+	  case NS -> a.ns().size() == b.ns().size()
+		  && a.ns().stream().allMatch(n -> b.ns().stream().anyMatch(m -> new BigDecimal(n).compareTo(new BigDecimal(m)) == 0));
+	  case L -> listsEqual(a.l(), b.l());
+	  case M -> mapsEqual(a.m(), b.m());
+	  default -> a.equals(b);
+	};
+  }
+  
+  private static boolean listsEqual(List<AttributeValue> a, List<AttributeValue> b) {
+	if (a.size() != b.size()) {
+	  return false;
+	}
+	for (int i = 0; i < a.size(); i++) {
+	  if (!equal(a.get(i), b.get(i))) {
+		return false;
+	  }
+	}
+	return true;
+  }
+  
+  private static boolean mapsEqual(Map<String, AttributeValue> a, Map<String, AttributeValue> b) {
+	if (a.size() != b.size()) {
+	  return false;
+	}
+	for (Map.Entry<String, AttributeValue> entry : a.entrySet()) {
+	  if (!equal(entry.getValue(), b.get(entry.getKey()))) {
+		return false;
+	  }
+	}
+	return true;
+  }
+  
+  static BigDecimal number(AttributeValue value) {
+	return new BigDecimal(value.n());
+  }
+  
+  static AttributeValue number(BigDecimal value) {
+	return AttributeValue.fromN(value.stripTrailingZeros().toPlainString());
+  }
+  
+  // Approximate stored size in bytes, used for the 1 MB page limit and the consumed capacity
+  static long size(Map<String, AttributeValue> item) {
+	long size = 0;
+	for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+	  size += utf8Length(entry.getKey()) + size(entry.getValue());
+	}
+	return size;
+  }
+  
+  static long size(AttributeValue value) {
+	return switch (value.type()) {
+	  case S -> utf8Length(value.s());
+	  case N -> value.n().length() / 2 + 1;
+	  case B -> value.b().asByteArrayUnsafe().length;
+	  case SS -> value.ss().stream().mapToLong(AttributeValues::utf8Length).sum();
+	  case NS -> value.ns().stream().mapToLong(n -> n.length() / 2 + 1).sum();
+	  case BS -> value.bs().stream().mapToLong(b -> b.asByteArrayUnsafe().length).sum();
+	  case L -> 3 + value.l().stream().mapToLong(v -> 1 + size(v)).sum();
+	  case M -> 3 + size(value.m()) + value.m().size();
+	  default -> 1;
+	};
+  }
+  
+  private static long utf8Length(String s) {
+	return s.getBytes(StandardCharsets.UTF_8).length;
+  }
+  
+}
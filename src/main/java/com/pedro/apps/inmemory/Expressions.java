@@ -0,0 +1,700 @@
+package com.pedro.apps.inmemory;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Parser and evaluator for the DynamoDB expression language: condition, filter and key condition
+// expressions, projection expressions and update expressions (SET, REMOVE, ADD, DELETE).
+// Expressions are parsed once and cached with their #name and :value placeholders unresolved,
+// the placeholders are looked up in the request's maps on every evaluation.
+final class Expressions {
+  
+  private static final Map<String, Condition> CONDITIONS = new ConcurrentHashMap<>();
+  private static final Map<String, List<Path>> PROJECTIONS = new ConcurrentHashMap<>();
+  private static final Map<String, List<UpdateAction>> UPDATES = new ConcurrentHashMap<>();
+  
+  private Expressions() {
+  }
+  
+  // Placeholders of one request
+  record Context(Map<String, String> names, Map<String, AttributeValue> values) {
+	
+	static Context of(Map<String, String> names, Map<String, AttributeValue> values) {
+	  return new Context(names == null ? Map.of() : names, values == null ? Map.of() : values);
+	}
+	
+	String name(String token) {
+	  if (!token.startsWith("#")) {
+		return token;
+	  }
+	  String name = names.get(token);
+	  if (name == null) {
+		throw InMemoryDynamoDbClient.validation("An expression attribute name used in the document path is not defined: " + token);
+	  }
+	  return name;
+	}
+	
+	AttributeValue value(String token) {
+	  AttributeValue value = values.get(token);
+	  if (value == null) {
+		throw InMemoryDynamoDbClient.validation("An expression attribute value used in expression is not defined: " + token);
+	  }
+	  return value;
+	}
+	
+  }
+  
+  static Condition condition(String expression) {
+	return CONDITIONS.computeIfAbsent(expression, e -> {
+	  Parser parser = new Parser(e);
+	  Condition condition = parser.condition();
+	  parser.expectEnd();
+	  return condition;
+	});
+  }
+  
+  static List<Path> projection(String expression) {
+	return PROJECTIONS.computeIfAbsent(expression, e -> {
+	  Parser parser = new Parser(e);
+	  List<Path> paths = new ArrayList<>();
+	  do {
+		paths.add(parser.path());
+	  } while (parser.accept(","));
+	  parser.expectEnd();
+	  return paths;
+	});
+  }
+  
+  static List<UpdateAction> update(String expression) {
+	return UPDATES.computeIfAbsent(expression, e -> new Parser(e).updateActions());
+  }
+  
+  // Applies the update actions to a copy of the item; every operand is read from the item as it was before the update
+  static Map<String, AttributeValue> applyUpdate(List<UpdateAction> actions, Map<String, AttributeValue> item, Context context) {
+	Map<String, AttributeValue> updated = new HashMap<>(item);
+	for (UpdateAction action : actions) {
+	  action.apply(item, updated, context);
+	}
+	return updated;
+  }
+  
+  static Map<String, AttributeValue> project(List<Path> paths, Map<String, AttributeValue> item, Context context) {
+	Map<String, AttributeValue> projected = new LinkedHashMap<>();
+	for (Path path : paths) {
+	  if (path.elements().size() > 1) {
+		throw InMemoryDynamoDbClient.validation("Nested projection paths are not supported by the in-memory backend");
+	  }
+	  String name = context.name((String) path.elements().get(0));
+	  AttributeValue value = item.get(name);
+	  if (value != null) {
+		projected.put(name, value);
+	  }
+	}
+	return projected;
+  }
+  
+  // ---- AST ----
+  
+  interface Condition {
+	boolean test(Map<String, AttributeValue> item, Context context);
+  }
+  
+  interface Operand {
+	// Null when the operand refers to a missing attribute
+	AttributeValue resolve(Map<String, AttributeValue> item, Context context);
+  }
+  
+  interface UpdateAction {
+	void apply(Map<String, AttributeValue> original, Map<String, AttributeValue> updated, Context context);
+  }
+  
+  // Elements are attribute names or #placeholders (String) and list indexes (Integer)
+  record Path(List<Object> elements) implements Operand {
+	
+	String topLevelName(Context context) {
+	  if (elements.size() > 1) {
+		throw InMemoryDynamoDbClient.validation("Nested update paths are not supported by the in-memory backend");
+	  }
+	  return context.name((String) elements.get(0));
+	}
+	
+	@Override
+	public AttributeValue resolve(Map<String, AttributeValue> item, Context context) {
+	  AttributeValue current = item.get(context.name((String) elements.get(0)));
+	  for (int i = 1; i < elements.size() && current != null; i++) {
+		Object element = elements.get(i);
+		if (element instanceof Integer index) {
+		  current = current.hasL() && index < current.l().size() ? current.l().get(index) : null;
+		} else {
+		  current = current.hasM() ? current.m().get(context.name((String) element)) : null;
+		}
+	  }
+	  return current;
+	}
+	
+  }
+  
+  record Value(String placeholder) implements Operand {
+	@Override
+	public AttributeValue resolve(Map<String, AttributeValue> item, Context context) {
+	  return context.value(placeholder);
+	}
+  }
+  
+  record Size(Path path) implements Operand {
+	@Override
+	public AttributeValue resolve(Map<String, AttributeValue> item, Context context) {
+	  AttributeValue value = path.resolve(item, context);
+	  if (value == null) {
+		return null;
+	  }
+	  int size = switch (value.type()) {
+		case S -> value.s().length();
+		case B -> value.b().asByteArrayUnsafe().length;
+		case SS -> value.ss().size();
+		case NS -> value.ns().size();
+		case BS -> value.bs().size();
+		case L -> value.l().size();
+		case M -> value.m().size();
+		default -> -1;
+	  };
+	  return size < 0 ? null : AttributeValue.fromN(Integer.toString(size));
+	}
+  }
+  
+  record IfNotExists(Path path, Operand fallback) implements Operand {
+	@Override
+	public AttributeValue resolve(Map<String, AttributeValue> item, Context context) {
+	  AttributeValue value = path.resolve(item, context);
+	  return value != null ? value : fallback.resolve(item, context);
+	}
+  }
+  
+  record ListAppend(Operand first, Operand second) implements Operand {
+	@Override
+	public AttributeValue resolve(Map<String, AttributeValue> item, Context context) {
+	  AttributeValue a = first.resolve(item, context);
+	  AttributeValue b = second.resolve(item, context);
+	  if (a == null || b == null || !a.hasL() || !b.hasL()) {
+		throw InMemoryDynamoDbClient.validation("list_append needs two list operands");
+	  }
+	  List<AttributeValue> list = new ArrayList<>(a.l());
+	  list.addAll(b.l());
+	  return AttributeValue.fromL(list);
+	}
+  }
+  
+  record Arithmetic(Operand left, boolean plus, Operand right) implements Operand {
+	@Override
+	public AttributeValue resolve(Map<String, AttributeValue> item, Context context) {
+	  AttributeValue a = left.resolve(item, context);
+	  AttributeValue b = right.resolve(item, context);
+	  if (a == null || b == null || a.n() == null || b.n() == null) {
+		throw InMemoryDynamoDbClient.validation("An operand in the update expression has an incorrect data type");
+	  }
+	  BigDecimal x = AttributeValues.number(a);
+	  BigDecimal y = AttributeValues.number(b);
+	  return AttributeValues.number(plus ? x.add(y) : x.subtract(y));
+	}
+  }
+  
+  enum Comparator {EQ, NE, LT, LE, GT, GE}
+  
+  record Compare(Comparator comparator, Operand left, Operand right) implements Condition {
+	@Override
+	public boolean test(Map<String, AttributeValue> item, Context context) {
+	  AttributeValue a = left.resolve(item, context);
+	  AttributeValue b = right.resolve(item, context);
+	  if (comparator == Comparator.EQ) {
+		return AttributeValues.equal(a, b);
+	  }
+	  if (comparator == Comparator.NE) {
+		return !AttributeValues.equal(a, b);
+	  }
+	  Integer order = AttributeValues.compare(a, b);
+	  if (order == null) {
+		return false;
+	  }
+	  return switch (comparator) {
+		case LT -> order < 0;
+		case LE -> order <= 0;
+		case GT -> order > 0;
+		default -> order >= 0;
+	  };
+	}
+  }
+  
+  record Between(Operand operand, Operand low, Operand high) implements Condition {
+	@Override
+	public boolean test(Map<String, AttributeValue> item, Context context) {
+	  AttributeValue value = operand.resolve(item, context);
+	  Integer fromLow = AttributeValues.compare(value, low.resolve(item, context));
+	  Integer toHigh = AttributeValues.compare(value, high.resolve(item, context));
+	  return fromLow != null && toHigh != null && fromLow >= 0 && toHigh <= 0;
+	}
+  }
+  
+  record In(Operand operand, List<Operand> candidates) implements Condition {
+	@Override
+	public boolean test(Map<String, AttributeValue> item, Context context) {
+	  AttributeValue value = operand.resolve(item, context);
+	  return candidates.stream().anyMatch(candidate -> AttributeValues.equal(value, candidate.resolve(item, context)));
+	}
+  }
+  
+  record And(Condition left, Condition right) implements Condition {
+	@Override
+	public boolean test(Map<String, AttributeValue> item, Context context) {
+	  return left.test(item, context) && right.test(item, context);
+	}
+  }
+  
+  record Or(Condition left, Condition right) implements Condition {
+	@Override
+	public boolean test(Map<String, AttributeValue> item, Context context) {
+	  return left.test(item, context) || right.test(item, context);
+	}
+  }
+  
+  record Not(Condition condition) implements Condition {
+	@Override
+	public boolean test(Map<String, AttributeValue> item, Context context) {
+	  return !condition.test(item, context);
+	}
+  }
+  
+  record Exists(Path path, boolean exists) implements Condition {
+	@Override
+	public boolean test(Map<String, AttributeValue> item, Context context) {
+	  return (path.resolve(item, context) != null) == exists;
+	}
+  }
+  
+  record AttributeType(Path path, Operand type) implements Condition {
+	@Override
+	public boolean test(Map<String, AttributeValue> item, Context context) {
+	  AttributeValue value = path.resolve(item, context);
+	  AttributeValue expected = type.resolve(item, context);
+	  return value != null && expected != null && value.type().name().equals(expected.s());
+	}
+  }
+  
+  record BeginsWith(Path path, Operand prefix) implements Condition {
+	@Override
+	public boolean test(Map<String, AttributeValue> item, Context context) {
+	  AttributeValue value = path.resolve(item, context);
+	  AttributeValue start = prefix.resolve(item, context);
+	  if (value == null || start == null || value.type() != start.type()) {
+		return false;
+	  }
+	  if (value.s() != null) {
+		return value.s().startsWith(start.s());
+	  }
+	  if (value.b() != null) {
+		byte[] bytes = value.b().asByteArrayUnsafe();
+		byte[] startBytes = start.b().asByteArrayUnsafe();
+		return bytes.length >= startBytes.length
+			&& java.util.Arrays.equals(bytes, 0, startBytes.length, startBytes, 0, startBytes.length);
+	  }
+	  return false;
+	}
+  }
+  
+  record Contains(Path path, Operand operand) implements Condition {
+	@Override
+	public boolean test(Map<String, AttributeValue> item, Context context) {
+	  AttributeValue value = path.resolve(item, context);
+	  AttributeValue member = operand.resolve(item, context);
+	  if (value == null || member == null) {
+		return false;
+	  }
+	  return switch (value.type()) {
+		case S -> member.s() != null && value.s().contains(member.s());
+		case SS -> member.s() != null && value.ss().contains(member.s());
+		case NS -> member.n() != null && value.ns().stream().anyMatch(n -> AttributeValues.equal(AttributeValue.fromN(n), member));
+		case BS -> member.b() != null && value.bs().contains(member.b());
+		case L -> value.l().stream().anyMatch(element -> AttributeValues.equal(element, member));
+		default -> false;
+	  };
+	}
+  }
+  
+  record SetAction(Path path, Operand value) implements UpdateAction {
+	@Override
+	public void apply(Map<String, AttributeValue> original, Map<String, AttributeValue> updated, Context context) {
+	  AttributeValue resolved = value.resolve(original, context);
+	  if (resolved == null) {
+		throw InMemoryDynamoDbClient.validation("The provided expression refers to an attribute that does not exist in the item");
+	  }
+	  updated.put(path.topLevelName(context), resolved);
+	}
+  }
+  
+  record RemoveAction(Path path) implements UpdateAction {
+	@Override
+	public void apply(Map<String, AttributeValue> original, Map<String, AttributeValue> updated, Context context) {
+	  updated.remove(path.topLevelName(context));
+	}
+  }
+  
+  // ADD on a number adds to it (a missing attribute counts as 0), on a set adds the elements
+  record AddAction(Path path, Operand value) implements UpdateAction {
+	@Override
+	public void apply(Map<String, AttributeValue> original, Map<String, AttributeValue> updated, Context context) {
+	  String name = path.topLevelName(context);
+	  AttributeValue current = original.get(name);
+	  AttributeValue delta = value.resolve(original, context);
+	  if (delta.n() != null) {
+		if (current != null && current.n() == null) {
+		  throw InMemoryDynamoDbClient.validation("An operand in the update expression has an incorrect data type");
+		}
+		BigDecimal base = current == null ? BigDecimal.ZERO : AttributeValues.number(current);
+		updated.put(name, AttributeValues.number(base.add(AttributeValues.number(delta))));
+		return;
+	  }
+	  updated.put(name, mergeSets(current, delta, true));
+	}
+  }
+  
+  record DeleteAction(Path path, Operand value) implements UpdateAction {
+	@Override
+	public void apply(Map<String, AttributeValue> original, Map<String, AttributeValue> updated, Context context) {
+	  String name = path.topLevelName(context);
+	  AttributeValue current = original.get(name);
+	  if (current == null) {
+		return;
+	  }
+	  AttributeValue remaining = mergeSets(current, value.resolve(original, context), false);
+	  if (remaining == null) {
+		updated.remove(name);
+	  } else {
+		updated.put(name, remaining);
+	  }
+	}
+  }
+  
+  // Union (add) or difference of two sets of the same type; null when the difference is empty
+  private static AttributeValue mergeSets(AttributeValue current, AttributeValue delta, boolean add) {
+	if (current != null && current.type() != delta.type()) {
+	  throw InMemoryDynamoDbClient.validation("An operand in the update expression has an incorrect data type");
+	}
+	return switch (delta.type()) {
+	  case SS -> {
+		Set<String> set = new LinkedHashSet<>(current == null ? List.of() : current.ss());
+		if (add) {
+		  set.addAll(delta.ss());
+		} else {
+		  delta.ss().forEach(set::remove);
+		}
+		yield set.isEmpty() ? null : AttributeValue.fromSs(new ArrayList<>(set));
+	  }
+	  case NS -> {
+		Set<BigDecimal> set = new LinkedHashSet<>();
+		(current == null ? List.<String>of() : current.ns()).forEach(n -> set.add(new BigDecimal(n).stripTrailingZeros()));
+		delta.ns().forEach(n -> {
+		  if (add) {
+			set.add(new BigDecimal(n).stripTrailingZeros());
+		  } else {
+			set.remove(new BigDecimal(n).stripTrailingZeros());
+		  }
+		});
+		yield set.isEmpty() ? null : AttributeValue.fromNs(set.stream().map(BigDecimal::toPlainString).toList());
+	  }
+	  case BS -> {
+		Set<SdkBytes> set = new LinkedHashSet<>(current == null ? List.of() : current.bs());
+		if (add) {
+		  set.addAll(delta.bs());
+		} else {
+		  delta.bs().forEach(set::remove);
+		}
+		yield set.isEmpty() ? null : AttributeValue.fromBs(new ArrayList<>(set));
+	  }
+	  default -> throw InMemoryDynamoDbClient.validation("ADD and DELETE only support numbers and sets");
+	};
+  }
+  
+  // ---- Parser ----
+  
+  private static final class Parser {
+	
+	private final List<String> tokens;
+	private int position;
+	
+	Parser(String expression) {
+	  this.tokens = tokenize(expression);
+	}
+	
+	private static List<String> tokenize(String expression) {
+	  List<String> tokens = new ArrayList<>();
+	  int i = 0;
+	  while (i < expression.length()) {
+		char c = expression.charAt(i);
+		if (Character.isWhitespace(c)) {
+		  i++;
+		} else if (c == '<' || c == '>') {
+		  boolean twoChars = i + 1 < expression.length() && (expression.charAt(i + 1) == '=' || (c == '<' && expression.charAt(i + 1) == '>'));
+		  tokens.add(expression.substring(i, twoChars ? i + 2 : i + 1));
+		  i += twoChars ? 2 : 1;
+		} else if ("=(),.[]+-".indexOf(c) >= 0) {
+		  tokens.add(String.valueOf(c));
+		  i++;
+		} else {
+		  int start = i;
+		  while (i < expression.length() && (Character.isLetterOrDigit(expression.charAt(i)) || "_#:".indexOf(expression.charAt(i)) >= 0)) {
+			i++;
+		  }
+		  if (start == i) {
+			throw InMemoryDynamoDbClient.validation("Invalid expression: unexpected '" + c + "' in " + expression);
+		  }
+		  tokens.add(expression.substring(start, i));
+		}
+	  }
+	  return tokens;
+	}
+	
+	private String peek() {
+	  return position < tokens.size() ? tokens.get(position) : null;
+	}
+	
+	private boolean peekKeyword(String keyword) {
+	  return keyword.equalsIgnoreCase(peek());
+	}
+	
+	boolean accept(String token) {
+	  if (token.equalsIgnoreCase(peek())) {
+		position++;
+		return true;
+	  }
+	  return false;
+	}
+	
+	private String next() {
+	  if (position >= tokens.size()) {
+		throw InMemoryDynamoDbClient.validation("Invalid expression: unexpected end of input");
+	  }
+	  return tokens.get(position++);
+	}
+	
+	private void expect(String token) {
+	  if (!accept(token)) {
+		throw InMemoryDynamoDbClient.validation("Invalid expression: expected '" + token + "' but found '" + peek() + "'");
+	  }
+	}
+	
+	void expectEnd() {
+	  if (position < tokens.size()) {
+		throw InMemoryDynamoDbClient.validation("Invalid expression: unexpected token '" + peek() + "'");
+	  }
+	}
+	
+	// condition := and (OR and)*
+	Condition condition() {
+	  Condition condition = and();
+	  while (accept("OR")) {
+		condition = new Or(condition, and());
+	  }
+	  return condition;
+	}
+	
+	private Condition and() {
+	  Condition condition = not();
+	  while (accept("AND")) {
+		condition = new And(condition, not());
+	  }
+	  return condition;
+	}
+	
+	private Condition not() {
+	  if (accept("NOT")) {
+		return new Not(not());
+	  }
+	  return predicate();
+	}
+	
+	private Condition predicate() {
+	  if (accept("(")) {
+		Condition condition = condition();
+		expect(")");
+		return condition;
+	  }
+	  String token = peek();
+	  if (token != null && position + 1 < tokens.size() && tokens.get(position + 1).equals("(")) {
+		switch (token.toLowerCase(Locale.ROOT)) {
+		  case "attribute_exists", "attribute_not_exists" -> {
+			position += 2;
+			Path path = path();
+			expect(")");
+			return new Exists(path, token.equalsIgnoreCase("attribute_exists"));
+		  }
+		  case "attribute_type" -> {
+			position += 2;
+			Path path = path();
+			expect(",");
+			Operand type = operand();
+			expect(")");
+			return new AttributeType(path, type);
+		  }
+		  case "begins_with" -> {
+			position += 2;
+			Path path = path();
+			expect(",");
+			Operand prefix = operand();
+			expect(")");
+			return new BeginsWith(path, prefix);
+		  }
+		  case "contains" -> {
+			position += 2;
+			Path path = path();
+			expect(",");
+			Operand member = operand();
+			expect(")");
+			return new Contains(path, member);
+		  }
+		  default -> {
+			// size(...) is an operand, handled below
+		  }
+		}
+	  }
+	  Operand left = operand();
+	  if (accept("BETWEEN")) {
+		Operand low = operand();
+		expect("AND");
+		return new Between(left, low, operand());
+	  }
+	  if (accept("IN")) {
+		expect("(");
+		List<Operand> candidates = new ArrayList<>();
+		do {
+		  candidates.add(operand());
+		} while (accept(","));
+		expect(")");
+		return new In(left, candidates);
+	  }
+	  Comparator comparator = switch (next()) {
+		case "=" -> Comparator.EQ;
+		case "<>" -> Comparator.NE;
+		case "<" -> Comparator.LT;
+		case "<=" -> Comparator.LE;
+		case ">" -> Comparator.GT;
+		case ">=" -> Comparator.GE;
+		default -> throw InMemoryDynamoDbClient.validation("Invalid expression: expected a comparator at '" + tokens.get(position - 1) + "'");
+	  };
+	  return new Compare(comparator, left, operand());
+	}
+	
+	private Operand operand() {
+	  String token = peek();
+	  if (token == null) {
+		throw InMemoryDynamoDbClient.validation("Invalid expression: unexpected end of input");
+	  }
+	  if (token.startsWith(":")) {
+		position++;
+		return new Value(token);
+	  }
+	  if (token.equalsIgnoreCase("size") && "(".equals(tokens.size() > position + 1 ? tokens.get(position + 1) : null)) {
+		position += 2;
+		Path path = path();
+		expect(")");
+		return new Size(path);
+	  }
+	  return path();
+	}
+	
+	Path path() {
+	  List<Object> elements = new ArrayList<>();
+	  elements.add(name());
+	  while (true) {
+		if (accept(".")) {
+		  elements.add(name());
+		} else if (accept("[")) {
+		  elements.add(Integer.parseInt(next()));
+		  expect("]");
+		} else {
+		  return new Path(elements);
+		}
+	  }
+	}
+	
+	private String name() {
+	  String token = next();
+	  if (token.startsWith(":") || !(Character.isLetter(token.charAt(0)) || token.charAt(0) == '#' || token.charAt(0) == '_')) {
+		throw InMemoryDynamoDbClient.validation("Invalid expression: expected an attribute name but found '" + token + "'");
+	  }
+	  return token;
+	}
+	
+	// update := (SET set (, set)* | REMOVE path (, path)* | ADD path value (, ...)* | DELETE path value (, ...)*)+
+	List<UpdateAction> updateActions() {
+	  List<UpdateAction> actions = new ArrayList<>();
+	  while (peek() != null) {
+		String clause = next().toUpperCase(Locale.ROOT);
+		do {
+		  switch (clause) {
+			case "SET" -> {
+			  Path path = path();
+			  expect("=");
+			  actions.add(new SetAction(path, setValue()));
+			}
+			case "REMOVE" -> actions.add(new RemoveAction(path()));
+			case "ADD" -> actions.add(new AddAction(path(), operand()));
+			case "DELETE" -> actions.add(new DeleteAction(path(), operand()));
+			default -> throw InMemoryDynamoDbClient.validation("Invalid UpdateExpression: unknown clause " + clause);
+		  }
+		} while (accept(","));
+		if (peek() != null && !(peekKeyword("SET") || peekKeyword("REMOVE") || peekKeyword("ADD") || peekKeyword("DELETE"))) {
+		  throw InMemoryDynamoDbClient.validation("Invalid UpdateExpression: unexpected token '" + peek() + "'");
+		}
+	  }
+	  if (actions.isEmpty()) {
+		throw InMemoryDynamoDbClient.validation("Invalid UpdateExpression: the expression is empty");
+	  }
+	  return actions;
+	}
+	
+	private Operand setValue() {
+	  Operand left = setOperand();
+	  if (accept("+")) {
+		return new Arithmetic(left, true, setOperand());
+	  }
+	  if (accept("-")) {
+		return new Arithmetic(left, false, setOperand());
+	  }
+	  return left;
+	}
+	
+	private Operand setOperand() {
+	  String token = peek();
+	  boolean call = token != null && tokens.size() > position + 1 && tokens.get(position + 1).equals("(");
+	  if (call && token.equalsIgnoreCase("if_not_exists")) {
+		position += 2;
+		Path path = path();
+		expect(",");
+		Operand fallback = setValue();
+		expect(")");
+		return new IfNotExists(path, fallback);
+	  }
+	  if (call && token.equalsIgnoreCase("list_append")) {
+		position += 2;
+		Operand first = setValue();
+		expect(",");
+		Operand second = setValue();
+		expect(")");
+		return new ListAppend(first, second);
+	  }
+	  return operand();
+	}
+	
+  }
+  
+}
@@ -0,0 +1,946 @@
+package com.pedro.apps.inmemory;
+
+import com.pedro.apps.inmemory.Expressions.Condition;
+import com.pedro.apps.inmemory.Expressions.Context;
+import com.pedro.apps.inmemory.InMemoryTable.ItemKey;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// In-process stand-in for DynamoDB implementing the operations the application uses: GetItem,
+// PutItem, UpdateItem, DeleteItem, Query, Scan, BatchGetItem, BatchWriteItem, TransactGetItems,
+// TransactWriteItems and the table calls (Create, Describe, Delete, List), with condition, filter,
+// key condition, projection and update expressions. Items live in concurrent sorted maps (see
+// InMemoryTable); writes take a lock stripe per item. Transactions behave like DynamoDB's: a
+// TransactWriteItems holds its items for its whole (simulated) duration, another transaction on one of
+// them is cancelled with TransactionConflict and a single-item write fails with TransactionConflictException
+// instead of waiting. Its writes are applied under a commit lock that queries, scans and batch and
+// transactional gets read under, so no read sees a transaction half applied.
+// Latency and throttling are simulated by the injected profiles. Not supported: secondary indexes,
+// streams, TTL, the legacy (non-expression) parameters and nested paths in update expressions.
+public class InMemoryDynamoDbClient implements DynamoDbClient {
+  
+  private static final long MAX_PAGE_BYTES = 1024 * 1024;
+  private static final int MAX_TRANSACTION_ITEMS = 100;
+  private static final int MAX_BATCH_WRITE_ITEMS = 25;
+  private static final int MAX_BATCH_GET_KEYS = 100;
+  
+  private final Map<String, InMemoryTable> tables = new ConcurrentHashMap<>();
+  private final ReentrantLock[] stripes = new ReentrantLock[1024];
+  // Items of the TransactWriteItems calls in progress
+  private final Set<TransactionItem> inFlight = ConcurrentHashMap.newKeySet();
+  private final ReentrantReadWriteLock commitLock = new ReentrantReadWriteLock();
+  private final LatencyProfile latencyProfile;
+  private final ThrottlingProfile throttlingProfile;
+  
+  public InMemoryDynamoDbClient(LatencyProfile latencyProfile, ThrottlingProfile throttlingProfile) {
+	this.latencyProfile = latencyProfile;
+	this.throttlingProfile = throttlingProfile;
+	for (int i = 0; i < stripes.length; i++) {
+	  stripes[i] = new ReentrantLock();
+	}
+  }
+  
+  // Creates a table with string keys, rangeKey may be null
+  public void createTable(String tableName, String hashKey, String rangeKey) {
+	if (tables.putIfAbsent(tableName, new InMemoryTable(tableName, hashKey, rangeKey)) != null) {
+	  throw error(ResourceInUseException.builder(), "ResourceInUseException", "Table already exists: " + tableName);
+	}
+  }
+  
+  @Override
+  public String serviceName() {
+	return SERVICE_NAME;
+  }
+  
+  @Override
+  public void close() {
+  }
+  
+  // ---- Items ----
+  
+  @Override
+  public GetItemResponse getItem(GetItemRequest request) {
+	simulateLatency("GetItem");
+	InMemoryTable table = table(request.tableName());
+	admit(table.name(), false);
+	Map<String, AttributeValue> item = table.get(table.keyOf(request.key(), true));
+	double units = readUnits(item == null ? 0 : AttributeValues.size(item), request.consistentRead());
+	throttlingProfile.consumed(table.name(), false, units);
+	GetItemResponse.Builder response = GetItemResponse.builder()
+		.consumedCapacity(capacity(request.returnConsumedCapacity(), table.name(), units));
+	if (item != null) {
+	  Context context = Context.of(request.expressionAttributeNames(), null);
+	  response.item(project(item, request.projectionExpression(), request.hasAttributesToGet() ? request.attributesToGet() : null, context));
+	}
+	return response.build();
+  }
+  
+  @Override
+  public PutItemResponse putItem(PutItemRequest request) {
+	simulateLatency("PutItem");
+	InMemoryTable table = table(request.tableName());
+	rejectLegacy(request.hasExpected());
+	admit(table.name(), true);
+	ItemKey key = table.keyOf(request.item(), false);
+	Condition condition = condition(request.conditionExpression());
+	Context context = Context.of(request.expressionAttributeNames(), request.expressionAttributeValues());
+	Map<String, AttributeValue> old;
+	ReentrantLock lock = stripe(table, key);
+	lock.lock();
+	try {
+	  rejectIfInTransaction(table, key);
+	  old = table.get(key);
+	  chargeWrite(table.name(), old, request.item());
+	  checkCondition(condition, old, context, request.returnValuesOnConditionCheckFailureAsString());
+	  table.put(key, request.item());
+	} finally {
+	  lock.unlock();
+	}
+	return PutItemResponse.builder()
+		.attributes(request.returnValues() == ReturnValue.ALL_OLD ? old : null)
+		.consumedCapacity(capacity(request.returnConsumedCapacity(), table.name(), writeUnits(old, request.item())))
+		.build();
+  }
+  
+  @Override
+  public UpdateItemResponse updateItem(UpdateItemRequest request) {
+	simulateLatency("UpdateItem");
+	InMemoryTable table = table(request.tableName());
+	rejectLegacy(request.hasExpected() || request.hasAttributeUpdates());
+	admit(table.name(), true);
+	ItemKey key = table.keyOf(request.key(), true);
+	Condition condition = condition(request.conditionExpression());
+	List<Expressions.UpdateAction> actions = request.updateExpression() == null ? List.of() : Expressions.update(request.updateExpression());
+	Context context = Context.of(request.expressionAttributeNames(), request.expressionAttributeValues());
+	Map<String, AttributeValue> old;
+	Map<String, AttributeValue> updated;
+	ReentrantLock lock = stripe(table, key);
+	lock.lock();
+	try {
+	  rejectIfInTransaction(table, key);
+	  old = table.get(key);
+	  checkCondition(condition, old, context, request.returnValuesOnConditionCheckFailureAsString());
+	  updated = update(table, request.key(), old, actions, context);
+	  chargeWrite(table.name(), old, updated);
+	  table.put(key, updated);
+	} finally {
+	  lock.unlock();
+	}
+	Map<String, AttributeValue> returned = switch (request.returnValues() == null ? ReturnValue.NONE : request.returnValues()) {
+	  case ALL_OLD -> old;
+	  case ALL_NEW -> updated;
+	  case UPDATED_OLD -> changedAttributes(old, updated, old);
+	  case UPDATED_NEW -> changedAttributes(old, updated, updated);
+	  default -> null;
+	};
+	return UpdateItemResponse.builder()
+		.attributes(returned)
+		.consumedCapacity(capacity(request.returnConsumedCapacity(), table.name(), writeUnits(old, updated)))
+		.build();
+  }
+  
+  @Override
+  public DeleteItemResponse deleteItem(DeleteItemRequest request) {
+	simulateLatency("DeleteItem");
+	InMemoryTable table = table(request.tableName());
+	rejectLegacy(request.hasExpected());
+	admit(table.name(), true);
+	ItemKey key = table.keyOf(request.key(), true);
+	Condition condition = condition(request.conditionExpression());
+	Context context = Context.of(request.expressionAttributeNames(), request.expressionAttributeValues());
+	Map<String, AttributeValue> old;
+	ReentrantLock lock = stripe(table, key);
+	lock.lock();
+	try {
+	  rejectIfInTransaction(table, key);
+	  old = table.get(key);
+	  chargeWrite(table.name(), old, null);
+	  checkCondition(condition, old, context, request.returnValuesOnConditionCheckFailureAsString());
+	  table.remove(key);
+	} finally {
+	  lock.unlock();
+	}
+	return DeleteItemResponse.builder()
+		.attributes(request.returnValues() == ReturnValue.ALL_OLD ? old : null)
+		.consumedCapacity(capacity(request.returnConsumedCapacity(), table.name(), writeUnits(old, null)))
+		.build();
+  }
+  
+  // ---- Query and scan ----
+  
+  @Override
+  public QueryResponse query(QueryRequest request) {
+	simulateLatency("Query");
+	InMemoryTable table = table(request.tableName());
+	rejectLegacy(request.hasKeyConditions() || request.hasQueryFilter());
+	rejectIndex(request.indexName());
+	if (request.keyConditionExpression() == null) {
+	  throw validation("Either the KeyConditions or KeyConditionExpression parameter must be specified in the request");
+	}
+	admit(table.name(), false);
+	Context context = Context.of(request.expressionAttributeNames(), request.expressionAttributeValues());
+	KeyRange range = keyRange(table, Expressions.condition(request.keyConditionExpression()), context);
+	NavigableMap<KeyValue, Map<String, AttributeValue>> view = range.apply(table.partition(range.partition()));
+	boolean forward = !Boolean.FALSE.equals(request.scanIndexForward());
+	if (request.hasExclusiveStartKey() && !request.exclusiveStartKey().isEmpty()) {
+	  KeyValue start = table.keyOf(request.exclusiveStartKey(), false).sort();
+	  view = forward ? view.tailMap(start, false) : view.headMap(start, false);
+	}
+	if (!forward) {
+	  view = view.descendingMap();
+	}
+	Iterator<Map<String, AttributeValue>> candidates = view.values().iterator();
+	Page page = readCommitted(() -> page(table, candidates, request.limit(), range.sortFilter(), condition(request.filterExpression()), context));
+	double units = readUnits(page.bytes(), request.consistentRead());
+	throttlingProfile.consumed(table.name(), false, units);
+	QueryResponse.Builder response = QueryResponse.builder()
+		.count(page.items().size())
+		.scannedCount(page.scanned())
+		.lastEvaluatedKey(page.lastEvaluatedKey())
+		.consumedCapacity(capacity(request.returnConsumedCapacity(), table.name(), units));
+	if (request.select() != Select.COUNT) {
+	  response.items(project(page.items(), request.projectionExpression(), request.hasAttributesToGet() ? request.attributesToGet() : null, context));
+	}
+	return response.build();
+  }
+  
+  @Override
+  public ScanResponse scan(ScanRequest request) {
+	simulateLatency("Scan");
+	InMemoryTable table = table(request.tableName());
+	rejectLegacy(request.hasScanFilter());
+	rejectIndex(request.indexName());
+	admit(table.name(), false);
+	Integer segment = request.segment();
+	Integer totalSegments = request.totalSegments();
+	if ((segment == null) != (totalSegments == null) || (segment != null && (segment < 0 || segment >= totalSegments))) {
+	  throw validation("Segment and TotalSegments must be given together and Segment must be less than TotalSegments");
+	}
+	ItemKey start = request.hasExclusiveStartKey() && !request.exclusiveStartKey().isEmpty()
+		? table.keyOf(request.exclusiveStartKey(), false) : null;
+	var partitions = start == null ? table.partitions() : table.partitions().tailMap(start.partition(), true);
+	Stream<Map<String, AttributeValue>> items = partitions.entrySet().stream()
+		.filter(partition -> segment == null || Math.floorMod(partition.getKey().hashCode(), totalSegments) == segment)
+		.flatMap(partition -> (start != null && partition.getKey().equals(start.partition())
+			? partition.getValue().tailMap(start.sort(), false) : partition.getValue()).values().stream());
+	Context context = Context.of(request.expressionAttributeNames(), request.expressionAttributeValues());
+	Page page = readCommitted(() -> page(table, items.iterator(), request.limit(), null, condition(request.filterExpression()), context));
+	double units = readUnits(page.bytes(), request.consistentRead());
+	throttlingProfile.consumed(table.name(), false, units);
+	ScanResponse.Builder response = ScanResponse.builder()
+		.count(page.items().size())
+		.scannedCount(page.scanned())
+		.lastEvaluatedKey(page.lastEvaluatedKey())
+		.consumedCapacity(capacity(request.returnConsumedCapacity(), table.name(), units));
+	if (request.select() != Select.COUNT) {
+	  response.items(project(page.items(), request.projectionExpression(), request.hasAttributesToGet() ? request.attributesToGet() : null, context));
+	}
+	return response.build();
+  }
+  
+  private record Page(List<Map<String, AttributeValue>> items, int scanned, long bytes, Map<String, AttributeValue> lastEvaluatedKey) {
+  }
+  
+  // Reads until the limit of evaluated items or 1 MB, then applies the filter like DynamoDB does
+  private Page page(InMemoryTable table, Iterator<Map<String, AttributeValue>> items, Integer limit,
+					Condition sortFilter, Condition filter, Context context) {
+	if (limit != null && limit < 1) {
+	  throw validation("Limit must be greater than or equal to 1");
+	}
+	List<Map<String, AttributeValue>> matched = new ArrayList<>();
+	Map<String, AttributeValue> last = null;
+	int scanned = 0;
+	long bytes = 0;
+	boolean more = false;
+	while (items.hasNext()) {
+	  if ((limit != null && scanned >= limit) || bytes >= MAX_PAGE_BYTES) {
+		more = true;
+		break;
+	  }
+	  Map<String, AttributeValue> item = items.next();
+	  if (sortFilter != null && !sortFilter.test(item, context)) {
+		continue;
+	  }
+	  scanned++;
+	  bytes += AttributeValues.size(item);
+	  last = item;
+	  if (filter == null || filter.test(item, context)) {
+		matched.add(item);
+	  }
+	}
+	return new Page(matched, scanned, bytes, more && last != null ? table.keyAttributes(last) : null);
+  }
+  
+  // Partition key value and sort key range of a key condition expression
+  private record KeyRange(KeyValue partition, Condition sortFilter, KeyValue from, boolean fromInclusive,
+						  KeyValue to, boolean toInclusive) {
+	
+	NavigableMap<KeyValue, Map<String, AttributeValue>> apply(NavigableMap<KeyValue, Map<String, AttributeValue>> partition) {
+	  if (from != null && to != null) {
+		return partition.subMap(from, fromInclusive, to, toInclusive);
+	  }
+	  if (from != null) {
+		return partition.tailMap(from, fromInclusive);
+	  }
+	  if (to != null) {
+		return partition.headMap(to, toInclusive);
+	  }
+	  return partition;
+	}
+	
+  }
+  
+  private static KeyRange keyRange(InMemoryTable table, Condition keyCondition, Context context) {
+	List<Condition> conditions = new ArrayList<>();
+	flattenAnd(keyCondition, conditions);
+	KeyValue partition = null;
+	Condition sortCondition = null;
+	for (Condition condition : conditions) {
+	  String attribute = keyAttribute(condition, context);
+	  if (table.hashKey().equals(attribute) && condition instanceof Expressions.Compare compare
+		  && compare.comparator() == Expressions.Comparator.EQ && partition == null) {
+		partition = KeyValue.of(compare.right().resolve(Map.of(), context));
+	  } else if (attribute != null && attribute.equals(table.rangeKey()) && sortCondition == null) {
+		sortCondition = condition;
+	  } else {
+		throw validation("Query key condition not supported: " + condition);
+	  }
+	}
+	if (partition == null) {
+	  throw validation("Query condition missed key schema element: " + table.hashKey());
+	}
+	if (sortCondition == null) {
+	  return new KeyRange(partition, null, null, false, null, false);
+	}
+	return switch (sortCondition) {
+	  case Expressions.Compare compare -> {
+		KeyValue value = KeyValue.of(compare.right().resolve(Map.of(), context));
+		yield switch (compare.comparator()) {
+		  case EQ -> new KeyRange(partition, null, value, true, value, true);
+		  case LT -> new KeyRange(partition, null, null, false, value, false);
+		  case LE -> new KeyRange(partition, null, null, false, value, true);
+		  case GT -> new KeyRange(partition, null, value, false, null, false);
+		  case GE -> new KeyRange(partition, null, value, true, null, false);
+		  default -> throw validation("Unsupported operator on the sort key: " + compare.comparator());
+		};
+	  }
+	  case Expressions.Between between -> {
+		KeyValue low = KeyValue.of(between.low().resolve(Map.of(), context));
+		KeyValue high = KeyValue.of(between.high().resolve(Map.of(), context));
+		if (low.compareTo(high) > 0) {
+		  throw validation("Invalid KeyConditionExpression: the BETWEEN operator requires upper bound to be greater than or equal to lower bound");
+		}
+		yield new KeyRange(partition, null, low, true, high, true);
+	  }
+	  case Expressions.BeginsWith beginsWith -> {
+		AttributeValue prefix = beginsWith.prefix().resolve(Map.of(), context);
+		String end = prefix.s() == null ? null : prefixEnd(prefix.s());
+		// Strings starting with the prefix sort between the prefix and its successor; other types are filtered
+		yield end == null
+			? new KeyRange(partition, beginsWith, KeyValue.of(prefix), true, null, false)
+			: new KeyRange(partition, null, KeyValue.of(prefix), true, KeyValue.of(AttributeValue.fromS(end)), false);
+	  }
+	  default -> throw validation("Query key condition not supported: " + sortCondition);
+	};
+  }
+  
+  private static void flattenAnd(Condition condition, List<Condition> conditions) {
+	if (condition instanceof Expressions.And and) {
+	  flattenAnd(and.left(), conditions);
+	  flattenAnd(and.right(), conditions);
+	} else {
+	  conditions.add(condition);
+	}
+  }
+  
+  private static String keyAttribute(Condition condition, Context context) {
+	Expressions.Operand operand = switch (condition) {
+	  case Expressions.Compare compare -> compare.left();
+	  case Expressions.Between between -> between.operand();
+	  case Expressions.BeginsWith beginsWith -> beginsWith.path();
+	  default -> null;
+	};
+	if (operand instanceof Expressions.Path path && path.elements().size() == 1) {
+	  return context.name((String) path.elements().get(0));
+	}
+	return null;
+  }
+  
+  // Smallest string greater than every string starting with the prefix, null if there is none
+  private static String prefixEnd(String prefix) {
+	for (int i = prefix.length() - 1; i >= 0; i--) {
+	  if (prefix.charAt(i) != Character.MAX_VALUE) {
+		return prefix.substring(0, i) + (char) (prefix.charAt(i) + 1);
+	  }
+	}
+	return null;
+  }
+  
+  // ---- Batches ----
+  
+  @Override
+  public BatchGetItemResponse batchGetItem(BatchGetItemRequest request) {
+	simulateLatency("BatchGetItem");
+	if (request.requestItems().values().stream().mapToInt(keys -> keys.keys().size()).sum() > MAX_BATCH_GET_KEYS) {
+	  throw validation("Too many items requested for the BatchGetItem call");
+	}
+	Map<String, List<Map<String, AttributeValue>>> responses = new HashMap<>();
+	Map<String, KeysAndAttributes> unprocessed = new HashMap<>();
+	List<ConsumedCapacity> capacities = new ArrayList<>();
+	request.requestItems().forEach((tableName, keys) -> {
+	  InMemoryTable table = table(tableName);
+	  // A throttled table leaves its keys unprocessed, the caller retries them
+	  if (!throttlingProfile.admit(tableName, false)) {
+		unprocessed.put(tableName, keys);
+		return;
+	  }
+	  Context context = Context.of(keys.expressionAttributeNames(), null);
+	  List<Map<String, AttributeValue>> items = new ArrayList<>();
+	  List<Map<String, AttributeValue>> found = readCommitted(() -> {
+		List<Map<String, AttributeValue>> read = new ArrayList<>();
+		for (Map<String, AttributeValue> key : keys.keys()) {
+		  read.add(table.get(table.keyOf(key, true)));
+		}
+		return read;
+	  });
+	  double units = 0;
+	  for (Map<String, AttributeValue> item : found) {
+		units += readUnits(item == null ? 0 : AttributeValues.size(item), keys.consistentRead());
+		if (item != null) {
+		  items.add(project(item, keys.projectionExpression(), keys.hasAttributesToGet() ? keys.attributesToGet() : null, context));
+		}
+	  }
+	  throttlingProfile.consumed(tableName, false, units);
+	  responses.put(tableName, items);
+	  addCapacity(capacities, request.returnConsumedCapacity(), tableName, units);
+	});
+	if (!request.requestItems().isEmpty() && unprocessed.size() == request.requestItems().size()) {
+	  throw throttled(String.join(", ", unprocessed.keySet()));
+	}
+	return BatchGetItemResponse.builder()
+		.responses(responses)
+		.unprocessedKeys(unprocessed)
+		.consumedCapacity(capacities.isEmpty() ? null : capacities)
+		.build();
+  }
+  
+  @Override
+  public BatchWriteItemResponse batchWriteItem(BatchWriteItemRequest request) {
+	simulateLatency("BatchWriteItem");
+	if (request.requestItems().values().stream().mapToInt(List::size).sum() > MAX_BATCH_WRITE_ITEMS) {
+	  throw validation("Too many items requested for the BatchWriteItem call");
+	}
+	Map<String, List<WriteRequest>> unprocessed = new HashMap<>();
+	Set<String> throttled = new HashSet<>();
+	List<ConsumedCapacity> capacities = new ArrayList<>();
+	Set<List<Object>> seen = new HashSet<>();
+	request.requestItems().forEach((tableName, writes) -> {
+	  InMemoryTable table = table(tableName);
+	  for (WriteRequest write : writes) {
+		ItemKey key = write.putRequest() != null ? table.keyOf(write.putRequest().item(), false) : table.keyOf(write.deleteRequest().key(), true);
+		if (!seen.add(List.of(tableName, key))) {
+		  throw validation("Provided list of item keys contains duplicates");
+		}
+	  }
+	});
+	request.requestItems().forEach((tableName, writes) -> {
+	  InMemoryTable table = table(tableName);
+	  if (!throttlingProfile.admit(tableName, true)) {
+		unprocessed.put(tableName, writes);
+		throttled.add(tableName);
+		return;
+	  }
+	  double units = 0;
+	  for (WriteRequest write : writes) {
+		Map<String, AttributeValue> item = write.putRequest() != null ? write.putRequest().item() : null;
+		ItemKey key = item != null ? table.keyOf(item, false) : table.keyOf(write.deleteRequest().key(), true);
+		ReentrantLock lock = stripe(table, key);
+		lock.lock();
+		try {
+		  if (inFlight.contains(new TransactionItem(table, key))) {
+			// Left for the caller to retry, like the other unprocessed items
+			unprocessed.computeIfAbsent(tableName, t -> new ArrayList<>()).add(write);
+			continue;
+		  }
+		  units += writeUnits(table.get(key), item);
+		  if (item != null) {
+			table.put(key, item);
+		  } else {
+			table.remove(key);
+		  }
+		} finally {
+		  lock.unlock();
+		}
+	  }
+	  throttlingProfile.consumed(tableName, true, units);
+	  addCapacity(capacities, request.returnConsumedCapacity(), tableName, units);
+	});
+	if (!request.requestItems().isEmpty() && throttled.size() == request.requestItems().size()) {
+	  throw throttled(String.join(", ", throttled));
+	}
+	return BatchWriteItemResponse.builder()
+		.unprocessedItems(unprocessed)
+		.consumedCapacity(capacities.isEmpty() ? null : capacities)
+		.build();
+  }
+  
+  // ---- Transactions ----
+  
+  private record TransactionItem(InMemoryTable table, ItemKey key) {
+  }
+  
+  @Override
+  public TransactWriteItemsResponse transactWriteItems(TransactWriteItemsRequest request) {
+	List<TransactWriteItem> writes = request.transactItems();
+	if (writes.isEmpty() || writes.size() > MAX_TRANSACTION_ITEMS) {
+	  throw validation("Member must have length less than or equal to " + MAX_TRANSACTION_ITEMS + " and greater than 0");
+	}
+	List<TransactionItem> items = new ArrayList<>();
+	for (TransactWriteItem write : writes) {
+	  InMemoryTable table;
+	  ItemKey key;
+	  if (write.put() != null) {
+		table = table(write.put().tableName());
+		key = table.keyOf(write.put().item(), false);
+	  } else if (write.update() != null) {
+		table = table(write.update().tableName());
+		key = table.keyOf(write.update().key(), true);
+	  } else if (write.delete() != null) {
+		table = table(write.delete().tableName());
+		key = table.keyOf(write.delete().key(), true);
+	  } else {
+		table = table(write.conditionCheck().tableName());
+		key = table.keyOf(write.conditionCheck().key(), true);
+	  }
+	  items.add(new TransactionItem(table, key));
+	}
+	if (new HashSet<>(items).size() != items.size()) {
+	  throw validation("Transaction request cannot include multiple operations on one item");
+	}
+	items.stream().map(item -> item.table().name()).distinct().forEach(tableName -> admit(tableName, true));
+	claimAll(items);
+	Map<String, Double> units = new LinkedHashMap<>();
+	try {
+	  // The items stay claimed for the whole call, which is when DynamoDB reports conflicts on them
+	  simulateLatency("TransactWriteItems");
+	  List<ReentrantLock> locks = lockAll(items);
+	  commitLock.writeLock().lock();
+	  try {
+		List<Map<String, AttributeValue>> olds = new ArrayList<>();
+		List<CancellationReason> reasons = new ArrayList<>();
+		boolean cancelled = false;
+		for (int i = 0; i < writes.size(); i++) {
+		  TransactWriteItem write = writes.get(i);
+		  Map<String, AttributeValue> old = items.get(i).table().get(items.get(i).key());
+		  olds.add(old);
+		  CancellationReason reason = transactionCheck(write, old);
+		  cancelled |= reason != null;
+		  reasons.add(reason != null ? reason : CancellationReason.builder().code("None").build());
+		}
+		for (int i = 0; i < writes.size(); i++) {
+		  TransactWriteItem write = writes.get(i);
+		  Map<String, AttributeValue> written = write.put() != null ? write.put().item() : null;
+		  units.merge(items.get(i).table().name(), 2 * writeUnits(olds.get(i), written), Double::sum);
+		}
+		units.forEach((tableName, consumed) -> throttlingProfile.consumed(tableName, true, consumed));
+		if (cancelled) {
+		  String codes = String.join(", ", reasons.stream().map(CancellationReason::code).toList());
+		  throw (TransactionCanceledException) error(TransactionCanceledException.builder().cancellationReasons(reasons),
+			  "TransactionCanceledException", "Transaction cancelled, please refer cancellation reasons for specific reasons [" + codes + "]");
+		}
+		for (int i = 0; i < writes.size(); i++) {
+		  TransactWriteItem write = writes.get(i);
+		  InMemoryTable table = items.get(i).table();
+		  ItemKey key = items.get(i).key();
+		  if (write.put() != null) {
+			table.put(key, write.put().item());
+		  } else if (write.update() != null) {
+			Update update = write.update();
+			Context context = Context.of(update.expressionAttributeNames(), update.expressionAttributeValues());
+			table.put(key, update(table, update.key(), olds.get(i), Expressions.update(update.updateExpression()), context));
+		  } else if (write.delete() != null) {
+			table.remove(key);
+		  }
+		}
+	  } finally {
+		commitLock.writeLock().unlock();
+		locks.forEach(ReentrantLock::unlock);
+	  }
+	} finally {
+	  items.forEach(inFlight::remove);
+	}
+	List<ConsumedCapacity> capacities = new ArrayList<>();
+	units.forEach((tableName, consumed) -> addCapacity(capacities, request.returnConsumedCapacity(), tableName, consumed));
+	return TransactWriteItemsResponse.builder().consumedCapacity(capacities.isEmpty() ? null : capacities).build();
+  }
+  
+  // Null when the item's condition holds
+  private static CancellationReason transactionCheck(TransactWriteItem write, Map<String, AttributeValue> old) {
+	String expression;
+	Map<String, String> names;
+	Map<String, AttributeValue> values;
+	String returnOld;
+	if (write.put() != null) {
+	  expression = write.put().conditionExpression();
+	  names = write.put().expressionAttributeNames();
+	  values = write.put().expressionAttributeValues();
+	  returnOld = write.put().returnValuesOnConditionCheckFailureAsString();
+	} else if (write.update() != null) {
+	  expression = write.update().conditionExpression();
+	  names = write.update().expressionAttributeNames();
+	  values = write.update().expressionAttributeValues();
+	  returnOld = write.update().returnValuesOnConditionCheckFailureAsString();
+	} else if (write.delete() != null) {
+	  expression = write.delete().conditionExpression();
+	  names = write.delete().expressionAttributeNames();
+	  values = write.delete().expressionAttributeValues();
+	  returnOld = write.delete().returnValuesOnConditionCheckFailureAsString();
+	} else {
+	  expression = write.conditionCheck().conditionExpression();
+	  names = write.conditionCheck().expressionAttributeNames();
+	  values = write.conditionCheck().expressionAttributeValues();
+	  returnOld = write.conditionCheck().returnValuesOnConditionCheckFailureAsString();
+	}
+	if (expression == null || Expressions.condition(expression).test(old == null ? Map.of() : old, Context.of(names, values))) {
+	  return null;
+	}
+	return CancellationReason.builder()
+		.code("ConditionalCheckFailed")
+		.message("The conditional request failed")
+		.item("ALL_OLD".equals(returnOld) ? old : null)
+		.build();
+  }
+  
+  @Override
+  public TransactGetItemsResponse transactGetItems(TransactGetItemsRequest request) {
+	simulateLatency("TransactGetItems");
+	if (request.transactItems().isEmpty() || request.transactItems().size() > MAX_TRANSACTION_ITEMS) {
+	  throw validation("Member must have length less than or equal to " + MAX_TRANSACTION_ITEMS + " and greater than 0");
+	}
+	List<TransactionItem> items = new ArrayList<>();
+	for (TransactGetItem get : request.transactItems()) {
+	  InMemoryTable table = table(get.get().tableName());
+	  items.add(new TransactionItem(table, table.keyOf(get.get().key(), true)));
+	}
+	items.stream().map(item -> item.table().name()).distinct().forEach(tableName -> admit(tableName, false));
+	if (items.stream().anyMatch(inFlight::contains)) {
+	  throw conflict(items.stream().map(inFlight::contains).toList());
+	}
+	List<ItemResponse> responses = new ArrayList<>();
+	Map<String, Double> units = new LinkedHashMap<>();
+	commitLock.readLock().lock();
+	try {
+	  for (int i = 0; i < items.size(); i++) {
+		Get get = request.transactItems().get(i).get();
+		Map<String, AttributeValue> item = items.get(i).table().get(items.get(i).key());
+		units.merge(items.get(i).table().name(), 2 * readUnits(item == null ? 0 : AttributeValues.size(item), true), Double::sum);
+		responses.add(item == null ? ItemResponse.builder().build() : ItemResponse.builder()
+			.item(project(item, get.projectionExpression(), null, Context.of(get.expressionAttributeNames(), null)))
+			.build());
+	  }
+	} finally {
+	  commitLock.readLock().unlock();
+	}
+	List<ConsumedCapacity> capacities = new ArrayList<>();
+	units.forEach((tableName, consumed) -> {
+	  throttlingProfile.consumed(tableName, false, consumed);
+	  addCapacity(capacities, request.returnConsumedCapacity(), tableName, consumed);
+	});
+	return TransactGetItemsResponse.builder().responses(responses).consumedCapacity(capacities.isEmpty() ? null : capacities).build();
+  }
+  
+  // ---- Tables ----
+  
+  @Override
+  public CreateTableResponse createTable(CreateTableRequest request) {
+	String hashKey = null;
+	String rangeKey = null;
+	for (KeySchemaElement element : request.keySchema()) {
+	  if (element.keyType() == KeyType.HASH) {
+		hashKey = element.attributeName();
+	  } else {
+		rangeKey = element.attributeName();
+	  }
+	}
+	if (hashKey == null) {
+	  throw validation("The key schema must have a HASH key");
+	}
+	createTable(request.tableName(), hashKey, rangeKey);
+	return CreateTableResponse.builder().tableDescription(describe(tables.get(request.tableName()))).build();
+  }
+  
+  @Override
+  public DescribeTableResponse describeTable(DescribeTableRequest request) {
+	return DescribeTableResponse.builder().table(describe(table(request.tableName()))).build();
+  }
+  
+  @Override
+  public DeleteTableResponse deleteTable(DeleteTableRequest request) {
+	InMemoryTable table = table(request.tableName());
+	tables.remove(table.name());
+	return DeleteTableResponse.builder().tableDescription(describe(table)).build();
+  }
+  
+  @Override
+  public ListTablesResponse listTables(ListTablesRequest request) {
+	return ListTablesResponse.builder().tableNames(new TreeSet<>(tables.keySet())).build();
+  }
+  
+  @Override
+  public ListTablesResponse listTables() {
+	return listTables(ListTablesRequest.builder().build());
+  }
+  
+  private static TableDescription describe(InMemoryTable table) {
+	List<KeySchemaElement> keySchema = new ArrayList<>();
+	List<AttributeDefinition> attributes = new ArrayList<>();
+	keySchema.add(KeySchemaElement.builder().attributeName(table.hashKey()).keyType(KeyType.HASH).build());
+	attributes.add(AttributeDefinition.builder().attributeName(table.hashKey()).attributeType(ScalarAttributeType.S).build());
+	if (table.rangeKey() != null) {
+	  keySchema.add(KeySchemaElement.builder().attributeName(table.rangeKey()).keyType(KeyType.RANGE).build());
+	  attributes.add(AttributeDefinition.builder().attributeName(table.rangeKey()).attributeType(ScalarAttributeType.S).build());
+	}
+	return TableDescription.builder()
+		.tableName(table.name())
+		.tableStatus(TableStatus.ACTIVE)
+		.keySchema(keySchema)
+		.attributeDefinitions(attributes)
+		.itemCount(table.itemCount())
+		.tableSizeBytes(table.sizeBytes())
+		.billingModeSummary(BillingModeSummary.builder().billingMode(BillingMode.PAY_PER_REQUEST).build())
+		.build();
+  }
+  
+  // ---- Helpers ----
+  
+  private InMemoryTable table(String tableName) {
+	InMemoryTable table = tableName == null ? null : tables.get(tableName);
+	if (table == null) {
+	  throw error(ResourceNotFoundException.builder(), "ResourceNotFoundException", "Requested resource not found: Table: " + tableName + " not found");
+	}
+	return table;
+  }
+  
+  private void simulateLatency(String operation) {
+	long latency = latencyProfile.latencyNanos(operation);
+	long deadline = System.nanoTime() + latency;
+	while (latency > 0) {
+	  LockSupport.parkNanos(latency);
+	  latency = deadline - System.nanoTime();
+	}
+  }
+  
+  private void admit(String tableName, boolean write) {
+	if (!throttlingProfile.admit(tableName, write)) {
+	  throw throttled(tableName);
+	}
+  }
+  
+  private void chargeWrite(String tableName, Map<String, AttributeValue> old, Map<String, AttributeValue> written) {
+	throttlingProfile.consumed(tableName, true, writeUnits(old, written));
+  }
+  
+  private ReentrantLock stripe(InMemoryTable table, ItemKey key) {
+	return stripes[stripeIndex(table, key)];
+  }
+  
+  private int stripeIndex(InMemoryTable table, ItemKey key) {
+	return Math.floorMod(Objects.hash(table.name(), key), stripes.length);
+  }
+  
+  // Claims the items of a write transaction, or cancels it when another transaction holds one of them
+  private void claimAll(List<TransactionItem> items) {
+	for (int i = 0; i < items.size(); i++) {
+	  if (!inFlight.add(items.get(i))) {
+		items.subList(0, i).forEach(inFlight::remove);
+		int conflicting = i;
+		throw conflict(IntStream.range(0, items.size()).mapToObj(j -> j == conflicting).toList());
+	  }
+	}
+  }
+  
+  private static TransactionCanceledException conflict(List<Boolean> conflicting) {
+	List<CancellationReason> reasons = conflicting.stream()
+		.map(c -> c
+			? CancellationReason.builder().code("TransactionConflict").message("Transaction is ongoing for the item").build()
+			: CancellationReason.builder().code("None").build())
+		.toList();
+	String codes = String.join(", ", reasons.stream().map(CancellationReason::code).toList());
+	return (TransactionCanceledException) error(TransactionCanceledException.builder().cancellationReasons(reasons),
+		"TransactionCanceledException", "Transaction cancelled, please refer cancellation reasons for specific reasons [" + codes + "]");
+  }
+  
+  // Single-item writes hold the item's stripe when they call this
+  private void rejectIfInTransaction(InMemoryTable table, ItemKey key) {
+	if (inFlight.contains(new TransactionItem(table, key))) {
+	  throw error(TransactionConflictException.builder(), "TransactionConflictException",
+		  "Transaction request cannot be processed because the item is part of an ongoing transaction");
+	}
+  }
+  
+  // Reads several items without seeing a write transaction half applied
+  private <T> T readCommitted(Supplier<T> read) {
+	commitLock.readLock().lock();
+	try {
+	  return read.get();
+	} finally {
+	  commitLock.readLock().unlock();
+	}
+  }
+  
+  // Locks the stripes of all the items in index order, so two transactions never wait on each other in a cycle
+  private List<ReentrantLock> lockAll(List<TransactionItem> items) {
+	int[] indexes = items.stream().mapToInt(item -> stripeIndex(item.table(), item.key())).distinct().toArray();
+	Arrays.sort(indexes);
+	List<ReentrantLock> locks = new ArrayList<>();
+	for (int index : indexes) {
+	  stripes[index].lock();
+	  locks.add(stripes[index]);
+	}
+	return locks;
+  }
+  
+  private static Condition condition(String expression) {
+	return expression == null ? null : Expressions.condition(expression);
+  }
+  
+  private static void checkCondition(Condition condition, Map<String, AttributeValue> old, Context context, String returnValuesOnFailure) {
+	if (condition != null && !condition.test(old == null ? Map.of() : old, context)) {
+	  throw error(ConditionalCheckFailedException.builder().item("ALL_OLD".equals(returnValuesOnFailure) ? old : null),
+		  "ConditionalCheckFailedException", "The conditional request failed");
+	}
+  }
+  
+  private static Map<String, AttributeValue> update(InMemoryTable table, Map<String, AttributeValue> key, Map<String, AttributeValue> old,
+													List<Expressions.UpdateAction> actions, Context context) {
+	Map<String, AttributeValue> updated = Expressions.applyUpdate(actions, old != null ? old : key, context);
+	if (!AttributeValues.equal(updated.get(table.hashKey()), key.get(table.hashKey()))
+		|| (table.rangeKey() != null && !AttributeValues.equal(updated.get(table.rangeKey()), key.get(table.rangeKey())))) {
+	  throw validation("Cannot update attribute, this attribute is part of the key");
+	}
+	return updated;
+  }
+  
+  private static Map<String, AttributeValue> changedAttributes(Map<String, AttributeValue> old, Map<String, AttributeValue> updated,
+															   Map<String, AttributeValue> source) {
+	if (source == null) {
+	  return null;
+	}
+	Map<String, AttributeValue> before = old == null ? Map.of() : old;
+	Map<String, AttributeValue> changed = new HashMap<>();
+	Set<String> names = new HashSet<>(before.keySet());
+	names.addAll(updated.keySet());
+	for (String name : names) {
+	  if (!AttributeValues.equal(before.get(name), updated.get(name)) && source.containsKey(name)) {
+		changed.put(name, source.get(name));
+	  }
+	}
+	return changed;
+  }
+  
+  private static Map<String, AttributeValue> project(Map<String, AttributeValue> item, String projectionExpression,
+													 List<String> attributesToGet, Context context) {
+	if (projectionExpression != null) {
+	  return Expressions.project(Expressions.projection(projectionExpression), item, context);
+	}
+	if (attributesToGet != null) {
+	  Map<String, AttributeValue> projected = new HashMap<>();
+	  attributesToGet.forEach(name -> {
+		if (item.containsKey(name)) {
+		  projected.put(name, item.get(name));
+		}
+	  });
+	  return projected;
+	}
+	return item;
+  }
+  
+  private static List<Map<String, AttributeValue>> project(List<Map<String, AttributeValue>> items, String projectionExpression,
+														   List<String> attributesToGet, Context context) {
+	if (projectionExpression == null && attributesToGet == null) {
+	  return items;
+	}
+	return items.stream().map(item -> project(item, projectionExpression, attributesToGet, context)).toList();
+  }
+  
+  private static void rejectLegacy(boolean legacy) {
+	if (legacy) {
+	  throw validation("Legacy parameters (Expected, AttributeUpdates, KeyConditions, QueryFilter, ScanFilter) are not supported by the in-memory backend, use expressions");
+	}
+  }
+  
+  private static void rejectIndex(String indexName) {
+	if (indexName != null) {
+	  throw validation("Secondary indexes are not supported by the in-memory backend: " + indexName);
+	}
+  }
+  
+  // Eventually consistent reads cost half; sizes are rounded up to 4 KB for reads and 1 KB for writes
+  private static double readUnits(long bytes, Boolean consistentRead) {
+	double units = Math.max(1, Math.ceil(bytes / 4096.0));
+	return Boolean.TRUE.equals(consistentRead) ? units : units / 2;
+  }
+  
+  private static double writeUnits(Map<String, AttributeValue> old, Map<String, AttributeValue> written) {
+	long bytes = Math.max(old == null ? 0 : AttributeValues.size(old), written == null ? 0 : AttributeValues.size(written));
+	return Math.max(1, Math.ceil(bytes / 1024.0));
+  }
+  
+  private static ConsumedCapacity capacity(ReturnConsumedCapacity mode, String tableName, double units) {
+	if (mode == null || mode == ReturnConsumedCapacity.NONE) {
+	  return null;
+	}
+	return ConsumedCapacity.builder().tableName(tableName).capacityUnits(units).build();
+  }
+  
+  private static void addCapacity(List<ConsumedCapacity> capacities, ReturnConsumedCapacity mode, String tableName, double units) {
+	ConsumedCapacity capacity = capacity(mode, tableName, units);
+	if (capacity != null) {
+	  capacities.add(capacity);
+	}
+  }
+  
+  static DynamoDbException validation(String message) {
+	return (DynamoDbException) error(DynamoDbException.builder(), "ValidationException", message);
+  }
+  
+  private static DynamoDbException throttled(String tableName) {
+	return (DynamoDbException) error(ProvisionedThroughputExceededException.builder(), "ProvisionedThroughputExceededException",
+		"The level of configured provisioned throughput for the table was exceeded: " + tableName);
+  }
+  
+  // Fills in what the SDK would have parsed from the HTTP response, so callers see the same status and error codes
+  private static RuntimeException error(DynamoDbException.Builder builder, String errorCode, String message) {
+	return builder
+		.message(message)
+		.statusCode(400)
+		.awsErrorDetails(AwsErrorDetails.builder()
+			.errorCode(errorCode)
+			.errorMessage(message)
+			.serviceName("DynamoDb")
+			.build())
+		.build();
+  }
+  
+}
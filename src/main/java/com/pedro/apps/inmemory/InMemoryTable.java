@@ -0,0 +1,112 @@
+package com.pedro.apps.inmemory;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// One table: partitions ordered by partition key, each one a sorted map of its items by sort key.
+// Both levels are concurrent skip lists, so gets, queries and scans never lock and a scan can resume
+// from any key. Writers hold the client's lock stripe of the item while they read and replace it.
+final class InMemoryTable {
+  
+  record ItemKey(KeyValue partition, KeyValue sort) {
+  }
+  
+  private final String name;
+  private final String hashKey;
+  private final String rangeKey;
+  private final ConcurrentSkipListMap<KeyValue, ConcurrentSkipListMap<KeyValue, Map<String, AttributeValue>>> partitions =
+	  new ConcurrentSkipListMap<>();
+  private final AtomicLong itemCount = new AtomicLong();
+  private final AtomicLong sizeBytes = new AtomicLong();
+  
+  InMemoryTable(String name, String hashKey, String rangeKey) {
+	this.name = name;
+	this.hashKey = hashKey;
+	this.rangeKey = rangeKey;
+  }
+  
+  String name() {
+	return name;
+  }
+  
+  String hashKey() {
+	return hashKey;
+  }
+  
+  // Null for tables with only a partition key
+  String rangeKey() {
+	return rangeKey;
+  }
+  
+  long itemCount() {
+	return itemCount.get();
+  }
+  
+  long sizeBytes() {
+	return sizeBytes.get();
+  }
+  
+  // Key of an item or of a Key parameter; a Key parameter (exact) must not carry other attributes
+  ItemKey keyOf(Map<String, AttributeValue> item, boolean exact) {
+	AttributeValue partition = item.get(hashKey);
+	AttributeValue sort = rangeKey == null ? null : item.get(rangeKey);
+	if (partition == null || (rangeKey != null && sort == null)) {
+	  throw InMemoryDynamoDbClient.validation("The provided key element does not match the schema of table " + name);
+	}
+	if (exact && item.size() != (rangeKey == null ? 1 : 2)) {
+	  throw InMemoryDynamoDbClient.validation("The provided key element does not match the schema of table " + name);
+	}
+	return new ItemKey(KeyValue.of(partition), sort == null ? KeyValue.NONE : KeyValue.of(sort));
+  }
+  
+  Map<String, AttributeValue> keyAttributes(Map<String, AttributeValue> item) {
+	Map<String, AttributeValue> key = new HashMap<>();
+	key.put(hashKey, item.get(hashKey));
+	if (rangeKey != null) {
+	  key.put(rangeKey, item.get(rangeKey));
+	}
+	return key;
+  }
+  
+  Map<String, AttributeValue> get(ItemKey key) {
+	NavigableMap<KeyValue, Map<String, AttributeValue>> partition = partitions.get(key.partition());
+	return partition == null ? null : partition.get(key.sort());
+  }
+  
+  // Callers hold the item's lock stripe. Empty partitions are kept, removing them would race with concurrent puts.
+  void put(ItemKey key, Map<String, AttributeValue> item) {
+	Map<String, AttributeValue> previous = partitions.computeIfAbsent(key.partition(), k -> new ConcurrentSkipListMap<>())
+		.put(key.sort(), Map.copyOf(item));
+	if (previous == null) {
+	  itemCount.incrementAndGet();
+	} else {
+	  sizeBytes.addAndGet(-AttributeValues.size(previous));
+	}
+	sizeBytes.addAndGet(AttributeValues.size(item));
+  }
+  
+  void remove(ItemKey key) {
+	ConcurrentSkipListMap<KeyValue, Map<String, AttributeValue>> partition = partitions.get(key.partition());
+	Map<String, AttributeValue> previous = partition == null ? null : partition.remove(key.sort());
+	if (previous != null) {
+	  itemCount.decrementAndGet();
+	  sizeBytes.addAndGet(-AttributeValues.size(previous));
+	}
+  }
+  
+  ConcurrentNavigableMap<KeyValue, Map<String, AttributeValue>> partition(KeyValue partitionKey) {
+	ConcurrentSkipListMap<KeyValue, Map<String, AttributeValue>> partition = partitions.get(partitionKey);
+	return partition == null ? new ConcurrentSkipListMap<>() : partition;
+  }
+  
+  ConcurrentNavigableMap<KeyValue, ConcurrentSkipListMap<KeyValue, Map<String, AttributeValue>>> partitions() {
+	return partitions;
+  }
+  
+}
@@ -0,0 +1,62 @@
+package com.pedro.apps.inmemory;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.math.BigDecimal;
+
+// A key attribute (S, N or B) usable as a map key: numbers compare and hash by value, so "1.0" and "1" are the same key
+final class KeyValue implements Comparable<KeyValue> {
+  
+  // Sort key of the single item of a partition in a table without range key
+  static final KeyValue NONE = new KeyValue(AttributeValue.fromS(""));
+  
+  private final AttributeValue value;
+  private final Object comparable;
+  
+  private KeyValue(AttributeValue value) {
+	this.value = value;
+	this.comparable = switch (value.type()) {
+	  case S -> value.s();
+	  case N -> AttributeValues.number(value).stripTrailingZeros();
+	  case B -> value.b();
+	  default -> throw InMemoryDynamoDbClient.validation("Key attributes must be of type S, N or B");
+	};
+  }
+  
+  static KeyValue of(AttributeValue value) {
+	return new KeyValue(value);
+  }
+  
+  AttributeValue value() {
+	return value;
+  }
+  
+  @Override
+  public int compareTo(KeyValue other) {
+	if (value.type() != other.value.type()) {
+	  return value.type().compareTo(other.value.type());
+	}
+	return switch (comparable) {
+	  case String s -> s.compareTo((String) other.comparable);
+	  case BigDecimal n -> n.compareTo((BigDecimal) other.comparable);
+	  default -> AttributeValues.compareBytes((SdkBytes) comparable, (SdkBytes) other.comparable);
+	};
+  }
+  
+  @Override
+  public boolean equals(Object o) {
+	return o instanceof KeyValue other && value.type() == other.value.type() && comparable.equals(other.comparable);
+  }
+  
+  @Override
+  public int hashCode() {
+	return comparable.hashCode();
+  }
+  
+  @Override
+  public String toString() {
+	return comparable.toString();
+  }
+  
+}
@@ -0,0 +1,27 @@
+package com.pedro.apps.inmemory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Simulated service latency of the in-memory backend, per operation ("GetItem", "Query", ...).
+// Declare a bean of this type to replace the one built from the dynamodb.in-memory.latency-* properties.
+public interface LatencyProfile {
+  
+  long latencyNanos(String operation);
+  
+  static LatencyProfile none() {
+	return operation -> 0;
+  }
+  
+  // A fixed base latency plus an exponentially distributed tail with the given mean, which gives the
+  // long tail real services have (p99 is about base + 4.6 * tail)
+  static LatencyProfile of(double baseMillis, double tailMeanMillis) {
+	if (baseMillis <= 0 && tailMeanMillis <= 0) {
+	  return none();
+	}
+	long base = (long) (baseMillis * TimeUnit.MILLISECONDS.toNanos(1));
+	double tailMean = tailMeanMillis * TimeUnit.MILLISECONDS.toNanos(1);
+	return operation -> base + (long) (-tailMean * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+  }
+  
+}
@@ -0,0 +1,74 @@
+package com.pedro.apps.inmemory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Simulated provisioned throughput of the in-memory backend. A request is rejected with
+// ProvisionedThroughputExceededException when admit returns false, and what it consumed is reported
+// afterwards, like DynamoDB which lets a request through while the table still has capacity and
+// charges it once the real cost is known. Declare a bean of this type to replace the default one.
+public interface ThrottlingProfile {
+  
+  boolean admit(String tableName, boolean write);
+  
+  void consumed(String tableName, boolean write, double units);
+  
+  static ThrottlingProfile unlimited() {
+	return new ThrottlingProfile() {
+	  @Override
+	  public boolean admit(String tableName, boolean write) {
+		return true;
+	  }
+	  
+	  @Override
+	  public void consumed(String tableName, boolean write, double units) {
+	  }
+	};
+  }
+  
+  // Every table gets the same read and write capacity (units per second, 0 = unlimited) and can
+  // bank up to burstSeconds of unused capacity
+  static ThrottlingProfile provisioned(double readUnitsPerSecond, double writeUnitsPerSecond, double burstSeconds) {
+	if (readUnitsPerSecond <= 0 && writeUnitsPerSecond <= 0) {
+	  return unlimited();
+	}
+	return new ThrottlingProfile() {
+	  
+	  private final Map<String, double[]> buckets = new ConcurrentHashMap<>();
+	  
+	  // {tokens, refilledAt nanos}
+	  private double[] bucket(String tableName, boolean write) {
+		double rate = write ? writeUnitsPerSecond : readUnitsPerSecond;
+		return buckets.computeIfAbsent(tableName + (write ? "#write" : "#read"), k -> new double[]{rate * burstSeconds, System.nanoTime()});
+	  }
+	  
+	  @Override
+	  public boolean admit(String tableName, boolean write) {
+		double rate = write ? writeUnitsPerSecond : readUnitsPerSecond;
+		if (rate <= 0) {
+		  return true;
+		}
+		double[] bucket = bucket(tableName, write);
+		synchronized (bucket) {
+		  long now = System.nanoTime();
+		  bucket[0] = Math.min(rate * burstSeconds, bucket[0] + rate * (now - bucket[1]) / 1e9);
+		  bucket[1] = now;
+		  return bucket[0] > 0;
+		}
+	  }
+	  
+	  @Override
+	  public void consumed(String tableName, boolean write, double units) {
+		if ((write ? writeUnitsPerSecond : readUnitsPerSecond) <= 0) {
+		  return;
+		}
+		double[] bucket = bucket(tableName, write);
+		synchronized (bucket) {
+		  bucket[0] -= units;
+		}
+	  }
+	  
+	};
+  }
+  
+}
@@ -0,0 +1,48 @@
+package com.pedro.apps.rebalancing;
+
+// Cars to drive from one delegation to another, as part of a rebalancing plan
+public class CarTransfer {
+  private String fromDelegationId;
+  private String toDelegationId;
+  private long cars;
+  private double distanceKm;
+  
+  public CarTransfer(String fromDelegationId, String toDelegationId, long cars, double distanceKm) {
+	this.fromDelegationId = fromDelegationId;
+	this.toDelegationId = toDelegationId;
+	this.cars = cars;
+	this.distanceKm = distanceKm;
+  }
+  
+  public String getFromDelegationId() {
+	return fromDelegationId;
+  }
+  
+  public void setFromDelegationId(String fromDelegationId) {
+	this.fromDelegationId = fromDelegationId;
+  }
+  
+  public String getToDelegationId() {
+	return toDelegationId;
+  }
+  
+  public void setToDelegationId(String toDelegationId) {
+	this.toDelegationId = toDelegationId;
+  }
+  
+  public long getCars() {
+	return cars;
+  }
+  
+  public void setCars(long cars) {
+	this.cars = cars;
+  }
+  
+  public double getDistanceKm() {
+	return distanceKm;
+  }
+  
+  public void setDistanceKm(double distanceKm) {
+	this.distanceKm = distanceKm;
+  }
+}
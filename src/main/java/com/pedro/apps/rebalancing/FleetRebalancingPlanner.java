@@ -0,0 +1,264 @@
+package com.pedro.apps.rebalancing;
+
+import com.pedro.apps.delegations.CarCatalogueIndex;
+import com.pedro.apps.delegations.Delegation;
+import com.pedro.apps.delegations.DelegationDirectory;
+import com.pedro.apps.delegations.QuoteEngine;
+import com.pedro.apps.users.Booking;
+import com.pedro.apps.users.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// Plans which cars to move between delegations so that every delegation has a car for each booking picked up there
+// in a date range. The fleet of a delegation is the number of its cars in the catalogue index, rented or not. The stock
+// of a delegation is projected day by day from it, minus the pickups and plus the returns (one-way bookings return at
+// their deliver delegation, the day after endDate). A booking that started before the range has its car out already
+// and counts as a pickup on the first day. The lowest point of that projection, less the reserve, is the number of
+// cars it can give away or, when negative, the number it is short. Spare cars are then matched to shortages at the
+// lowest total distance. The booking matrix is summed page by page as the bookings are scanned; the matrix, the
+// distance matrix and the solver's relaxations run on a dedicated fork-join pool. Each plan scans the Users table, so
+// the plan of a date range is reused for rebalancing.cache-seconds and concurrent calls for the same range share one scan.
+@Service
+public class FleetRebalancingPlanner {
+  
+  private final UserRepository userRepository;
+  private final DelegationDirectory delegationDirectory;
+  private final CarCatalogueIndex carCatalogueIndex;
+  private final int maxHorizonDays;
+  private final int reserveCars;
+  private final ForkJoinPool pool;
+  private final long cacheMillis;
+  // "fromDate/toDate" -> plan being computed or computed recently
+  private final Map<String, CachedPlan> cache = new ConcurrentHashMap<>();
+  
+  @Autowired
+  public FleetRebalancingPlanner(
+	  UserRepository userRepository,
+	  DelegationDirectory delegationDirectory,
+	  CarCatalogueIndex carCatalogueIndex,
+	  @Value("${rebalancing.max-horizon-days:90}") int maxHorizonDays,
+	  @Value("${rebalancing.reserve-cars:0}") int reserveCars,
+	  @Value("${rebalancing.parallelism:8}") int parallelism,
+	  @Value("${rebalancing.cache-seconds:300}") long cacheSeconds) {
+	this.userRepository = userRepository;
+	this.delegationDirectory = delegationDirectory;
+	this.carCatalogueIndex = carCatalogueIndex;
+	this.maxHorizonDays = maxHorizonDays;
+	this.reserveCars = reserveCars;
+	this.pool = new ForkJoinPool(parallelism);
+	this.cacheMillis = cacheSeconds * 1000;
+  }
+  
+  @PreDestroy
+  public void stop() {
+	pool.shutdownNow();
+  }
+  
+  public RebalancingPlan plan(String fromDate, String toDate) {
+	if (cacheMillis <= 0) {
+	  return compute(fromDate, toDate);
+	}
+	long now = System.currentTimeMillis();
+	cache.values().removeIf(cached -> cached.expiresAt() < now);
+	String key = fromDate + "/" + toDate;
+	CompletableFuture<RebalancingPlan> created = new CompletableFuture<>();
+	CachedPlan cached = cache.compute(key, (k, current) ->
+		current != null && current.expiresAt() >= now ? current : new CachedPlan(created, now + cacheMillis));
+	if (cached.plan() == created) {
+	  try {
+		created.complete(compute(fromDate, toDate));
+	  } catch (RuntimeException e) {
+		// Failed plans are not cached, the next call tries again
+		cache.remove(key, cached);
+		created.completeExceptionally(e);
+	  }
+	}
+	try {
+	  return cached.plan().join();
+	} catch (CompletionException e) {
+	  throw e.getCause() instanceof RuntimeException cause ? cause : e;
+	}
+  }
+  
+  private RebalancingPlan compute(String fromDate, String toDate) {
+	long started = System.nanoTime();
+	LocalDate from = LocalDate.parse(fromDate);
+	LocalDate to = LocalDate.parse(toDate);
+	if (to.isBefore(from)) {
+	  throw new IllegalArgumentException("toDate " + toDate + " is before fromDate " + fromDate);
+	}
+	int days = (int) (to.toEpochDay() - from.toEpochDay()) + 1;
+	if (days > maxHorizonDays) {
+	  throw new IllegalArgumentException("The plan covers " + days + " days, at most " + maxHorizonDays + " are allowed");
+	}
+	List<Delegation> delegations = new ArrayList<>(delegationDirectory.all());
+	delegations.sort(Comparator.comparing(Delegation::getDelegationId));
+	Map<String, Integer> index = new HashMap<>();
+	Map<String, Integer> carCounts = carCatalogueIndex.carCountByDelegation();
+	int[] fleet = new int[delegations.size()];
+	for (int d = 0; d < delegations.size(); d++) {
+	  index.put(delegations.get(d).getDelegationId(), d);
+	  fleet[d] = carCounts.getOrDefault(delegations.get(d).getDelegationId(), 0);
+	}
+	// Only one page of bookings is held at a time
+	int[] changes = new int[delegations.size() * days];
+	userRepository.scanBookingsOverlapping(fromDate, toDate, page -> {
+	  int[] pageChanges = inPool(() -> stockChanges(page, index, from, days));
+	  for (int k = 0; k < changes.length; k++) {
+		changes[k] += pageChanges[k];
+	  }
+	});
+	RebalancingPlan plan = inPool(() -> plan(delegations, fleet, changes, days));
+	plan.setFromDate(fromDate);
+	plan.setToDate(toDate);
+	plan.setPlanningMillis((System.nanoTime() - started) / 1_000_000);
+	return plan;
+  }
+  
+  // Parallel streams submitted to our own pool run their fork-join tasks there instead of the common pool
+  private <T> T inPool(Callable<T> task) {
+	try {
+	  return pool.submit(task).get();
+	} catch (InterruptedException e) {
+	  Thread.currentThread().interrupt();
+	  throw new IllegalStateException("Rebalancing plan interrupted", e);
+	} catch (ExecutionException e) {
+	  throw new IllegalStateException("Rebalancing plan failed", e.getCause());
+	}
+  }
+  
+  private RebalancingPlan plan(List<Delegation> delegations, int[] fleet, int[] changes, int days) {
+	// Lowest projected stock of every delegation over the range, less the reserve
+	long[] balance = new long[delegations.size()];
+	IntStream.range(0, delegations.size()).parallel().forEach(d -> {
+	  long stock = fleet[d];
+	  long lowest = Long.MAX_VALUE;
+	  for (int t = 0; t < days; t++) {
+		stock += changes[d * days + t];
+		lowest = Math.min(lowest, stock);
+	  }
+	  balance[d] = lowest - reserveCars;
+	});
+	
+	int[] donors = IntStream.range(0, balance.length).filter(d -> balance[d] > 0).toArray();
+	int[] receivers = IntStream.range(0, balance.length).filter(d -> balance[d] < 0).toArray();
+	long[] supply = new long[donors.length];
+	long[] demand = new long[receivers.length];
+	for (int i = 0; i < donors.length; i++) {
+	  supply[i] = balance[donors[i]];
+	}
+	for (int j = 0; j < receivers.length; j++) {
+	  demand[j] = -balance[receivers[j]];
+	}
+	
+	// Metres, so the solver works on exact integer costs
+	long[][] cost = new long[donors.length][];
+	IntStream.range(0, donors.length).parallel().forEach(i -> {
+	  Delegation donor = delegations.get(donors[i]);
+	  long[] row = new long[receivers.length];
+	  for (int j = 0; j < receivers.length; j++) {
+		Delegation receiver = delegations.get(receivers[j]);
+		row[j] = Math.round(1000 * QuoteEngine.distanceKm(
+			donor.getLatDelegation(), donor.getLonDelegation(), receiver.getLatDelegation(), receiver.getLonDelegation()));
+	  }
+	  cost[i] = row;
+	});
+	
+	long[][] flow = new TransportSolver(supply, demand, cost).solve();
+	
+	List<CarTransfer> transfers = new ArrayList<>();
+	long moved = 0;
+	double totalDistanceKm = 0;
+	for (int i = 0; i < donors.length; i++) {
+	  for (int j = 0; j < receivers.length; j++) {
+		if (flow[i][j] > 0) {
+		  double distanceKm = cost[i][j] / 1000.0;
+		  transfers.add(new CarTransfer(delegations.get(donors[i]).getDelegationId(),
+			  delegations.get(receivers[j]).getDelegationId(), flow[i][j], distanceKm));
+		  moved += flow[i][j];
+		  totalDistanceKm += flow[i][j] * distanceKm;
+		}
+	  }
+	}
+	long totalSupply = 0;
+	for (long s : supply) {
+	  totalSupply += s;
+	}
+	long totalDemand = 0;
+	for (long d : demand) {
+	  totalDemand += d;
+	}
+	return new RebalancingPlan(null, null, transfers, moved, totalDistanceKm, totalDemand - moved, totalSupply - moved, 0);
+  }
+  
+  // Delegation x day matrix (row-major, one row per delegation) of cars leaving (pickups) and coming back (returns),
+  // built as a parallel reduction: each fork-join task fills its own matrix and the partial matrices are summed
+  private static int[] stockChanges(List<Booking> bookings, Map<String, Integer> index, LocalDate from, int days) {
+	int size = index.size() * days;
+	return bookings.parallelStream().collect(
+		() -> new int[size],
+		(matrix, booking) -> addBooking(matrix, booking, index, from, days),
+		(left, right) -> {
+		  for (int k = 0; k < size; k++) {
+			left[k] += right[k];
+		  }
+		});
+  }
+  
+  private static void addBooking(int[] matrix, Booking booking, Map<String, Integer> index, LocalDate from, int days) {
+	if ("cancelled".equalsIgnoreCase(booking.getStatusBooking())) {
+	  return;
+	}
+	String pickUp = booking.getPickUpDelegation() != null ? booking.getPickUpDelegation().getDelegationId()
+		: booking.getCar() != null ? booking.getCar().getDelegationId() : null;
+	if (pickUp == null) {
+	  return;
+	}
+	String deliver = booking.getDeliverDelegation() != null ? booking.getDeliverDelegation().getDelegationId() : pickUp;
+	LocalDate start = parse(booking.getStartDate());
+	LocalDate end = parse(booking.getEndDate());
+	if (start == null || end == null || end.isBefore(start)) {
+	  return;
+	}
+	// The fleet still counts the car of a booking that started before the range, it leaves on the first day
+	long pickUpDay = Math.max(0, start.toEpochDay() - from.toEpochDay());
+	Integer pickUpIndex = index.get(pickUp);
+	if (pickUpIndex != null && pickUpDay < days) {
+	  matrix[pickUpIndex * days + (int) pickUpDay]--;
+	}
+	// The car can be rented again from the day after it is returned
+	long returnDay = end.toEpochDay() - from.toEpochDay() + 1;
+	Integer deliverIndex = index.get(deliver);
+	if (deliverIndex != null && returnDay >= 0 && returnDay < days) {
+	  matrix[deliverIndex * days + (int) returnDay]++;
+	}
+  }
+  
+  private static LocalDate parse(String date) {
+	try {
+	  return date == null ? null : LocalDate.parse(date);
+	} catch (DateTimeParseException e) {
+	  return null;
+	}
+  }
+  
+  private record CachedPlan(CompletableFuture<RebalancingPlan> plan, long expiresAt) {
+  }
+}
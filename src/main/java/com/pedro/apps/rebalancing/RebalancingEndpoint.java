@@ -0,0 +1,25 @@
+package com.pedro.apps.rebalancing;
+
+import com.vaadin.hilla.Endpoint;
+import jakarta.annotation.security.RolesAllowed;
+import org.springframework.beans.factory.annotation.Autowired;
+
+// Fleet operations, separate from the customer-facing endpoints and restricted to administrators:
+// a plan scans the whole Users table
+@Endpoint
+@RolesAllowed("ADMIN")
+public class RebalancingEndpoint {
+  
+  private final FleetRebalancingPlanner planner;
+  
+  @Autowired
+  public RebalancingEndpoint(FleetRebalancingPlanner planner) {
+	this.planner = planner;
+  }
+  
+  //Plan the car transfers between delegations that cover the bookings between two dates (yyyy-MM-dd)
+  public RebalancingPlan planRebalancing(String fromDate, String toDate) {
+	return planner.plan(fromDate, toDate);
+  }
+  
+}
@@ -0,0 +1,91 @@
+package com.pedro.apps.rebalancing;
+
+import java.util.List;
+
+// Transfers that cover the projected car shortages of a date range at the lowest total driving distance.
+// unmetDemand is the shortage left when there are not enough spare cars, unusedSurplus the spare cars left over.
+public class RebalancingPlan {
+  private String fromDate;
+  private String toDate;
+  private List<CarTransfer> transfers;
+  private long carsMoved;
+  private double totalDistanceKm; // sum of cars x distance over the transfers
+  private long unmetDemand;
+  private long unusedSurplus;
+  private long planningMillis;
+  
+  public RebalancingPlan(String fromDate, String toDate, List<CarTransfer> transfers, long carsMoved, double totalDistanceKm, long unmetDemand, long unusedSurplus, long planningMillis) {
+	this.fromDate = fromDate;
+	this.toDate = toDate;
+	this.transfers = transfers;
+	this.carsMoved = carsMoved;
+	this.totalDistanceKm = totalDistanceKm;
+	this.unmetDemand = unmetDemand;
+	this.unusedSurplus = unusedSurplus;
+	this.planningMillis = planningMillis;
+  }
+  
+  public String getFromDate() {
+	return fromDate;
+  }
+  
+  public void setFromDate(String fromDate) {
+	this.fromDate = fromDate;
+  }
+  
+  public String getToDate() {
+	return toDate;
+  }
+  
+  public void setToDate(String toDate) {
+	this.toDate = toDate;
+  }
+  
+  public List<CarTransfer> getTransfers() {
+	return transfers;
+  }
+  
+  public void setTransfers(List<CarTransfer> transfers) {
+	this.transfers = transfers;
+  }
+  
+  public long getCarsMoved() {
+	return carsMoved;
+  }
+  
+  public void setCarsMoved(long carsMoved) {
+	this.carsMoved = carsMoved;
+  }
+  
+  public double getTotalDistanceKm() {
+	return totalDistanceKm;
+  }
+  
+  public void setTotalDistanceKm(double totalDistanceKm) {
+	this.totalDistanceKm = totalDistanceKm;
+  }
+  
+  public long getUnmetDemand() {
+	return unmetDemand;
+  }
+  
+  public void setUnmetDemand(long unmetDemand) {
+	this.unmetDemand = unmetDemand;
+  }
+  
+  public long getUnusedSurplus() {
+	return unusedSurplus;
+  }
+  
+  public void setUnusedSurplus(long unusedSurplus) {
+	this.unusedSurplus = unusedSurplus;
+  }
+  
+  public long getPlanningMillis() {
+	return planningMillis;
+  }
+  
+  public void setPlanningMillis(long planningMillis) {
+	this.planningMillis = planningMillis;
+  }
+}
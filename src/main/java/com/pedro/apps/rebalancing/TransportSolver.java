@@ -0,0 +1,263 @@
+package com.pedro.apps.rebalancing;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// Minimum-cost transportation problem: moves as many units as possible from the sources (supply) to the sinks
+// (demand) while minimising the sum of units x cost over the complete bipartite graph between them.
+// Successive shortest paths with potentials: each round runs Dijkstra on reduced costs from every source with supply
+// left to the nearest sink with demand left, and pushes the bottleneck along that path. Costs must be non-negative.
+// Every round starts by settling all sources with supply at distance 0, which makes the first relaxation a min over
+// sources for each sink; that m x n step is split over the fork-join pool the caller runs in. The rest of the round
+// only follows edges that carry flow back and the few sources reached through them.
+final class TransportSolver {
+  
+  private static final long INF = Long.MAX_VALUE / 4;
+  private static final int PARALLEL_THRESHOLD = 64;
+  
+  private final int sources;
+  private final int sinks;
+  private final long[][] cost;
+  private final long[] supply;
+  private final long[] demand;
+  private final long[][] flow;
+  // Sources sending flow to each sink, i.e. the backward edges of the residual graph
+  private final int[][] senders;
+  private final int[] senderCount;
+  private final long[] sourcePotential;
+  private final long[] sinkPotential;
+  
+  // Work arrays reused by every round. Nodes are numbered sources first, then sinks.
+  private final long[] distance;
+  private final int[] parent; // the sink a source was reached from (-1 for a start), the source a sink was reached from
+  private final boolean[] settled;
+  private final int[] heap;
+  private final int[] heapPosition;
+  private int heapSize;
+  
+  TransportSolver(long[] supply, long[] demand, long[][] cost) {
+	this.sources = supply.length;
+	this.sinks = demand.length;
+	this.cost = cost;
+	this.supply = supply.clone();
+	this.demand = demand.clone();
+	this.flow = new long[sources][sinks];
+	this.senders = new int[sinks][4];
+	this.senderCount = new int[sinks];
+	this.sourcePotential = new long[sources];
+	this.sinkPotential = new long[sinks];
+	this.distance = new long[sources + sinks];
+	this.parent = new int[sources + sinks];
+	this.settled = new boolean[sources + sinks];
+	this.heap = new int[sources + sinks];
+	this.heapPosition = new int[sources + sinks];
+  }
+  
+  // Returns flow[source][sink], the units to move on each pair
+  long[][] solve() {
+	int target;
+	while ((target = shortestPath()) >= 0) {
+	  augment(target);
+	}
+	return flow;
+  }
+  
+  private long reducedCost(int source, int sink) {
+	return cost[source][sink] + sourcePotential[source] - sinkPotential[sink];
+  }
+  
+  // Dijkstra from every source with supply left, stopped at the nearest sink with demand left. Potentials are raised
+  // by min(distance, that sink's distance), which keeps every reduced cost non-negative and makes the path found zero
+  // cost. Returns the sink, or -1 when none can be reached because supply or demand is exhausted.
+  private int shortestPath() {
+	Arrays.fill(distance, INF);
+	Arrays.fill(settled, false);
+	Arrays.fill(heapPosition, -1);
+	heapSize = 0;
+	int[] starts = IntStream.range(0, sources).filter(i -> supply[i] > 0).toArray();
+	if (starts.length == 0) {
+	  return -1;
+	}
+	for (int i : starts) {
+	  distance[i] = 0;
+	  parent[i] = -1;
+	  settled[i] = true;
+	}
+	IntStream sinkRange = IntStream.range(0, sinks);
+	if ((long) starts.length * sinks >= PARALLEL_THRESHOLD * PARALLEL_THRESHOLD) {
+	  sinkRange = sinkRange.parallel();
+	}
+	// Each sink is written by one task only
+	sinkRange.forEach(j -> {
+	  long best = INF;
+	  int bestSource = -1;
+	  for (int i : starts) {
+		long candidate = reducedCost(i, j);
+		if (candidate < best) {
+		  best = candidate;
+		  bestSource = i;
+		}
+	  }
+	  distance[sources + j] = best;
+	  parent[sources + j] = bestSource;
+	});
+	for (int j = 0; j < sinks; j++) {
+	  if (distance[sources + j] < INF) {
+		push(sources + j);
+	  }
+	}
+	
+	int target = -1;
+	while (heapSize > 0) {
+	  int node = pop();
+	  settled[node] = true;
+	  if (node >= sources) {
+		int sink = node - sources;
+		if (demand[sink] > 0) {
+		  target = sink;
+		  break;
+		}
+		// Flow already sent to this sink can be sent elsewhere by its source
+		for (int k = 0; k < senderCount[sink]; k++) {
+		  int source = senders[sink][k];
+		  if (!settled[source]) {
+			relax(source, distance[node] - reducedCost(source, sink), sink);
+		  }
+		}
+	  } else {
+		for (int j = 0; j < sinks; j++) {
+		  if (!settled[sources + j]) {
+			relax(sources + j, distance[node] + reducedCost(node, j), node);
+		  }
+		}
+	  }
+	}
+	if (target < 0) {
+	  return -1;
+	}
+	long limit = distance[sources + target];
+	for (int i = 0; i < sources; i++) {
+	  sourcePotential[i] += Math.min(distance[i], limit);
+	}
+	for (int j = 0; j < sinks; j++) {
+	  sinkPotential[j] += Math.min(distance[sources + j], limit);
+	}
+	return target;
+  }
+  
+  // Pushes the bottleneck of the shortest path to the sink: its demand, the supply of the source the path starts
+  // from and the flow on every backward edge it takes
+  private void augment(int target) {
+	long amount = demand[target];
+	int sink = target;
+	int source = parent[sources + sink];
+	while (parent[source] >= 0) {
+	  int previousSink = parent[source];
+	  amount = Math.min(amount, flow[source][previousSink]);
+	  sink = previousSink;
+	  source = parent[sources + sink];
+	}
+	amount = Math.min(amount, supply[source]);
+	
+	demand[target] -= amount;
+	sink = target;
+	source = parent[sources + sink];
+	while (true) {
+	  addFlow(source, sink, amount);
+	  int previousSink = parent[source];
+	  if (previousSink < 0) {
+		break;
+	  }
+	  addFlow(source, previousSink, -amount);
+	  sink = previousSink;
+	  source = parent[sources + sink];
+	}
+	supply[source] -= amount;
+  }
+  
+  private void addFlow(int source, int sink, long amount) {
+	long before = flow[source][sink];
+	flow[source][sink] = before + amount;
+	if (before == 0) {
+	  if (senderCount[sink] == senders[sink].length) {
+		senders[sink] = Arrays.copyOf(senders[sink], senders[sink].length * 2);
+	  }
+	  senders[sink][senderCount[sink]++] = source;
+	} else if (flow[source][sink] == 0) {
+	  for (int k = 0; k < senderCount[sink]; k++) {
+		if (senders[sink][k] == source) {
+		  senders[sink][k] = senders[sink][--senderCount[sink]];
+		  break;
+		}
+	  }
+	}
+  }
+  
+  private void relax(int node, long candidate, int from) {
+	if (candidate < distance[node]) {
+	  distance[node] = candidate;
+	  parent[node] = from;
+	  if (heapPosition[node] < 0) {
+		push(node);
+	  } else {
+		siftUp(heapPosition[node]);
+	  }
+	}
+  }
+  
+  // Binary heap of node numbers ordered by distance, with positions kept for decrease-key
+  private void push(int node) {
+	heap[heapSize] = node;
+	heapPosition[node] = heapSize;
+	siftUp(heapSize++);
+  }
+  
+  private int pop() {
+	int top = heap[0];
+	heapPosition[top] = -1;
+	int last = heap[--heapSize];
+	if (heapSize > 0) {
+	  heap[0] = last;
+	  heapPosition[last] = 0;
+	  siftDown(0);
+	}
+	return top;
+  }
+  
+  private void siftUp(int index) {
+	int node = heap[index];
+	while (index > 0) {
+	  int up = (index - 1) / 2;
+	  if (distance[heap[up]] <= distance[node]) {
+		break;
+	  }
+	  heap[index] = heap[up];
+	  heapPosition[heap[index]] = index;
+	  index = up;
+	}
+	heap[index] = node;
+	heapPosition[node] = index;
+  }
+  
+  private void siftDown(int index) {
+	int node = heap[index];
+	while (true) {
+	  int child = 2 * index + 1;
+	  if (child >= heapSize) {
+		break;
+	  }
+	  if (child + 1 < heapSize && distance[heap[child + 1]] < distance[heap[child]]) {
+		child++;
+	  }
+	  if (distance[node] <= distance[heap[child]]) {
+		break;
+	  }
+	  heap[index] = heap[child];
+	  heapPosition[heap[index]] = index;
+	  index = child;
+	}
+	heap[index] = node;
+	heapPosition[node] = index;
+  }
+  
+}
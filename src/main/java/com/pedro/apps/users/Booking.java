@@ -21,6 +21,9 @@ public class Booking {
   private Delegation pickUpDelegation;
   private Delegation deliverDelegation;
   
+  public Booking() {
+  }
+  
   public Booking(String userId, String operation, Car car, String status, String startDate, String endDate, double totalToPayment, String statusPayment, String statusBooking, Delegation pickUpDelegation, Delegation deliverDelegation) {
 	this.userId = userId;
 	this.operation = operation;
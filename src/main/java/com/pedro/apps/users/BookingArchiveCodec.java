@@ -0,0 +1,142 @@
+package com.pedro.apps.users;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pedro.apps.delegations.Car;
+import com.pedro.apps.delegations.Delegation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Columnar, gzip compressed file format for archived bookings of one user and month.
+// Every column is written separately; string columns are dictionary encoded (distinct values once,
+// then one index per row), which makes repeated statuses, dates and delegations almost free.
+// Nested car and delegations are stored as JSON strings.
+class BookingArchiveCodec {
+  
+  private static final int MAGIC = 0x57524342; // "WRCB"
+  private static final int VERSION = 1;
+  
+  private final ObjectMapper objectMapper;
+  
+  BookingArchiveCodec(ObjectMapper objectMapper) {
+	this.objectMapper = objectMapper;
+  }
+  
+  byte[] encode(List<Booking> bookings) {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+	  out.writeInt(MAGIC);
+	  out.writeInt(VERSION);
+	  out.writeInt(bookings.size());
+	  writeStrings(out, bookings, Booking::getUserId);
+	  writeStrings(out, bookings, Booking::getOperation);
+	  writeStrings(out, bookings, Booking::getStatus);
+	  writeStrings(out, bookings, Booking::getStartDate);
+	  writeStrings(out, bookings, Booking::getEndDate);
+	  writeStrings(out, bookings, Booking::getStatusPayment);
+	  writeStrings(out, bookings, Booking::getStatusBooking);
+	  writeStrings(out, bookings, b -> toJson(b.getCar()));
+	  writeStrings(out, bookings, b -> toJson(b.getPickUpDelegation()));
+	  writeStrings(out, bookings, b -> toJson(b.getDeliverDelegation()));
+	  for (Booking booking : bookings) {
+		out.writeDouble(booking.getTotalToPayment());
+	  }
+	} catch (IOException e) {
+	  throw new UncheckedIOException(e);
+	}
+	return bytes.toByteArray();
+  }
+  
+  List<Booking> decode(byte[] data) {
+	try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(data)))) {
+	  if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+		throw new IOException("Not a booking archive file");
+	  }
+	  int rows = in.readInt();
+	  String[] userIds = readStrings(in, rows);
+	  String[] operations = readStrings(in, rows);
+	  String[] statuses = readStrings(in, rows);
+	  String[] startDates = readStrings(in, rows);
+	  String[] endDates = readStrings(in, rows);
+	  String[] paymentStatuses = readStrings(in, rows);
+	  String[] bookingStatuses = readStrings(in, rows);
+	  String[] cars = readStrings(in, rows);
+	  String[] pickUps = readStrings(in, rows);
+	  String[] delivers = readStrings(in, rows);
+	  List<Booking> bookings = new ArrayList<>(rows);
+	  for (int i = 0; i < rows; i++) {
+		bookings.add(new Booking(userIds[i], operations[i], fromJson(cars[i], Car.class), statuses[i], startDates[i],
+			endDates[i], in.readDouble(), paymentStatuses[i], bookingStatuses[i],
+			fromJson(pickUps[i], Delegation.class), fromJson(delivers[i], Delegation.class)));
+	  }
+	  return bookings;
+	} catch (IOException e) {
+	  throw new UncheckedIOException(e);
+	}
+  }
+  
+  private static void writeStrings(DataOutputStream out, List<Booking> bookings, Function<Booking, String> column) throws IOException {
+	Map<String, Integer> dictionary = new HashMap<>();
+	List<String> values = new ArrayList<>();
+	int[] codes = new int[bookings.size()];
+	for (int i = 0; i < codes.length; i++) {
+	  String value = column.apply(bookings.get(i));
+	  codes[i] = value == null ? -1 : dictionary.computeIfAbsent(value, v -> {
+		values.add(v);
+		return values.size() - 1;
+	  });
+	}
+	out.writeInt(values.size());
+	for (String value : values) {
+	  byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+	  out.writeInt(utf8.length);
+	  out.write(utf8);
+	}
+	for (int code : codes) {
+	  out.writeInt(code);
+	}
+  }
+  
+  private static String[] readStrings(DataInputStream in, int rows) throws IOException {
+	String[] dictionary = new String[in.readInt()];
+	for (int i = 0; i < dictionary.length; i++) {
+	  byte[] utf8 = new byte[in.readInt()];
+	  in.readFully(utf8);
+	  dictionary[i] = new String(utf8, StandardCharsets.UTF_8);
+	}
+	String[] column = new String[rows];
+	for (int i = 0; i < rows; i++) {
+	  int code = in.readInt();
+	  column[i] = code < 0 ? null : dictionary[code];
+	}
+	return column;
+  }
+  
+  private String toJson(Object value) {
+	try {
+	  return value == null ? null : objectMapper.writeValueAsString(value);
+	} catch (IOException e) {
+	  throw new UncheckedIOException(e);
+	}
+  }
+  
+  private <T> T fromJson(String json, Class<T> clazz) {
+	try {
+	  return json == null ? null : objectMapper.readValue(json, clazz);
+	} catch (IOException e) {
+	  throw new UncheckedIOException(e);
+	}
+  }
+}
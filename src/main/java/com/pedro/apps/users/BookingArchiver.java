@@ -0,0 +1,180 @@
+package com.pedro.apps.users;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pedro.apps.archive.ArchiveStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Moves bookings that ended before the retention cutoff out of the Users table into one archive
+// file per user and month (archive/bookings/<userId>/<yyyy-MM>.wrcb.gz), and reads them back when
+// a caller asks for the booking history. A file is written before its bookings are deleted, and
+// bookings are merged by operation, so a run interrupted half way can simply be repeated.
+// Only bookings in a final status (archive.booking-statuses) are archived, one scan page at a time, and a
+// booking is only deleted if it was not modified after it was read.
+// Every node schedules the job, but a run only goes ahead on the node holding the "booking-archiver" lease
+// in the Users table, renewed before each page: two runs merging into the same archive file would lose
+// the bookings one of them wrote.
+@Component
+public class BookingArchiver {
+  
+  private static final Logger log = LoggerFactory.getLogger(BookingArchiver.class);
+  
+  private static final String PREFIX = "archive/bookings/";
+  private static final String SUFFIX = ".wrcb.gz";
+  private static final String LEASE = "booking-archiver";
+  
+  private final UserRepository userRepository;
+  private final ArchiveStore archiveStore;
+  private final BookingArchiveCodec codec;
+  private final int retentionDays;
+  private final List<String> statuses;
+  private final long intervalHours;
+  private final long leaseMillis;
+  private final String owner = UUID.randomUUID().toString();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+	Thread thread = new Thread(r, "booking-archiver");
+	thread.setDaemon(true);
+	return thread;
+  });
+  
+  @Autowired
+  public BookingArchiver(
+	  UserRepository userRepository,
+	  ArchiveStore archiveStore,
+	  ObjectMapper objectMapper,
+	  @Value("${archive.retention-days:365}") int retentionDays,
+	  @Value("${archive.booking-statuses:completed,cancelled}") String statuses,
+	  @Value("${archive.interval-hours:0}") long intervalHours,
+	  @Value("${archive.lease-minutes:30}") long leaseMinutes) {
+	this.userRepository = userRepository;
+	this.archiveStore = archiveStore;
+	this.codec = new BookingArchiveCodec(objectMapper);
+	this.retentionDays = retentionDays;
+	this.statuses = Arrays.stream(statuses.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+	this.intervalHours = intervalHours;
+	this.leaseMillis = TimeUnit.MINUTES.toMillis(leaseMinutes);
+  }
+  
+  @PostConstruct
+  public void start() {
+	if (intervalHours > 0) {
+	  scheduler.scheduleWithFixedDelay(this::runSafely, intervalHours, intervalHours, TimeUnit.HOURS);
+	}
+  }
+  
+  @PreDestroy
+  public void stop() {
+	scheduler.shutdownNow();
+  }
+  
+  // Returns the number of bookings moved to the archive, 0 when another node is running the job
+  public int archiveOldBookings() {
+	if (!holdLease()) {
+	  log.info("Booking archival skipped, another node holds the lease");
+	  return 0;
+	}
+	try {
+	  String cutoff = LocalDate.now().minusDays(retentionDays).toString();
+	  int[] archived = {0};
+	  userRepository.scanBookingsEndedBefore(cutoff, statuses, page -> {
+		if (!holdLease()) {
+		  throw new IllegalStateException("Lost the booking archiver lease after archiving " + archived[0] + " bookings");
+		}
+		archived[0] += archivePage(page);
+	  });
+	  return archived[0];
+	} finally {
+	  userRepository.releaseLease(LEASE, owner);
+	}
+  }
+  
+  private boolean holdLease() {
+	return userRepository.acquireLease(LEASE, owner, System.currentTimeMillis() + leaseMillis);
+  }
+  
+  private int archivePage(List<Booking> page) {
+	// userId -> month -> bookings
+	Map<String, Map<String, List<Booking>>> byFile = new LinkedHashMap<>();
+	for (Booking booking : page) {
+	  if (!isValidUserId(booking.getUserId())) {
+		log.warn("Not archiving booking {}: its userId cannot be used as an archive key", booking.getOperation());
+		continue;
+	  }
+	  byFile.computeIfAbsent(booking.getUserId(), u -> new TreeMap<>())
+		  .computeIfAbsent(month(booking), m -> new ArrayList<>())
+		  .add(booking);
+	}
+	int archived = 0;
+	for (Map.Entry<String, Map<String, List<Booking>>> user : byFile.entrySet()) {
+	  for (Map.Entry<String, List<Booking>> month : user.getValue().entrySet()) {
+		String key = PREFIX + user.getKey() + "/" + month.getKey() + SUFFIX;
+		Map<String, Booking> merged = new LinkedHashMap<>();
+		byte[] existing = archiveStore.get(key);
+		if (existing != null) {
+		  codec.decode(existing).forEach(b -> merged.put(b.getOperation(), b));
+		}
+		month.getValue().forEach(b -> merged.put(b.getOperation(), b));
+		archiveStore.put(key, codec.encode(new ArrayList<>(merged.values())));
+		for (Booking booking : month.getValue()) {
+		  // A booking modified since it was read stays in the table; the next run archives the new version
+		  if (userRepository.deleteBooking(booking)) {
+			archived++;
+		  }
+		}
+	  }
+	}
+	return archived;
+  }
+  
+  // Archived bookings of a user, oldest month first. Only read when the history is asked for.
+  public List<Booking> findArchivedBookings(String userId) {
+	if (!isValidUserId(userId)) {
+	  return List.of();
+	}
+	List<Booking> bookings = new ArrayList<>();
+	for (String key : archiveStore.list(PREFIX + userId + "/")) {
+	  byte[] data = archiveStore.get(key);
+	  if (data != null) {
+		bookings.addAll(codec.decode(data));
+	  }
+	}
+	return bookings;
+  }
+  
+  // The userId is a directory of the archive key
+  private static boolean isValidUserId(String userId) {
+	return userId != null && !userId.isEmpty() && !userId.equals(".") && !userId.equals("..")
+		&& userId.indexOf('/') < 0 && userId.indexOf('\\') < 0;
+  }
+  
+  private static String month(Booking booking) {
+	String endDate = booking.getEndDate();
+	return endDate != null && endDate.length() >= 7 ? endDate.substring(0, 7) : "unknown";
+  }
+  
+  private void runSafely() {
+	try {
+	  int archived = archiveOldBookings();
+	  log.info("Archived {} bookings", archived);
+	} catch (RuntimeException e) {
+	  log.warn("Booking archival failed", e);
+	}
+  }
+}
@@ -0,0 +1,139 @@
+package com.pedro.apps.users;
+
+import com.pedro.apps.delegations.DelegationStats;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Turns a booking write into ADD updates on the DelegationStats items of the Delegations table, all on
+// the counter shard picked for this write. A re-saved booking subtracts the stored version and adds the
+// new one; both deltas are merged per item because a transaction may touch each item only once.
+// Cancelled bookings count for nothing.
+// Day counters are grouped in one item per month, which also refreshes the TTL of that item.
+class BookingStatsUpdates {
+  
+  private static final String DELEGATIONS_TABLE = "Delegations";
+  
+  // delegationId -> operation -> attribute -> delta
+  private final Map<String, Map<String, Map<String, Double>>> deltas = new LinkedHashMap<>();
+  
+  private final int shard;
+  
+  private BookingStatsUpdates(int shard) {
+	this.shard = shard;
+  }
+  
+  static List<TransactWriteItem> forChange(Booking previous, Booking current, int shard) {
+	BookingStatsUpdates updates = new BookingStatsUpdates(shard);
+	updates.add(previous, -1);
+	updates.add(current, 1);
+	return updates.toWrites();
+  }
+  
+  private void add(Booking booking, int sign) {
+	if (booking == null || "cancelled".equalsIgnoreCase(booking.getStatusBooking())) {
+	  return;
+	}
+	String pickUp = booking.getPickUpDelegation() != null ? booking.getPickUpDelegation().getDelegationId()
+		: booking.getCar() != null ? booking.getCar().getDelegationId() : null;
+	if (pickUp == null) {
+	  return;
+	}
+	String deliver = booking.getDeliverDelegation() != null ? booking.getDeliverDelegation().getDelegationId() : pickUp;
+	boolean oneWay = !pickUp.equals(deliver);
+	LocalDate start = parse(booking.getStartDate());
+	LocalDate end = parse(booking.getEndDate());
+	boolean dated = start != null && end != null && !end.isBefore(start);
+	long days = dated ? end.toEpochDay() - start.toEpochDay() + 1 : 0;
+	
+	add(pickUp, DelegationStats.TOTALS, "bookingCount", sign);
+	add(pickUp, DelegationStats.TOTALS, "rentedDays", sign * days);
+	add(pickUp, DelegationStats.TOTALS, "revenue", sign * booking.getTotalToPayment());
+	if (oneWay) {
+	  add(pickUp, DelegationStats.TOTALS, "oneWayOut", sign);
+	  add(deliver, DelegationStats.TOTALS, "oneWayIn", sign);
+	}
+	if (dated) {
+	  // Revenue is booked on the pickup day
+	  addDay(pickUp, start, "pickUps", sign);
+	  addDay(pickUp, start, "revenue", sign * booking.getTotalToPayment());
+	  addDay(deliver, end, "returns", sign);
+	  for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+		addDay(pickUp, day, "carsRented", sign);
+	  }
+	}
+  }
+  
+  private void addDay(String delegationId, LocalDate day, String counter, double delta) {
+	add(delegationId, DelegationStats.MONTH_PREFIX + YearMonth.from(day), String.format("%s#%02d", counter, day.getDayOfMonth()), delta);
+  }
+  
+  private void add(String delegationId, String operation, String attribute, double delta) {
+	deltas.computeIfAbsent(delegationId, d -> new LinkedHashMap<>())
+		.computeIfAbsent(operation, o -> new LinkedHashMap<>())
+		.merge(attribute, delta, Double::sum);
+  }
+  
+  private List<TransactWriteItem> toWrites() {
+	List<TransactWriteItem> writes = new ArrayList<>();
+	deltas.forEach((delegationId, items) -> items.forEach((operation, attributes) -> {
+	  StringBuilder expression = new StringBuilder();
+	  Map<String, String> names = new HashMap<>();
+	  Map<String, AttributeValue> values = new HashMap<>();
+	  attributes.forEach((attribute, delta) -> {
+		if (delta == 0) {
+		  return;
+		}
+		int i = names.size();
+		expression.append(i == 0 ? "ADD " : ", ").append("#a").append(i).append(" :v").append(i);
+		names.put("#a" + i, attribute);
+		values.put(":v" + i, AttributeValue.builder().n(number(delta)).build());
+	  });
+	  if (names.isEmpty()) {
+		return; // the booking was re-saved without any change that affects the counters
+	  }
+	  if (operation.startsWith(DelegationStats.MONTH_PREFIX)) {
+		expression.append(" SET #expiresAt = :expiresAt");
+		names.put("#expiresAt", DelegationStats.EXPIRES_AT);
+		values.put(":expiresAt", AttributeValue.builder().n(Long.toString(expiresAt(operation))).build());
+	  }
+	  writes.add(TransactWriteItem.builder().update(u -> u
+		  .tableName(DELEGATIONS_TABLE)
+		  .key(Map.of(
+			  "delegationId", AttributeValue.builder().s(DelegationStats.partitionKey(delegationId, shard)).build(),
+			  "operation", AttributeValue.builder().s(operation).build()))
+		  .updateExpression(expression.toString())
+		  .expressionAttributeNames(names)
+		  .expressionAttributeValues(values)).build());
+	}));
+	return writes;
+  }
+  
+  private static long expiresAt(String monthOperation) {
+	YearMonth month = YearMonth.parse(monthOperation.substring(DelegationStats.MONTH_PREFIX.length()));
+	return month.plusMonths(1).atDay(1).plusDays(DelegationStats.MONTH_RETENTION_DAYS)
+		.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+  }
+  
+  private static String number(double value) {
+	return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+  }
+  
+  private static LocalDate parse(String date) {
+	try {
+	  return date == null ? null : LocalDate.parse(date);
+	} catch (DateTimeParseException e) {
+	  return null;
+	}
+  }
+}
@@ -14,6 +14,9 @@ public class User {
   private String fullName;
   private String phone;
   
+  public User() {
+  }
+  
   public User(String userId, String operation, String username, String email, String fullName, String phone) {
 	this.userId = userId;
 	this.operation = operation;
@@ -1,19 +1,25 @@
 package com.pedro.apps.users;
 
+import com.pedro.apps.config.ReadOptions;
 import com.vaadin.flow.server.auth.AnonymousAllowed;
 import com.vaadin.hilla.Endpoint;
 import org.springframework.beans.factory.annotation.Autowired;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Endpoint
 @AnonymousAllowed
 public class UserEndpoint {
   
   private final UserRepository userRepository;
+  private final BookingArchiver bookingArchiver;
   
   @Autowired
-  public UserEndpoint(UserRepository userRepository) {
+  public UserEndpoint(UserRepository userRepository, BookingArchiver bookingArchiver) {
 	this.userRepository = userRepository;
+	this.bookingArchiver = bookingArchiver;
   }
   
   //Save User
@@ -25,11 +31,21 @@ public class UserEndpoint {
   //Save Booking
   public void saveBooking(Booking booking) {
 	System.out.println("UserEndpoint.saveBooking: " + booking);
-	userRepository.save(booking);
+	userRepository.saveBooking(booking);
   }
   
   //Get all bookings for User
   public List<Booking> getBookingsByUser(String userId) {
-	return userRepository.findBookingsByUserId(userId);
+	// Strongly consistent: the user expects to see the booking they just made
+	return userRepository.findBookingsByUserId(userId, ReadOptions.strong());
+  }
+  
+  //Get all bookings for User including the archived history
+  public List<Booking> getBookingsWithHistory(String userId) {
+	// A booking can be in both while it is being archived, the table holds the current version
+	Map<String, Booking> bookings = new LinkedHashMap<>();
+	bookingArchiver.findArchivedBookings(userId).forEach(booking -> bookings.put(booking.getOperation(), booking));
+	userRepository.findBookingsByUserId(userId, ReadOptions.strong()).forEach(booking -> bookings.put(booking.getOperation(), booking));
+	return new ArrayList<>(bookings.values());
   }
 }
\ No newline at end of file
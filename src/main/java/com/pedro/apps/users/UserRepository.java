@@ -1,10 +1,40 @@
 package com.pedro.apps.users;
 
+import com.pedro.apps.config.ReadOptions;
+
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface UserRepository {
   <T> void save(T item);
   
+  // Saves a booking and updates the delegation stats counters in the same transaction
+  void saveBooking(Booking booking);
+  
   List<Booking> findBookingsByUserId(String userId);
   
+  // Same query with the consistency and hedging chosen by the caller, the method above reads eventually consistent
+  List<Booking> findBookingsByUserId(String userId, ReadOptions options);
+  
+  // Bookings with one of the given statuses that ended before the given date (yyyy-MM-dd) across all users,
+  // handed to the consumer one scan page at a time. For the archival job.
+  void scanBookingsEndedBefore(String date, List<String> statuses, Consumer<List<Booking>> page);
+  
+  // Bookings overlapping the given dates (yyyy-MM-dd, inclusive) across all users, handed to the consumer one
+  // scan page at a time. For the rebalancing planner.
+  void scanBookingsOverlapping(String fromDate, String toDate, Consumer<List<Booking>> page);
+  
+  // Deletes the booking only if it is still stored exactly as given, returns false when it changed since
+  boolean deleteBooking(Booking expected);
+  
+  // Takes the named lease for the owner until the given time (epoch millis), or extends it when the owner
+  // already holds it. Returns false while another owner holds it unexpired. For jobs that must run on one node at a time.
+  boolean acquireLease(String name, String owner, long untilMillis);
+  
+  // Gives the lease up if the owner still holds it
+  void releaseLease(String name, String owner);
+  
+  // Writes up to 25 items of one class in a single BatchWriteItem call and returns the items DynamoDB left unprocessed
+  <T> List<T> saveBatch(Class<T> clazz, List<T> items);
+  
 }
\ No newline at end of file
@@ -1,26 +1,57 @@
 package com.pedro.apps.users;
 
+import com.pedro.apps.config.HedgedReads;
+import com.pedro.apps.config.ReadOptions;
+import com.pedro.apps.delegations.DelegationStats;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteResult;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.WriteBatch;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 @Repository
 public class UserRepositoryImpl implements UserRepository {
   
+  private static final int MAX_TRANSACTION_ITEMS = 100;
+  private static final int MAX_BOOKING_ATTEMPTS = 5;
+  private static final long CONFLICT_BACKOFF_MILLIS = 10;
+  // Booking attributes the delegation stats are derived from
+  private static final List<String> STATS_ATTRIBUTES =
+	  List.of("startDate", "endDate", "totalToPayment", "statusBooking", "pickUpDelegation", "deliverDelegation", "car");
+  private static final String LEASE_PREFIX = "lease#";
+  
   private final DynamoDbEnhancedClient enhancedClient;
+  private final DynamoDbClient dynamoDbClient;
+  private final HedgedReads hedgedReads;
   private final String tableName = "Users";
   
   @Autowired
-  public UserRepositoryImpl(DynamoDbEnhancedClient enhancedClient) {
+  public UserRepositoryImpl(DynamoDbEnhancedClient enhancedClient, DynamoDbClient dynamoDbClient, HedgedReads hedgedReads) {
 	this.enhancedClient = enhancedClient;
+	this.dynamoDbClient = dynamoDbClient;
+	this.hedgedReads = hedgedReads;
   }
   
   @Override
@@ -32,36 +63,240 @@ public class UserRepositoryImpl implements UserRepository {
 	table.putItem(item);
   }
   
+  // The booking and the stats deltas it causes are written in one transaction, so the counters never miss
+  // a booking or count it twice. The deltas go to a counter shard picked at random on every attempt, so
+  // concurrent bookings of a delegation rarely touch the same stats items; the put only succeeds if the
+  // stored booking still is the version the deltas were computed from. Each attempt carries its own client
+  // request token: an SDK retry of a transaction that already went through is then a no-op.
+  @Override
+  public void saveBooking(Booking booking) {
+	TableSchema<Booking> schema = TableSchema.fromBean(Booking.class);
+	Booking stored = null;
+	for (int attempt = 0; ; attempt++) {
+	  if (attempt > 0) {
+		// The booking already existed, changed under us or met another transaction: count the difference to the stored version
+		stored = enhancedClient.table(tableName, schema).getItem(r -> r
+			.key(k -> k.partitionValue(booking.getUserId()).sortValue(booking.getOperation()))
+			.consistentRead(true));
+	  }
+	  int shard = ThreadLocalRandom.current().nextInt(DelegationStats.COUNTER_SHARDS);
+	  List<TransactWriteItem> writes = new ArrayList<>();
+	  writes.add(bookingPut(schema, booking, stored));
+	  writes.addAll(BookingStatsUpdates.forChange(stored, booking, shard));
+	  if (writes.size() > MAX_TRANSACTION_ITEMS) {
+		// One stats item per delegation and month: only bookings spanning years get here
+		throw new IllegalArgumentException("Booking " + booking.getUserId() + "/" + booking.getOperation()
+			+ " spans too many months to update the delegation stats in one transaction");
+	  }
+	  String token = UUID.randomUUID().toString();
+	  try {
+		dynamoDbClient.transactWriteItems(r -> r.transactItems(writes).clientRequestToken(token));
+		return;
+	  } catch (TransactionCanceledException e) {
+		if (!isRetryable(e) || attempt + 1 == MAX_BOOKING_ATTEMPTS) {
+		  throw e;
+		}
+	  }
+	  try {
+		// Full jitter so the bookings that conflicted do not come back in lockstep
+		Thread.sleep(ThreadLocalRandom.current().nextLong(CONFLICT_BACKOFF_MILLIS << attempt));
+	  } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new IllegalStateException("Interrupted while saving booking " + booking.getUserId() + "/" + booking.getOperation(), e);
+	  }
+	}
+  }
+  
+  // The stored booking changed (the put's condition failed) or another transaction held one of the items
+  private static boolean isRetryable(TransactionCanceledException e) {
+	return e.hasCancellationReasons() && e.cancellationReasons().stream()
+		.anyMatch(reason -> "ConditionalCheckFailed".equals(reason.code()) || "TransactionConflict".equals(reason.code()));
+  }
+  
+  // Put that only succeeds if the stored booking still is the version the stats delta was computed from
+  private TransactWriteItem bookingPut(TableSchema<Booking> schema, Booking booking, Booking stored) {
+	Map<String, String> names = new HashMap<>();
+	Map<String, AttributeValue> values = new HashMap<>();
+	StringBuilder condition = new StringBuilder();
+	if (stored == null) {
+	  names.put("#op", "operation");
+	  condition.append("attribute_not_exists(#op)");
+	} else {
+	  Map<String, AttributeValue> storedItem = schema.itemToMap(stored, true);
+	  for (int i = 0; i < STATS_ATTRIBUTES.size(); i++) {
+		String attribute = STATS_ATTRIBUTES.get(i);
+		names.put("#a" + i, attribute);
+		condition.append(i == 0 ? "" : " AND ");
+		if (storedItem.containsKey(attribute)) {
+		  values.put(":v" + i, storedItem.get(attribute));
+		  condition.append("#a").append(i).append(" = :v").append(i);
+		} else {
+		  condition.append("attribute_not_exists(#a").append(i).append(")");
+		}
+	  }
+	}
+	return TransactWriteItem.builder().put(p -> p
+		.tableName(tableName)
+		.item(schema.itemToMap(booking, true))
+		.conditionExpression(condition.toString())
+		.expressionAttributeNames(names)
+		.expressionAttributeValues(values.isEmpty() ? null : values)).build();
+  }
+  
+  @Override
+  public void scanBookingsEndedBefore(String date, List<String> statuses, Consumer<List<Booking>> page) {
+	if (statuses.isEmpty()) {
+	  return;
+	}
+	DynamoDbTable<Booking> table = enhancedClient.table(tableName, TableSchema.fromBean(Booking.class));
+	Map<String, AttributeValue> expressionValues = new HashMap<>();
+	expressionValues.put(":prefix", AttributeValue.builder().s("booking").build());
+	expressionValues.put(":date", AttributeValue.builder().s(date).build());
+	List<String> placeholders = new ArrayList<>();
+	for (String status : statuses) {
+	  placeholders.add(":s" + placeholders.size());
+	  expressionValues.put(placeholders.get(placeholders.size() - 1), AttributeValue.builder().s(status).build());
+	}
+	Expression filterExpression = Expression.builder()
+		.expression("begins_with(operation, :prefix) AND endDate < :date AND statusBooking IN (" + String.join(", ", placeholders) + ")")
+		.expressionValues(expressionValues)
+		.build();
+	for (Page<Booking> result : table.scan(ScanEnhancedRequest.builder().filterExpression(filterExpression).build())) {
+	  if (!result.items().isEmpty()) {
+		page.accept(result.items());
+	  }
+	}
+  }
+  
+  @Override
+  public void scanBookingsOverlapping(String fromDate, String toDate, Consumer<List<Booking>> page) {
+	DynamoDbTable<Booking> table = enhancedClient.table(tableName, TableSchema.fromBean(Booking.class));
+	Map<String, AttributeValue> expressionValues = new HashMap<>();
+	expressionValues.put(":prefix", AttributeValue.builder().s("booking").build());
+	expressionValues.put(":from", AttributeValue.builder().s(fromDate).build());
+	expressionValues.put(":to", AttributeValue.builder().s(toDate).build());
+	Expression filterExpression = Expression.builder()
+		.expression("begins_with(operation, :prefix) AND endDate >= :from AND startDate <= :to")
+		.expressionValues(expressionValues)
+		.build();
+	for (Page<Booking> result : table.scan(ScanEnhancedRequest.builder().filterExpression(filterExpression).build())) {
+	  if (!result.items().isEmpty()) {
+		page.accept(result.items());
+	  }
+	}
+  }
+  
+  @Override
+  public boolean deleteBooking(Booking expected) {
+	Map<String, AttributeValue> item = TableSchema.fromBean(Booking.class).itemToMap(expected, true);
+	Map<String, String> names = new HashMap<>();
+	Map<String, AttributeValue> values = new HashMap<>();
+	StringBuilder condition = new StringBuilder();
+	item.forEach((attribute, value) -> {
+	  if (attribute.equals("userId") || attribute.equals("operation")) {
+		return;
+	  }
+	  int i = names.size();
+	  condition.append(i == 0 ? "" : " AND ").append("#a").append(i).append(" = :v").append(i);
+	  names.put("#a" + i, attribute);
+	  values.put(":v" + i, value);
+	});
+	try {
+	  dynamoDbClient.deleteItem(r -> r
+		  .tableName(tableName)
+		  .key(Map.of("userId", item.get("userId"), "operation", item.get("operation")))
+		  .conditionExpression(condition.isEmpty() ? null : condition.toString())
+		  .expressionAttributeNames(names.isEmpty() ? null : names)
+		  .expressionAttributeValues(values.isEmpty() ? null : values));
+	  return true;
+	} catch (ConditionalCheckFailedException e) {
+	  return false;
+	}
+  }
+  
+  // The lease is an item of its own partition ("lease#<name>"), out of the way of the booking scans
+  @Override
+  public boolean acquireLease(String name, String owner, long untilMillis) {
+	try {
+	  dynamoDbClient.putItem(r -> r
+		  .tableName(tableName)
+		  .item(Map.of(
+			  "userId", AttributeValue.builder().s(LEASE_PREFIX + name).build(),
+			  "operation", AttributeValue.builder().s("lease").build(),
+			  "leaseOwner", AttributeValue.builder().s(owner).build(),
+			  "leaseUntil", AttributeValue.builder().n(Long.toString(untilMillis)).build()))
+		  .conditionExpression("attribute_not_exists(userId) OR leaseUntil < :now OR leaseOwner = :owner")
+		  .expressionAttributeValues(Map.of(
+			  ":now", AttributeValue.builder().n(Long.toString(System.currentTimeMillis())).build(),
+			  ":owner", AttributeValue.builder().s(owner).build())));
+	  return true;
+	} catch (ConditionalCheckFailedException e) {
+	  return false;
+	}
+  }
+  
+  @Override
+  public void releaseLease(String name, String owner) {
+	try {
+	  dynamoDbClient.deleteItem(r -> r
+		  .tableName(tableName)
+		  .key(Map.of(
+			  "userId", AttributeValue.builder().s(LEASE_PREFIX + name).build(),
+			  "operation", AttributeValue.builder().s("lease").build()))
+		  .conditionExpression("leaseOwner = :owner")
+		  .expressionAttributeValues(Map.of(":owner", AttributeValue.builder().s(owner).build())));
+	} catch (ConditionalCheckFailedException e) {
+	  // It expired and another owner took it
+	}
+  }
+  
+  @Override
+  public <T> List<T> saveBatch(Class<T> clazz, List<T> items) {
+	DynamoDbTable<T> table = enhancedClient.table(tableName, TableSchema.fromBean(clazz));
+	WriteBatch.Builder<T> batch = WriteBatch.builder(clazz).mappedTableResource(table);
+	items.forEach(batch::addPutItem);
+	BatchWriteResult result = enhancedClient.batchWriteItem(
+		BatchWriteItemEnhancedRequest.builder().addWriteBatch(batch.build()).build());
+	return result.unprocessedPutItemsForTable(table);
+  }
+  
   @Override
   public List<Booking> findBookingsByUserId(String userId) {
+	return findBookingsByUserId(userId, ReadOptions.eventual());
+  }
+  
+  @Override
+  public List<Booking> findBookingsByUserId(String userId, ReadOptions options) {
 	// This client creates a reference to our DynamoDB table
 	// telling the SDK to map table items to our Booking Java class
 	// it uses the value of enhancedClient
 	DynamoDbTable<Booking> table = enhancedClient.table(tableName, TableSchema.fromBean(Booking.class));
 	
 	// Assuming ''Booking'' has a partition key named "userId"
-	// empty list where we will collect all the bookings found for the user.
-	List<Booking> bookings = new ArrayList<>();
+	return hedgedReads.read(tableName + ".query", options, () -> {
+	  // empty list where we will collect all the bookings found for the user.
+	  List<Booking> bookings = new ArrayList<>();
 	
-	// Query for items where the partition key equals userId and the sort key begins with "booking"
-	// QueryConditional.keyEqualTo(...): Tells DynamoDB to return all items
-	// where the partition key (here, userId) equals the value you provided.
-	Iterator<Booking> results = table.query(
-		r -> r.queryConditional(
-			QueryConditional.sortBeginsWith(
-				Key.builder()
-					.partitionValue(userId)
-					.sortValue("booking")
-					.build()
-			)
-		)
-	).items().iterator();
-	// .items().iterator(): Gets an iterator over the query results.
-	// Each item is mapped to a Booking object.
+	  // Query for items where the partition key equals userId and the sort key begins with "booking"
+	  // QueryConditional.keyEqualTo(...): Tells DynamoDB to return all items
+	  // where the partition key (here, userId) equals the value you provided.
+	  Iterator<Booking> results = table.query(
+		  r -> r.queryConditional(
+			  QueryConditional.sortBeginsWith(
+				  Key.builder()
+					  .partitionValue(userId)
+					  .sortValue("booking")
+					  .build()
+			  )
+		  ).consistentRead(options.isConsistentRead())
+	  ).items().iterator();
+	  // .items().iterator(): Gets an iterator over the query results.
+	  // Each item is mapped to a Booking object.
 	
-	// Loop over the query results and add them to the 'bookings' list
-	// with the method reference: bookings::add
-	results.forEachRemaining(bookings::add);
-	return bookings;
+	  // Loop over the query results and add them to the 'bookings' list
+	  // with the method reference: bookings::add
+	  results.forEachRemaining(bookings::add);
+	  return bookings;
+	});
   }
 }
\ No newline at end of file
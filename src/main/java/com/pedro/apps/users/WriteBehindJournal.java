@@ -0,0 +1,245 @@
+package com.pedro.apps.users;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+// Append-only journal backed by a memory-mapped file used as a ring buffer.
+// The 32 byte header holds a magic number, the capacity the file was created with and two offsets:
+// where the next entry is written and up to where entries have already been drained to DynamoDB.
+// Everything between the two is replayed after a restart. Offsets only grow; the area after the header
+// is reused from its start once the write offset passes the end of the file, so space is freed as soon
+// as the entries in it are drained and an entry may wrap around the end.
+// Each entry is [int payload length][byte kind][int CRC32C of kind and payload][payload]. With sync
+// enabled the entry is forced to disk before the header that points past it, so an acknowledged entry
+// is always covered by the header; the checksum catches entries damaged on disk.
+public class WriteBehindJournal implements AutoCloseable {
+  
+  private static final int MAGIC = 0x57424A33; // "WBJ3"
+  // Journals without wrap-around have the same layout as long as their offsets stay within the file
+  private static final int MAGIC_NO_WRAP = 0x57424A32; // "WBJ2"
+  private static final int HEADER_SIZE = 32;
+  private static final int ENTRY_OVERHEAD = 9;
+  
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private final boolean syncOnAppend;
+  private long writeOffset;
+  private long drainedOffset;
+  
+  // Fails when the file is not a journal, or when it still holds undrained entries but was created with
+  // another capacity: drain it with the old capacity first rather than lose acknowledged writes
+  public WriteBehindJournal(Path file, int capacityBytes, boolean syncOnAppend) throws IOException {
+	if (capacityBytes <= HEADER_SIZE) {
+	  throw new IllegalArgumentException("Journal capacity must be larger than " + HEADER_SIZE + " bytes");
+	}
+	if (file.getParent() != null) {
+	  Files.createDirectories(file.getParent());
+	}
+	this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	this.syncOnAppend = syncOnAppend;
+	try {
+	  ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+	  channel.read(header, 0);
+	  header.flip();
+	  boolean fresh = isZero(header);
+	  if (!fresh) {
+		checkHeader(file, header, capacityBytes);
+	  }
+	  boolean empty = fresh || header.getLong(16) == header.getLong(24);
+	  if (empty && channel.size() > capacityBytes) {
+		channel.truncate(capacityBytes); // shrunk capacity, nothing past it is read again
+	  }
+	  this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacityBytes);
+	  if (empty) {
+		writeOffset = HEADER_SIZE;
+		drainedOffset = HEADER_SIZE;
+		writeHeader();
+		buffer.force(0, HEADER_SIZE);
+	  } else {
+		writeOffset = header.getLong(16);
+		drainedOffset = header.getLong(24);
+	  }
+	} catch (IOException | RuntimeException e) {
+	  channel.close();
+	  throw e;
+	}
+  }
+  
+  private static void checkHeader(Path file, ByteBuffer header, int capacityBytes) throws IOException {
+	if (header.remaining() < HEADER_SIZE) {
+	  throw new IOException(file + " is not a write-behind journal; move it away to start with an empty journal");
+	}
+	int magic = header.getInt(0);
+	long capacity = header.getLong(8);
+	long write = header.getLong(16);
+	long drained = header.getLong(24);
+	if ((magic != MAGIC && magic != MAGIC_NO_WRAP) || capacity <= HEADER_SIZE || drained < HEADER_SIZE || drained > write
+		|| write - drained > capacity - HEADER_SIZE || (magic == MAGIC_NO_WRAP && write > capacity)) {
+	  throw new IOException(file + " is not a write-behind journal or its header is corrupted; "
+		  + "move it away to start with an empty journal");
+	}
+	if (capacity != capacityBytes && drained < write) {
+	  throw new IOException(file + " holds " + (write - drained) + " bytes of undrained writes and was created with "
+		  + capacity + " bytes; start with the previous capacity until it is drained");
+	}
+  }
+  
+  private static boolean isZero(ByteBuffer header) {
+	for (int i = 0; i < header.remaining(); i++) {
+	  if (header.get(i) != 0) {
+		return false;
+	  }
+	}
+	return true;
+  }
+  
+  // Returns the offset right after the new entry, or -1 when the undrained entries leave no room for it
+  public synchronized long append(byte kind, byte[] payload) {
+	int size = ENTRY_OVERHEAD + payload.length;
+	if (writeOffset - drainedOffset + size > dataCapacity()) {
+	  return -1;
+	}
+	ByteBuffer entry = ByteBuffer.allocate(size);
+	entry.putInt(payload.length);
+	entry.put(kind);
+	entry.putInt(checksum(kind, payload));
+	entry.put(payload);
+	write(writeOffset, entry.array());
+	if (syncOnAppend) {
+	  force(writeOffset, size);
+	}
+	writeOffset += size;
+	writeHeader();
+	if (syncOnAppend) {
+	  buffer.force(0, HEADER_SIZE);
+	}
+	return writeOffset;
+  }
+  
+  // Reads up to maxEntries entries that have not been drained yet, oldest first
+  public synchronized List<Entry> readPending(int maxEntries) {
+	List<Entry> entries = new ArrayList<>();
+	long position = drainedOffset;
+	while (position < writeOffset && entries.size() < maxEntries) {
+	  ByteBuffer framing = ByteBuffer.wrap(read(position, (int) Math.min(ENTRY_OVERHEAD, writeOffset - position)));
+	  int length = framing.remaining() < ENTRY_OVERHEAD ? -1 : framing.getInt(0);
+	  if (length < 0 || position + ENTRY_OVERHEAD + length > writeOffset) {
+		// The framing itself is damaged: nothing after this point can be located, hand the rest over as one bad entry
+		entries.add(new Entry((byte) 0, read(position, (int) (writeOffset - position)), writeOffset, false));
+		break;
+	  }
+	  byte kind = framing.get(4);
+	  int storedChecksum = framing.getInt(5);
+	  byte[] payload = read(position + ENTRY_OVERHEAD, length);
+	  position += ENTRY_OVERHEAD + length;
+	  entries.add(new Entry(kind, payload, position, storedChecksum == checksum(kind, payload)));
+	}
+	return entries;
+  }
+  
+  // Marks every entry up to endOffset as written to DynamoDB, which frees their space for new entries
+  public synchronized void markDrained(long endOffset) {
+	drainedOffset = Math.min(writeOffset, Math.max(drainedOffset, endOffset));
+	writeHeader();
+	if (syncOnAppend) {
+	  buffer.force(0, HEADER_SIZE);
+	}
+  }
+  
+  public synchronized boolean isEmpty() {
+	return drainedOffset >= writeOffset;
+  }
+  
+  @Override
+  public synchronized void close() throws IOException {
+	buffer.force();
+	channel.close();
+  }
+  
+  private int dataCapacity() {
+	return buffer.capacity() - HEADER_SIZE;
+  }
+  
+  // Position in the file of a journal offset
+  private int position(long offset) {
+	return HEADER_SIZE + (int) ((offset - HEADER_SIZE) % dataCapacity());
+  }
+  
+  private void write(long offset, byte[] bytes) {
+	int position = position(offset);
+	int first = Math.min(bytes.length, buffer.capacity() - position);
+	buffer.put(position, bytes, 0, first);
+	buffer.put(HEADER_SIZE, bytes, first, bytes.length - first);
+  }
+  
+  private byte[] read(long offset, int length) {
+	byte[] bytes = new byte[length];
+	int position = position(offset);
+	int first = Math.min(length, buffer.capacity() - position);
+	buffer.get(position, bytes, 0, first);
+	buffer.get(HEADER_SIZE, bytes, first, length - first);
+	return bytes;
+  }
+  
+  private void force(long offset, int length) {
+	int position = position(offset);
+	int first = Math.min(length, buffer.capacity() - position);
+	buffer.force(position, first);
+	if (first < length) {
+	  buffer.force(HEADER_SIZE, length - first);
+	}
+  }
+  
+  private void writeHeader() {
+	buffer.putInt(0, MAGIC);
+	buffer.putLong(8, buffer.capacity());
+	buffer.putLong(16, writeOffset);
+	buffer.putLong(24, drainedOffset);
+  }
+  
+  private static int checksum(byte kind, byte[] payload) {
+	CRC32C crc = new CRC32C();
+	crc.update(kind);
+	crc.update(payload);
+	return (int) crc.getValue();
+  }
+  
+  public static class Entry {
+	private final byte kind;
+	private final byte[] payload;
+	private final long endOffset;
+	private final boolean valid;
+	
+	Entry(byte kind, byte[] payload, long endOffset, boolean valid) {
+	  this.kind = kind;
+	  this.payload = payload;
+	  this.endOffset = endOffset;
+	  this.valid = valid;
+	}
+	
+	public byte getKind() {
+	  return kind;
+	}
+	
+	public byte[] getPayload() {
+	  return payload;
+	}
+	
+	public long getEndOffset() {
+	  return endOffset;
+	}
+	
+	// False when the checksum does not match, the entry must not be applied
+	public boolean isValid() {
+	  return valid;
+	}
+  }
+}
@@ -0,0 +1,428 @@
+package com.pedro.apps.users;
+
+import com.pedro.apps.config.DynamoDbOverloadedException;
+import com.pedro.apps.config.ReadOptions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+// Write-behind mode for the Users table, enabled with users.write-behind.enabled=true.
+// save() appends the item to a local memory-mapped journal and returns; a background worker drains
+// the journal to DynamoDB with BatchWriteItem. The number of batches sent in parallel grows by one
+// after every clean round and is halved when DynamoDB throttles. Items not drained yet are kept in
+// memory so this node reads its own writes, and the journal is replayed after a restart.
+// The journal is a ring buffer, so drained space is reused while the drain is still behind. When the
+// undrained entries fill it, save() waits for the drain to make room and fails after full-wait-millis:
+// writing through would race with older journaled versions of the same key. Entries that cannot be
+// decoded are moved to a <journal>.rejected file instead of blocking the entries behind them.
+@Repository
+@Primary
+@ConditionalOnProperty(name = "users.write-behind.enabled", havingValue = "true")
+public class WriteBehindUserRepository implements UserRepository {
+  
+  private static final Logger log = LoggerFactory.getLogger(WriteBehindUserRepository.class);
+  private static final int BATCH_SIZE = 25;
+  private static final byte KIND_USER = 'U';
+  private static final byte KIND_BOOKING = 'B';
+  private static final Set<String> RETRYABLE_CANCELLATIONS = Set.of("ThrottlingError", "ProvisionedThroughputExceeded", "TransactionConflict");
+  
+  private final UserRepositoryImpl delegate;
+  private final ObjectMapper objectMapper;
+  private final WriteBehindJournal journal;
+  private final int maxConcurrency;
+  private final long idleMillis;
+  private final long fullWaitMillis;
+  private final Path rejectedFile;
+  private final ExecutorService batchExecutor;
+  private final Thread worker;
+  // Items waiting to be drained, by userId and then operation (sort key)
+  private final Map<String, Map<String, PendingItem>> pending = new ConcurrentHashMap<>();
+  // Journal appends and pending removals are serialized so an item is never dropped from memory before it is registered.
+  // Writers waiting for room in a full journal wait on it and are woken after each drained window.
+  private final Object journalLock = new Object();
+  private volatile boolean running = true;
+  private int concurrency = 1;
+  
+  @Autowired
+  public WriteBehindUserRepository(
+		UserRepositoryImpl delegate,
+		ObjectMapper objectMapper,
+		@Value("${users.write-behind.journal:data/users-write-behind.journal}") String journalPath,
+		@Value("${users.write-behind.capacity-mb:64}") int capacityMb,
+		@Value("${users.write-behind.sync:true}") boolean sync,
+		@Value("${users.write-behind.max-concurrency:8}") int maxConcurrency,
+		@Value("${users.write-behind.idle-millis:50}") long idleMillis,
+		@Value("${users.write-behind.full-wait-millis:5000}") long fullWaitMillis) throws IOException {
+	this.delegate = delegate;
+	this.objectMapper = objectMapper;
+	this.journal = new WriteBehindJournal(Path.of(journalPath), capacityMb * 1024 * 1024, sync);
+	this.maxConcurrency = maxConcurrency;
+	this.idleMillis = idleMillis;
+	this.fullWaitMillis = fullWaitMillis;
+	this.rejectedFile = Path.of(journalPath + ".rejected");
+	this.batchExecutor = Executors.newFixedThreadPool(maxConcurrency);
+	
+	// Replay: whatever was acknowledged but not drained before the restart becomes visible again
+	for (WriteBehindJournal.Entry entry : journal.readPending(Integer.MAX_VALUE)) {
+	  Object item = decode(entry, false);
+	  if (item != null) {
+		addPending(item, entry.getEndOffset());
+	  }
+	}
+	this.worker = new Thread(this::drainLoop, "users-write-behind");
+	this.worker.setDaemon(true);
+	this.worker.start();
+  }
+  
+  @Override
+  public <T> void save(T item) {
+	if (!(item instanceof User) && !(item instanceof Booking)) {
+	  throw new IllegalArgumentException("Write-behind only journals users and bookings, not " + item);
+	}
+	// Checked before the append: a journaled entry is acknowledged and replayed, it must be registrable
+	String[] key = keyParts(item);
+	if (key[0] == null || key[1] == null) {
+	  throw new IllegalArgumentException("userId and operation are required, got " + key[0] + "/" + key[1]);
+	}
+	byte kind = item instanceof Booking ? KIND_BOOKING : KIND_USER;
+	byte[] payload;
+	try {
+	  payload = objectMapper.writeValueAsBytes(item);
+	} catch (IOException e) {
+	  throw new UncheckedIOException(e);
+	}
+	long deadline = System.nanoTime() + fullWaitMillis * 1_000_000;
+	synchronized (journalLock) {
+	  while (true) {
+		long endOffset = journal.append(kind, payload);
+		if (endOffset >= 0) {
+		  addPending(item, endOffset);
+		  return;
+		}
+		long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+		if (remainingMillis <= 0) {
+		  log.warn("Write-behind journal full for {} ms, rejecting write", fullWaitMillis);
+		  throw new IllegalStateException("Write-behind journal is full, DynamoDB is not keeping up; retry later");
+		}
+		try {
+		  journalLock.wait(remainingMillis);
+		} catch (InterruptedException e) {
+		  Thread.currentThread().interrupt();
+		  throw new IllegalStateException("Interrupted while waiting for room in the write-behind journal", e);
+		}
+	  }
+	}
+  }
+  
+  // Bookings are journaled like any other item, the drain writes them with their stats transaction
+  @Override
+  public void saveBooking(Booking booking) {
+	save(booking);
+  }
+  
+  @Override
+  public List<Booking> findBookingsByUserId(String userId) {
+	return findBookingsByUserId(userId, ReadOptions.eventual());
+  }
+  
+  @Override
+  public List<Booking> findBookingsByUserId(String userId, ReadOptions options) {
+	List<Booking> stored = delegate.findBookingsByUserId(userId, options);
+	Map<String, PendingItem> userPending = pending.get(userId);
+	if (userPending == null || userPending.isEmpty()) {
+	  return stored;
+	}
+	// Overlay the bookings this node still has in its journal on top of what DynamoDB returned
+	Map<String, Booking> merged = new LinkedHashMap<>();
+	stored.forEach(b -> merged.put(b.getOperation(), b));
+	userPending.values().forEach(p -> {
+	  if (p.item instanceof Booking booking && booking.getOperation().startsWith("booking")) {
+		merged.put(booking.getOperation(), booking);
+	  }
+	});
+	return new ArrayList<>(merged.values());
+  }
+  
+  @Override
+  public void scanBookingsEndedBefore(String date, List<String> statuses, Consumer<List<Booking>> page) {
+	delegate.scanBookingsEndedBefore(date, statuses, page);
+  }
+  
+  @Override
+  public void scanBookingsOverlapping(String fromDate, String toDate, Consumer<List<Booking>> page) {
+	delegate.scanBookingsOverlapping(fromDate, toDate, page);
+  }
+  
+  @Override
+  public boolean deleteBooking(Booking expected) {
+	Map<String, PendingItem> userPending = pending.get(expected.getUserId());
+	if (userPending != null && userPending.containsKey(expected.getOperation())) {
+	  return false; // a newer version is still in the journal
+	}
+	return delegate.deleteBooking(expected);
+  }
+  
+  @Override
+  public boolean acquireLease(String name, String owner, long untilMillis) {
+	return delegate.acquireLease(name, owner, untilMillis);
+  }
+  
+  @Override
+  public void releaseLease(String name, String owner) {
+	delegate.releaseLease(name, owner);
+  }
+  
+  @Override
+  public <T> List<T> saveBatch(Class<T> clazz, List<T> items) {
+	return delegate.saveBatch(clazz, items);
+  }
+  
+  @PreDestroy
+  public void shutdown() throws IOException, InterruptedException {
+	running = false;
+	worker.interrupt();
+	worker.join(10_000);
+	batchExecutor.shutdown();
+	journal.close();
+  }
+  
+  private void drainLoop() {
+	long backoffMillis = idleMillis;
+	while (running) {
+	  try {
+		List<WriteBehindJournal.Entry> window = journal.readPending(concurrency * BATCH_SIZE);
+		if (window.isEmpty()) {
+		  Thread.sleep(idleMillis);
+		  continue;
+		}
+		// Only the latest write per key matters, and BatchWriteItem rejects duplicate keys
+		Map<String, Object> latest = new LinkedHashMap<>();
+		for (WriteBehindJournal.Entry entry : window) {
+		  Object item = decode(entry, true);
+		  if (item == null) {
+			continue;
+		  }
+		  latest.remove(keyOf(item));
+		  latest.put(keyOf(item), item);
+		}
+		if (writeAll(new ArrayList<>(latest.values()))) {
+		  concurrency = Math.min(maxConcurrency, concurrency + 1);
+		  backoffMillis = idleMillis;
+		} else {
+		  concurrency = Math.max(1, concurrency / 2);
+		  Thread.sleep(backoffMillis);
+		  backoffMillis = Math.min(backoffMillis * 2, 5_000);
+		  continue;
+		}
+		long drainedOffset = window.get(window.size() - 1).getEndOffset();
+		synchronized (journalLock) {
+		  latest.values().forEach(item -> removePending(item, drainedOffset));
+		  journal.markDrained(drainedOffset);
+		  journalLock.notifyAll();
+		}
+	  } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		return;
+	  } catch (RuntimeException e) {
+		// Undecodable entries are already set aside, what is left here is transient (network, client side limits)
+		log.warn("Write-behind drain failed, retrying", e);
+		try {
+		  Thread.sleep(backoffMillis);
+		} catch (InterruptedException ie) {
+		  Thread.currentThread().interrupt();
+		  return;
+		}
+		backoffMillis = Math.min(backoffMillis * 2, 5_000);
+	  }
+	}
+  }
+  
+  // Sends the items as parallel batches. Returns false when DynamoDB throttled, in which case the
+  // whole window is retried later (puts are idempotent).
+  private boolean writeAll(List<Object> items) throws InterruptedException {
+	List<Future<Boolean>> futures = new ArrayList<>();
+	List<User> users = new ArrayList<>();
+	List<Booking> bookings = new ArrayList<>();
+	for (Object item : items) {
+	  if (item instanceof Booking booking) {
+		bookings.add(booking);
+	  } else {
+		users.add((User) item);
+	  }
+	}
+	submitBatches(User.class, users, futures);
+	// Bookings go through saveBooking one by one so the delegation stats stay in the same transaction
+	for (int from = 0; from < bookings.size(); from += BATCH_SIZE) {
+	  List<Booking> chunk = bookings.subList(from, Math.min(bookings.size(), from + BATCH_SIZE));
+	  futures.add(batchExecutor.submit(() -> writeBookings(chunk)));
+	}
+	boolean clean = true;
+	for (Future<Boolean> future : futures) {
+	  try {
+		clean &= future.get();
+	  } catch (ExecutionException e) {
+		throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+	  }
+	}
+	return clean;
+  }
+  
+  private <T> void submitBatches(Class<T> clazz, List<T> items, List<Future<Boolean>> futures) {
+	for (int from = 0; from < items.size(); from += BATCH_SIZE) {
+	  List<T> batch = items.subList(from, Math.min(items.size(), from + BATCH_SIZE));
+	  futures.add(batchExecutor.submit(() -> writeBatch(clazz, batch)));
+	}
+  }
+  
+  private boolean writeBookings(List<Booking> bookings) {
+	for (Booking booking : bookings) {
+	  try {
+		delegate.saveBooking(booking);
+	  } catch (DynamoDbOverloadedException e) {
+		return false;
+	  } catch (SdkServiceException e) {
+		if (isRetryable(e)) {
+		  return false; // saveBooking is idempotent, the bookings already written count zero on retry
+		}
+		log.error("Dropping booking {}/{} rejected by DynamoDB: {}", booking.getUserId(), booking.getOperation(), e.getMessage());
+	  } catch (IllegalArgumentException e) {
+		log.error("Dropping booking {}/{}: {}", booking.getUserId(), booking.getOperation(), e.getMessage());
+	  }
+	}
+	return true;
+  }
+  
+  private <T> boolean writeBatch(Class<T> clazz, List<T> batch) {
+	try {
+	  return delegate.saveBatch(clazz, batch).isEmpty();
+	} catch (DynamoDbOverloadedException e) {
+	  return false;
+	} catch (SdkServiceException e) {
+	  if (isRetryable(e)) {
+		return false;
+	  }
+	  // A rejected item (validation error) must not block the journal: write one by one and drop the bad ones
+	  for (T item : batch) {
+		try {
+		  delegate.save(item);
+		} catch (DynamoDbOverloadedException itemError) {
+		  return false;
+		} catch (SdkServiceException itemError) {
+		  if (isRetryable(itemError)) {
+			return false;
+		  }
+		  log.error("Dropping item {} rejected by DynamoDB: {}", keyOf(item), itemError.getMessage());
+		}
+	  }
+	  return true;
+	}
+  }
+  
+  private static boolean isRetryable(SdkServiceException e) {
+	if (e.isThrottlingException() || e.statusCode() >= 500) {
+	  return true;
+	}
+	return e instanceof TransactionCanceledException canceled && canceled.cancellationReasons().stream()
+		.anyMatch(reason -> RETRYABLE_CANCELLATIONS.contains(reason.code()));
+  }
+  
+  // Returns null for an entry that fails its checksum or cannot be decoded. The drain (setAside) also copies it to the
+  // rejected file before the entry is marked drained; the replay at startup only skips it.
+  private Object decode(WriteBehindJournal.Entry entry, boolean setAside) {
+	String reason;
+	if (!entry.isValid()) {
+	  reason = "checksum mismatch";
+	} else {
+	  try {
+		Class<?> clazz = entry.getKind() == KIND_BOOKING ? Booking.class : entry.getKind() == KIND_USER ? User.class : null;
+		if (clazz == null) {
+		  reason = "unknown kind " + entry.getKind();
+		} else {
+		  Object item = objectMapper.readValue(entry.getPayload(), clazz);
+		  String[] key = keyParts(item);
+		  if (key[0] != null && key[1] != null) {
+			return item;
+		  }
+		  reason = "no userId or operation";
+		}
+	  } catch (IOException | RuntimeException e) {
+		reason = e.toString();
+	  }
+	}
+	if (!setAside) {
+	  return null;
+	}
+	log.error("Setting aside write-behind entry ending at offset {} in {}: {}", entry.getEndOffset(), rejectedFile, reason);
+	String line = (char) entry.getKind() + " " + Base64.getEncoder().encodeToString(entry.getPayload()) + "\n";
+	try {
+	  Files.write(rejectedFile, line.getBytes(StandardCharsets.US_ASCII), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	} catch (IOException e) {
+	  throw new UncheckedIOException("Cannot set aside a bad write-behind entry in " + rejectedFile, e);
+	}
+	return null;
+  }
+  
+  private void addPending(Object item, long endOffset) {
+	String[] key = keyParts(item);
+	pending.computeIfAbsent(key[0], k -> new ConcurrentHashMap<>()).put(key[1], new PendingItem(item, endOffset));
+  }
+  
+  // Keeps the entry if a newer save of the same key was journaled after the drained window
+  private void removePending(Object item, long drainedOffset) {
+	String[] key = keyParts(item);
+	pending.computeIfPresent(key[0], (userId, items) -> {
+	  items.computeIfPresent(key[1], (operation, current) -> current.endOffset <= drainedOffset ? null : current);
+	  return items.isEmpty() ? null : items;
+	});
+  }
+  
+  private static String keyOf(Object item) {
+	String[] key = keyParts(item);
+	return key[0] + "#" + key[1];
+  }
+  
+  private static String[] keyParts(Object item) {
+	if (item instanceof Booking booking) {
+	  return new String[]{booking.getUserId(), booking.getOperation()};
+	}
+	User user = (User) item;
+	return new String[]{user.getUserId(), user.getOperation()};
+  }
+  
+  private static class PendingItem {
+	private final Object item;
+	private final long endOffset;
+	
+	PendingItem(Object item, long endOffset) {
+	  this.item = item;
+	  this.endOffset = endOffset;
+	}
+  }
+}
@@ -0,0 +1,144 @@
+package com.pedro.apps.changefeed;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DescribeStreamResponse;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableResponse;
+import software.amazon.awssdk.services.dynamodb.model.GetRecordsRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetRecordsResponse;
+import software.amazon.awssdk.services.dynamodb.model.GetShardIteratorRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetShardIteratorResponse;
+import software.amazon.awssdk.services.dynamodb.model.OperationType;
+import software.amazon.awssdk.services.dynamodb.model.Record;
+import software.amazon.awssdk.services.dynamodb.model.Shard;
+import software.amazon.awssdk.services.dynamodb.model.StreamRecord;
+import software.amazon.awssdk.services.dynamodb.streams.DynamoDbStreamsClient;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DynamoDbStreamsChangeFeedTest {
+  
+  private final DynamoDbClient dynamoDbClient = mock(DynamoDbClient.class);
+  private final DynamoDbStreamsClient streamsClient = mock(DynamoDbStreamsClient.class);
+  private final DynamoDbStreamsChangeFeed feed = new DynamoDbStreamsChangeFeed(dynamoDbClient, streamsClient, 1000, 1, 60);
+  private List<Shard> shards = List.of();
+  private final Map<String, GetRecordsResponse> pages = new HashMap<>();
+  private final List<String> calls = new ArrayList<>();
+  private final List<String> prices = new ArrayList<>();
+  
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void fakeStream() {
+	when(dynamoDbClient.describeTable(any(Consumer.class)))
+		.thenReturn(DescribeTableResponse.builder().table(t -> t.latestStreamArn("arn:stream")).build());
+	when(streamsClient.describeStream(any(Consumer.class)))
+		.thenAnswer(invocation -> DescribeStreamResponse.builder().streamDescription(d -> d.shards(shards)).build());
+	when(streamsClient.getShardIterator(any(Consumer.class))).thenAnswer(invocation -> {
+	  GetShardIteratorRequest request = GetShardIteratorRequest.builder().applyMutation(invocation.getArgument(0)).build();
+	  calls.add("open " + request.shardId());
+	  return GetShardIteratorResponse.builder().shardIterator(request.shardId() + "-1").build();
+	});
+	when(streamsClient.getRecords(any(Consumer.class))).thenAnswer(invocation -> {
+	  GetRecordsRequest request = GetRecordsRequest.builder().applyMutation(invocation.getArgument(0)).build();
+	  calls.add("read " + request.shardIterator());
+	  return pages.get(request.shardIterator());
+	});
+	feed.subscribe("Delegations", event -> prices.add(event.getNewImage().get("price").n()));
+  }
+  
+  @Test
+  void readsAChildShardOnlyAfterItsParentIsFullyRead() {
+	// The node starts while the parent shard is open
+	shards = List.of(shard("parent", null, false));
+	pages.put("parent-1", page("parent-2"));
+	ReflectionTestUtils.invokeMethod(feed, "poll");
+	
+	// The parent splits: its last record is still unread when the child shows up with a newer image
+	shards = List.of(shard("parent", null, true), shard("child", "parent", false));
+	pages.put("parent-2", page(null, record("70", Instant.now())));
+	pages.put("child-1", page("child-2", record("80", Instant.now())));
+	pages.put("child-2", page("child-2"));
+	ReflectionTestUtils.invokeMethod(feed, "poll");
+	ReflectionTestUtils.invokeMethod(feed, "poll");
+	
+	assertThat(prices).containsExactly("70", "80");
+	assertThat(calls).containsSubsequence("read parent-2", "open child", "read child-1");
+  }
+  
+  @Test
+  void catchUpReplaysRecordsWithinTheMarginAndEndsOnceShardsReachTheSnapshot() throws Exception {
+	Instant takenAt = Instant.now();
+	shards = List.of(shard("shard", null, false));
+	pages.put("shard-1", page("shard-2",
+		record("10", takenAt.minusSeconds(600)), record("20", takenAt.minusSeconds(30)), record("30", takenAt.plusSeconds(1))));
+	pages.put("shard-2", page("shard-2"));
+	
+	assertThat(feed.catchUpFrom(takenAt)).isTrue();
+	((ExecutorService) ReflectionTestUtils.getField(feed, "poller")).submit(() -> { }).get();
+	ReflectionTestUtils.invokeMethod(feed, "poll");
+	
+	// The record 30 seconds before the snapshot may be missing from it: the clocks differ
+	assertThat(prices).containsExactly("20", "30");
+	assertThat(ReflectionTestUtils.getField(feed, "catchUpSince")).isNull();
+  }
+  
+  @Test
+  void keepsCatchingUpUntilATableIsSubscribed() throws Exception {
+	DynamoDbStreamsChangeFeed unsubscribed = new DynamoDbStreamsChangeFeed(dynamoDbClient, streamsClient, 1000, 1, 60);
+	Instant takenAt = Instant.now();
+	shards = List.of(shard("shard", null, false));
+	pages.put("shard-1", page("shard-2", record("10", takenAt.minusSeconds(600)), record("20", takenAt.plusSeconds(1))));
+	pages.put("shard-2", page("shard-2"));
+	
+	assertThat(unsubscribed.catchUpFrom(takenAt)).isTrue();
+	((ExecutorService) ReflectionTestUtils.getField(unsubscribed, "poller")).submit(() -> { }).get();
+	ReflectionTestUtils.invokeMethod(unsubscribed, "poll");
+	assertThat(ReflectionTestUtils.getField(unsubscribed, "catchUpSince")).isNotNull();
+	
+	List<String> replayed = new ArrayList<>();
+	unsubscribed.subscribe("Delegations", event -> replayed.add(event.getNewImage().get("price").n()));
+	ReflectionTestUtils.invokeMethod(unsubscribed, "poll");
+	
+	// The shard was opened at its start, not at LATEST
+	assertThat(replayed).containsExactly("20");
+	assertThat(ReflectionTestUtils.getField(unsubscribed, "catchUpSince")).isNull();
+  }
+  
+  private static Shard shard(String shardId, String parentShardId, boolean closed) {
+	return Shard.builder()
+		.shardId(shardId)
+		.parentShardId(parentShardId)
+		.sequenceNumberRange(r -> r.startingSequenceNumber("1").endingSequenceNumber(closed ? "9" : null))
+		.build();
+  }
+  
+  private static GetRecordsResponse page(String nextIterator, Record... records) {
+	return GetRecordsResponse.builder().records(records).nextShardIterator(nextIterator).build();
+  }
+  
+  private static Record record(String price, Instant createdAt) {
+	return Record.builder()
+		.eventName(OperationType.MODIFY)
+		.dynamodb(StreamRecord.builder()
+			.keys(Map.of("delegationId", AttributeValue.fromS("MAD"), "operation", AttributeValue.fromS("car0001")))
+			.newImage(Map.of("delegationId", AttributeValue.fromS("MAD"), "operation", AttributeValue.fromS("car0001"),
+				"price", AttributeValue.fromN(price)))
+			.approximateCreationDateTime(createdAt)
+			.build())
+		.build();
+  }
+}
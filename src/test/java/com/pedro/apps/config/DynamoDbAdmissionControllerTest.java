@@ -0,0 +1,51 @@
+package com.pedro.apps.config;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DynamoDbAdmissionControllerTest {
+  
+  // 100 read units/s with a one second burst; background requests may wait 10 ms
+  private final DynamoDbAdmissionController controller =
+	  new DynamoDbAdmissionController(true, 100, 50, 5, 4000, 10, 0.7, 1, 1000, 250, 10);
+  
+  @Test
+  void sizesScansFromTheirLimit() {
+	assertThat(DynamoDbAdmissionController.demands(ScanRequest.builder().tableName("Delegations").build()))
+		.extracting(DynamoDbAdmissionController.Demand::units).containsExactly(128.0);
+	assertThat(DynamoDbAdmissionController.demands(ScanRequest.builder().tableName("Delegations").limit(20).consistentRead(true).build()))
+		.extracting(DynamoDbAdmissionController.Demand::units).containsExactly(20.0);
+  }
+  
+  @Test
+  void failsFastOnTheFirstPageButNeverHalfWayThroughAScan() {
+	ScanRequest firstPage = ScanRequest.builder().tableName("Delegations").limit(100).build();
+	ScanRequest nextPage = firstPage.toBuilder().exclusiveStartKey(Map.of("delegationId", AttributeValue.fromS("MAD"))).build();
+	
+	// The first page empties the bucket, starting another scan now would have to wait far too long
+	controller.beforeTransmission(context(firstPage), new ExecutionAttributes());
+	assertThatThrownBy(() -> controller.beforeTransmission(context(firstPage), new ExecutionAttributes()))
+		.isInstanceOf(DynamoDbOverloadedException.class);
+	
+	long start = System.nanoTime();
+	controller.beforeTransmission(context(nextPage), new ExecutionAttributes());
+	// The follow-up page waited for its tokens instead of failing
+	assertThat(System.nanoTime() - start).isGreaterThan(100_000_000L);
+  }
+  
+  private static Context.BeforeTransmission context(ScanRequest request) {
+	Context.BeforeTransmission context = mock(Context.BeforeTransmission.class);
+	when(context.request()).thenReturn(request);
+	return context;
+  }
+}
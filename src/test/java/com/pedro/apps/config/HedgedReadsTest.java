@@ -0,0 +1,63 @@
+package com.pedro.apps.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HedgedReadsTest {
+  
+  @Test
+  void cancelsTheSlowerRequest() throws InterruptedException {
+	HedgedReads reads = new HedgedReads(true, 5, 1, 0.1);
+	AtomicInteger calls = new AtomicInteger();
+	CountDownLatch interrupted = new CountDownLatch(1);
+	String value = reads.read("Delegations.get", ReadOptions.eventual().hedged(), () -> {
+	  if (calls.incrementAndGet() > 1) {
+		return "hedge";
+	  }
+	  try {
+		Thread.sleep(10_000);
+		return "first";
+	  } catch (InterruptedException e) {
+		interrupted.countDown();
+		throw new IllegalStateException(e);
+	  }
+	});
+	assertThat(value).isEqualTo("hedge");
+	assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+  
+  @Test
+  void failsWithTheErrorOfTheLastRequestInsteadOfWaiting() {
+	HedgedReads reads = new HedgedReads(true, 5, 1, 0.1);
+	
+	assertThatThrownBy(() -> reads.read("Delegations.get", ReadOptions.eventual().hedged(), () -> {
+	  throw new AssertionError("broken read");
+	})).isInstanceOf(AssertionError.class).hasMessage("broken read");
+  }
+  
+  @Test
+  void stopsHedgingOnceTheBudgetIsSpent() {
+	HedgedReads reads = new HedgedReads(true, 1, 1, 0);
+	AtomicInteger calls = new AtomicInteger();
+	for (int i = 0; i < 15; i++) {
+	  reads.read("Delegations.get", ReadOptions.eventual().hedged(), () -> {
+		calls.incrementAndGet();
+		try {
+		  Thread.sleep(20);
+		} catch (InterruptedException e) {
+		  Thread.currentThread().interrupt();
+		}
+		return "item";
+	  });
+	}
+	// The initial budget covers 10 hedges and no read earns more
+	assertThat(calls.get()).isEqualTo(25);
+  }
+  
+}
@@ -0,0 +1,113 @@
+package com.pedro.apps.delegations;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CarCatalogueIndexTest {
+  
+  private final DelegationRepository repository = mock(DelegationRepository.class);
+  private final CarCatalogueIndex index = new CarCatalogueIndex(repository);
+  
+  @Test
+  void keepsChangesThatArriveWhileReloadScans() {
+	when(repository.listAllCars()).thenAnswer(invocation -> {
+	  // The change feed delivers these while the scan is still running and the scan does not see them
+	  index.upsert(car("MAD", "car0002", "MAD-2", "Kia", 70));
+	  index.remove("MAD", "car0003");
+	  return List.of(car("MAD", "car0001", "MAD-1", "Seat", 50), car("MAD", "car0003", "MAD-3", "Ford", 60));
+	});
+	
+	index.reload();
+	
+	assertThat(index.allCars()).extracting(Car::getOperation).containsExactlyInAnyOrder("car0001", "car0002");
+  }
+  
+  @Test
+  void searchesByMakeAndPriceSortedAndLimited() {
+	index.load(List.of(
+		car("MAD", "car0001", "MAD-1", "Seat", 50),
+		car("MAD", "car0002", "MAD-2", "seat ", 30),
+		car("BCN", "car0001", "BCN-1", "Seat", 90),
+		car("BCN", "car0002", "BCN-2", "Kia", 20)));
+	CarSearchQuery query = new CarSearchQuery();
+	query.setMake("SEAT");
+	query.setMaxPrice(80);
+	query.setSortBy("price");
+	query.setLimit(5);
+	
+	assertThat(index.search(query)).extracting(Car::getCarId).containsExactly("MAD-2", "MAD-1");
+  }
+  
+  @Test
+  void keepsTheTopOfTheOrderWhenTheLimitIsSmallerThanTheMatches() {
+	Random random = new Random(7);
+	List<Car> cars = new ArrayList<>();
+	for (int i = 0; i < 500; i++) {
+	  cars.add(car("MAD", "car" + i, "MAD-" + i, "Seat", random.nextInt(100)));
+	}
+	index.load(cars);
+	CarSearchQuery query = new CarSearchQuery();
+	query.setSortBy("price");
+	query.setDescending(true);
+	query.setLimit(10);
+	
+	// Ties keep the order the cars were indexed in
+	List<String> expected = cars.stream()
+		.sorted(Comparator.comparingInt(Car::getPrice).reversed())
+		.limit(10)
+		.map(Car::getCarId)
+		.toList();
+	assertThat(index.search(query)).extracting(Car::getCarId).containsExactlyElementsOf(expected);
+  }
+  
+  @Test
+  void carSavedUnderAnotherDelegationReplacesItsOldRow() {
+	index.load(List.of(car("MAD", "car0001", "CAR-1", "Seat", 50)));
+	
+	index.upsert(car("BCN", "car0007", "CAR-1", "Seat", 50));
+	
+	assertThat(index.allCars()).extracting(Car::getDelegationId).containsExactly("BCN");
+  }
+  
+  @Test
+  void forgetsTheOldCarIdWhenAnItemIsSavedWithAnotherOne() {
+	index.load(List.of(car("MAD", "car0001", "CAR-1", "Seat", 50)));
+	index.upsert(car("MAD", "car0001", "CAR-2", "Seat", 50));
+	
+	index.upsert(car("BCN", "car0007", "CAR-1", "Seat", 50));
+	
+	assertThat(index.allCars()).extracting(Car::getCarId).containsExactlyInAnyOrder("CAR-2", "CAR-1");
+  }
+  
+  @Test
+  void returnsCopiesOfTheIndexedCars() {
+	index.load(List.of(car("MAD", "car0001", "CAR-1", "Seat", 50)));
+	
+	index.allCars().get(0).setPrice(10);
+	index.search(new CarSearchQuery()).get(0).setMake("Kia");
+	
+	assertThat(index.allCars()).extracting(Car::getPrice, Car::getMake).containsExactly(tuple(50, "Seat"));
+  }
+  
+  private static Car car(String delegationId, String operation, String carId, String make, int price) {
+	Car car = new Car();
+	car.setDelegationId(delegationId);
+	car.setOperation(operation);
+	car.setCarId(carId);
+	car.setMake(make);
+	car.setPrice(price);
+	car.setRented(false);
+	car.setBookingDates(Map.of());
+	return car;
+  }
+}
@@ -0,0 +1,35 @@
+package com.pedro.apps.delegations;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DelegationDirectoryTest {
+  
+  private final DelegationRepository repository = mock(DelegationRepository.class);
+  private final DelegationDirectory directory = new DelegationDirectory(repository);
+  
+  @Test
+  void keepsChangesThatArriveWhileReloadScans() {
+	directory.load(List.of(delegation("MAD", 10), delegation("BCN", 5)));
+	when(repository.listAllDelegations()).thenAnswer(invocation -> {
+	  // The change feed delivers these while the scan is still running and the scan does not see them
+	  directory.upsert(delegation("MAD", 12));
+	  directory.remove("BCN");
+	  return List.of(delegation("MAD", 10), delegation("BCN", 5), delegation("VLC", 3));
+	});
+	
+	directory.reload();
+	
+	assertThat(directory.get("MAD").getAvailableCarQty()).isEqualTo(12);
+	assertThat(directory.all()).extracting(Delegation::getDelegationId).containsExactlyInAnyOrder("MAD", "VLC");
+  }
+  
+  private static Delegation delegation(String delegationId, int cars) {
+	return new Delegation(delegationId, "profile", delegationId, null, null, 40.4f, -3.7f, cars, null, null);
+  }
+}
@@ -0,0 +1,132 @@
+package com.pedro.apps.delegations;
+
+import com.pedro.apps.changefeed.InMemoryChangeFeed;
+import com.pedro.apps.config.HedgedReads;
+import com.pedro.apps.inmemory.InMemoryDynamoDbClient;
+import com.pedro.apps.inmemory.LatencyProfile;
+import com.pedro.apps.inmemory.ThrottlingProfile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+
+class DelegationRepositoryImplTest {
+  
+  private final InMemoryDynamoDbClient dynamoDbClient = new InMemoryDynamoDbClient(LatencyProfile.none(), ThrottlingProfile.unlimited());
+  private final DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder().dynamoDbClient(dynamoDbClient).build();
+  private final DelegationRepositoryImpl unsharded = repository("");
+  private final DelegationRepositoryImpl sharded = repository("MAD:4");
+  
+  @BeforeEach
+  void createTable() {
+	dynamoDbClient.createTable("Delegations", "delegationId", "operation");
+  }
+  
+  @AfterEach
+  void stopRepositories() {
+	unsharded.stop();
+	sharded.stop();
+  }
+  
+  @Test
+  void readsCarsWrittenBeforeShardingFromTheBasePartition() {
+	Delegation profile = new Delegation();
+	profile.setDelegationId("MAD");
+	profile.setOperation("profile");
+	unsharded.save(profile);
+	unsharded.save(car("car0001", 50));
+	
+	assertThat(sharded.get("MAD", "car0001", Car.class).getPrice()).isEqualTo(50);
+	assertThat(sharded.listByPartitionKey("MAD", Car.class)).extracting(Car::getOperation)
+		.containsExactlyInAnyOrder("profile", "car0001");
+  }
+  
+  @Test
+  void resavedCarMovesToItsShardAndHidesTheOldCopy() {
+	unsharded.save(car("car0001", 50));
+	unsharded.save(car("car0002", 60));
+	Car resaved = car("car0001", 55);
+	
+	sharded.save(resaved);
+	
+	// The caller's car is not rewritten to the shard partition
+	assertThat(resaved.getDelegationId()).isEqualTo("MAD");
+	assertThat(enhancedClient.table("Delegations", TableSchema.fromBean(Car.class)).scan().items().stream()
+		.map(Car::getDelegationId).toList()).contains("MAD", new CarKeySharding("MAD:4").physicalKey("MAD", "car0001"));
+	assertThat(sharded.get("MAD", "car0001", Car.class).getPrice()).isEqualTo(55);
+	for (List<Car> cars : List.of(sharded.listByPartitionKey("MAD", Car.class), sharded.listAllCars(), sharded.listAllItems(Car.class))) {
+	  assertThat(cars).extracting(Car::getOperation, Car::getPrice, Car::getDelegationId)
+		  .containsExactlyInAnyOrder(
+			  tuple("car0001", 55, "MAD"),
+			  tuple("car0002", 60, "MAD"));
+	}
+  }
+  
+  @Test
+  void keepsEveryCarReadableWhileTheShardCountChangesAndMovesThemOnReshard() {
+	for (int i = 0; i < 20; i++) {
+	  sharded.save(car(String.format("car%04d", i), 50));
+	}
+	DelegationRepositoryImpl fewerShards = repository("MAD:2");
+	DelegationRepositoryImpl notSharded = repository("");
+	try {
+	  // Saved again under the new count while its old copy is still in one of the four shards
+	  fewerShards.save(car("car0007", 70));
+	  assertThat(fewerShards.listByPartitionKey("MAD", Car.class)).hasSize(20);
+	  assertThat(fewerShards.listAllCars()).hasSize(20).filteredOn(car -> car.getOperation().equals("car0007"))
+		  .singleElement().extracting(Car::getPrice).isEqualTo(70);
+	  assertThat(fewerShards.get("MAD", "car0013", Car.class).getDelegationId()).isEqualTo("MAD");
+	  
+	  fewerShards.reshardCars("MAD");
+	  
+	  assertThat(storedCarPartitions()).hasSize(20).allMatch(partition -> partition.equals("MAD#0") || partition.equals("MAD#1"));
+	  assertThat(fewerShards.get("MAD", "car0007", Car.class).getPrice()).isEqualTo(70);
+	  
+	  // Dropped from the configuration: the shards stay readable until the cars are moved back to the base partition
+	  assertThat(notSharded.listByPartitionKey("MAD", Car.class)).hasSize(20).allMatch(car -> car.getDelegationId().equals("MAD"));
+	  assertThat(notSharded.get("MAD", "car0013", Car.class)).isNotNull();
+	  
+	  assertThat(notSharded.reshardCars("MAD")).isEqualTo(20);
+	  
+	  assertThat(storedCarPartitions()).hasSize(20).containsOnly("MAD");
+	  assertThat(notSharded.listAllItems(Car.class)).hasSize(20);
+	} finally {
+	  fewerShards.stop();
+	  notSharded.stop();
+	}
+  }
+  
+  private List<String> storedCarPartitions() {
+	return dynamoDbClient.scan(r -> r.tableName("Delegations")).items().stream()
+		.filter(item -> item.get("operation").s().startsWith("car"))
+		.map(item -> item.get("delegationId").s())
+		.toList();
+  }
+  
+  private DelegationRepositoryImpl repository(String shards) {
+	@SuppressWarnings("unchecked")
+	ObjectProvider<InMemoryChangeFeed> noLocalFeed = mock(ObjectProvider.class);
+	return new DelegationRepositoryImpl(enhancedClient, dynamoDbClient, new CarKeySharding(shards), new HedgedReads(false, 20, 2, 0.1), noLocalFeed);
+  }
+  
+  private static Car car(String operation, int price) {
+	Car car = new Car();
+	car.setDelegationId("MAD");
+	car.setOperation(operation);
+	car.setCarId("MAD-" + operation);
+	car.setMake("Seat");
+	car.setPrice(price);
+	car.setRented(false);
+	car.setBookingDates(Map.of());
+	return car;
+  }
+}
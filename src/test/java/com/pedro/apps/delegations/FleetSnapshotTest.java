@@ -0,0 +1,61 @@
+package com.pedro.apps.delegations;
+
+import com.pedro.apps.changefeed.ChangeFeed;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FleetSnapshotTest {
+  
+  @TempDir
+  Path dir;
+  
+  @Test
+  void restoresWithoutScanningWhenTheFeedCanReplay() throws IOException {
+	Path file = dir.resolve("fleet.snapshot");
+	DelegationRepository before = mock(DelegationRepository.class);
+	CarCatalogueIndex index = new CarCatalogueIndex(before);
+	DelegationDirectory directory = new DelegationDirectory(before);
+	directory.load(List.of(new Delegation("MAD", "profile", "Madrid", null, null, 40.4f, -3.7f, 2, null, null)));
+	index.load(List.of(car("car0001"), car("car0002")));
+	new FleetSnapshot(index, directory, mock(ChangeFeed.class), file.toString(), 0).write();
+	
+	DelegationRepository after = mock(DelegationRepository.class);
+	ChangeFeed streams = mock(ChangeFeed.class);
+	when(streams.catchUpFrom(any(Instant.class))).thenReturn(true);
+	CarCatalogueIndex restoredIndex = new CarCatalogueIndex(after);
+	DelegationDirectory restoredDirectory = new DelegationDirectory(after);
+	
+	new FleetSnapshot(restoredIndex, restoredDirectory, streams, file.toString(), 0).start();
+	
+	assertThat(restoredIndex.allCars()).extracting(Car::getOperation).containsExactlyInAnyOrder("car0001", "car0002");
+	assertThat(restoredDirectory.get("MAD").getName()).isEqualTo("Madrid");
+	verify(streams).catchUpFrom(any(Instant.class));
+	verify(after, never()).listAllCars();
+	verify(after, never()).listAllDelegations();
+  }
+  
+  private static Car car(String operation) {
+	Car car = new Car();
+	car.setDelegationId("MAD");
+	car.setOperation(operation);
+	car.setCarId("MAD-" + operation);
+	car.setMake("Seat");
+	car.setPrice(50);
+	car.setRented(false);
+	car.setBookingDates(Map.of());
+	return car;
+  }
+}
@@ -0,0 +1,135 @@
+package com.pedro.apps.delegations;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class QuoteEngineTest {
+  
+  private QuoteEngine engine;
+  
+  @BeforeEach
+  void setUp() {
+	DelegationDirectory directory = new DelegationDirectory(null);
+	directory.load(List.of(delegation("MAD", 40.4168f, -3.7038f), delegation("BCN", 41.3874f, 2.1686f)));
+	engine = new QuoteEngine(null, directory);
+	ReflectionTestUtils.setField(engine, "weekendMultiplier", 1.2);
+	ReflectionTestUtils.setField(engine, "highSeasonMultiplier", 1.3);
+	ReflectionTestUtils.setField(engine, "highSeasonMonths", new int[]{6, 7, 8});
+	ReflectionTestUtils.setField(engine, "oneWayBaseSurcharge", 50.0);
+	ReflectionTestUtils.setField(engine, "oneWaySurchargePerKm", 0.1);
+	ReflectionTestUtils.setField(engine, "maxDays", 90);
+  }
+  
+  @Test
+  void appliesWeekendAndHighSeasonMultipliersPerDay() {
+	// Friday 2026-07-03 to Sunday 2026-07-05: 1.3 + 1.56 + 1.56
+	List<CarQuote> quotes = engine.quote(List.of(car("car0001", 100, Map.of())),
+		LocalDate.parse("2026-07-03"), LocalDate.parse("2026-07-05"), 0);
+	
+	assertThat(quotes).hasSize(1);
+	assertThat(quotes.get(0).getDays()).isEqualTo(3);
+	assertThat(quotes.get(0).getTotal()).isCloseTo(442.0, within(0.001));
+  }
+  
+  @Test
+  void leavesOutBookedCarsAndSortsCheapestFirst() {
+	List<Car> cars = List.of(
+		car("car0001", 80, Map.of()),
+		car("car0002", 40, Map.of("2026-11-03", true)),
+		car("car0003", 60, Map.of("2026-11-10", true)),
+		car("car0004", 50, Map.of("2026-11-03", false)));
+	
+	List<CarQuote> quotes = engine.quote(cars, LocalDate.parse("2026-11-02"), LocalDate.parse("2026-11-04"), 10);
+	
+	assertThat(quotes).extracting(CarQuote::getOperation).containsExactly("car0004", "car0003", "car0001");
+	assertThat(quotes.get(0).getTotal()).isCloseTo(3 * 50 + 10, within(0.001));
+	assertThat(quotes.get(0).getOneWaySurcharge()).isEqualTo(10);
+  }
+  
+  @Test
+  void chargesOneWayByDistanceBetweenDelegations() {
+	double km = QuoteEngine.distanceKm(40.4168, -3.7038, 41.3874, 2.1686);
+	
+	assertThat(km).isCloseTo(505, within(5.0));
+	assertThat(engine.oneWaySurcharge("MAD", "MAD")).isZero();
+	assertThat(engine.oneWaySurcharge("MAD", null)).isZero();
+	assertThat(engine.oneWaySurcharge("MAD", "BCN")).isCloseTo(50 + 0.1 * km, within(0.5));
+	assertThat(engine.oneWaySurcharge("MAD", "unknown")).isEqualTo(50);
+  }
+  
+  @Test
+  void rejectsRangesEndingBeforeTheyStartOrLongerThanTheLimit() {
+	assertThatThrownBy(() -> engine.quote("MAD", "MAD", "2026-11-05", "2026-11-01"))
+		.isInstanceOf(IllegalArgumentException.class);
+	assertThatThrownBy(() -> engine.quote(List.of(car("car0001", 100, Map.of())),
+		LocalDate.parse("2026-01-01"), LocalDate.parse("9999-12-31"), 0))
+		.isInstanceOf(IllegalArgumentException.class)
+		.hasMessageContaining("at most 90");
+  }
+  
+  // Excluded from the default build, run with -Pperformance
+  @Test
+  @Tag("performance")
+  void quotesAHundredThousandCarsWithinFiftyMilliseconds() {
+	Random random = new Random(42);
+	LocalDate start = LocalDate.parse("2026-07-01");
+	List<Car> cars = new ArrayList<>(100_000);
+	for (int i = 0; i < 100_000; i++) {
+	  Map<String, Boolean> bookingDates = new HashMap<>();
+	  for (int d = 0; d < 60; d++) {
+		if (random.nextInt(10) == 0) {
+		  bookingDates.put(start.minusDays(15).plusDays(d).toString(), true);
+		}
+	  }
+	  cars.add(car(String.format("car%06d", i), 30 + random.nextInt(170), bookingDates));
+	}
+	LocalDate end = start.plusDays(13);
+	for (int i = 0; i < 20; i++) {
+	  engine.quote(cars, start, end, 0); // JIT warm-up
+	}
+	
+	long[] nanos = new long[15];
+	for (int i = 0; i < nanos.length; i++) {
+	  long begin = System.nanoTime();
+	  engine.quote(cars, start, end, 0);
+	  nanos[i] = System.nanoTime() - begin;
+	}
+	Arrays.sort(nanos);
+	
+	// The median, so one GC pause on a shared build machine does not fail the run
+	assertThat(nanos[nanos.length / 2] / 1_000_000).isLessThan(50);
+  }
+  
+  private static Delegation delegation(String id, float lat, float lon) {
+	Delegation delegation = new Delegation();
+	delegation.setDelegationId(id);
+	delegation.setOperation("profile");
+	delegation.setLatDelegation(lat);
+	delegation.setLonDelegation(lon);
+	return delegation;
+  }
+  
+  private static Car car(String operation, int price, Map<String, Boolean> bookingDates) {
+	Car car = new Car();
+	car.setDelegationId("MAD");
+	car.setOperation(operation);
+	car.setCarId("MAD-" + operation);
+	car.setPrice(price);
+	car.setBookingDates(bookingDates);
+	return car;
+  }
+}
@@ -0,0 +1,86 @@
+package com.pedro.apps.inmemory;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExpressionsTest {
+  
+  private static final Map<String, AttributeValue> CAR = Map.of(
+	  "delegationId", s("madrid"),
+	  "operation", s("car#1"),
+	  "status", s("available"),
+	  "price", n("120.5"),
+	  "tags", AttributeValue.builder().l(s("suv"), s("diesel")).build(),
+	  "extras", AttributeValue.builder().ss("gps", "chair").build());
+  
+  @Test
+  void evaluatesConditions() {
+	Expressions.Context context = Expressions.Context.of(Map.of("#s", "status"),
+		Map.of(":s", s("available"), ":lo", n("100"), ":hi", n("200"), ":p", s("car#"), ":gps", s("gps"), ":two", n("2"),
+			":a", s("booked"), ":b", s("available")));
+	assertThat(test("#s = :s AND price BETWEEN :lo AND :hi", context)).isTrue();
+	assertThat(test("price > :hi OR begins_with(operation, :p)", context)).isTrue();
+	assertThat(test("attribute_not_exists(price) OR NOT contains(extras, :gps)", context)).isFalse();
+	assertThat(test("size(tags) = :two AND #s IN (:a, :b)", context)).isTrue();
+	assertThat(test("(price < :lo OR price > :hi) AND attribute_exists(status)", context)).isFalse();
+	// Numbers compare by value, not as strings
+	assertThat(test("price < :hi", Expressions.Context.of(null, Map.of(":hi", n("1000"))))).isTrue();
+  }
+  
+  @Test
+  void evaluatesUpdatesAgainstTheItemAsItWasBefore() {
+	Expressions.Context context = Expressions.Context.of(Map.of("#s", "status"),
+		Map.of(":d", n("10"), ":more", AttributeValue.builder().l(s("auto")).build(), ":now", s("2026-10-19"),
+			":one", n("1"), ":gps", AttributeValue.builder().ss("gps").build(), ":booked", s("booked")));
+	Map<String, AttributeValue> updated = Expressions.applyUpdate(Expressions.update(
+		"SET price = price + :d, tags = list_append(tags, :more), createdAt = if_not_exists(createdAt, :now), "
+			+ "oldPrice = price REMOVE #s ADD visits :one DELETE extras :gps"), CAR, context);
+	assertThat(updated.get("price").n()).isEqualTo("130.5");
+	assertThat(updated.get("oldPrice").n()).isEqualTo("120.5");
+	assertThat(updated.get("tags").l()).extracting(AttributeValue::s).containsExactly("suv", "diesel", "auto");
+	assertThat(updated.get("createdAt").s()).isEqualTo("2026-10-19");
+	assertThat(updated).doesNotContainKey("status");
+	assertThat(updated.get("visits").n()).isEqualTo("1");
+	assertThat(updated.get("extras").ss()).containsExactly("chair");
+	assertThat(CAR.get("price").n()).isEqualTo("120.5");
+  }
+  
+  @Test
+  void projectsTopLevelAttributes() {
+	List<Expressions.Path> paths = Expressions.projection("operation, #s, missing");
+	assertThat(Expressions.project(paths, CAR, Expressions.Context.of(Map.of("#s", "status"), null)))
+		.containsOnlyKeys("operation", "status");
+  }
+  
+  @Test
+  void rejectsInvalidExpressionsAsValidationErrors() {
+	Expressions.Context context = Expressions.Context.of(null, Map.of(":s", s("available")));
+	assertThatThrownBy(() -> Expressions.condition("status = "))
+		.isInstanceOf(DynamoDbException.class)
+		.satisfies(e -> assertThat(((DynamoDbException) e).awsErrorDetails().errorCode()).isEqualTo("ValidationException"));
+	assertThatThrownBy(() -> Expressions.condition("status = :s :s")).isInstanceOf(DynamoDbException.class);
+	assertThatThrownBy(() -> Expressions.condition("status ! :s")).isInstanceOf(DynamoDbException.class);
+	assertThatThrownBy(() -> test("#missing = :s", context)).hasMessageContaining("#missing");
+	assertThatThrownBy(() -> test("status = :other", context)).hasMessageContaining(":other");
+  }
+  
+  private static boolean test(String expression, Expressions.Context context) {
+	return Expressions.condition(expression).test(CAR, context);
+  }
+  
+  private static AttributeValue s(String value) {
+	return AttributeValue.builder().s(value).build();
+  }
+  
+  private static AttributeValue n(String value) {
+	return AttributeValue.builder().n(value).build();
+  }
+  
+}
@@ -0,0 +1,192 @@
+package com.pedro.apps.inmemory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.TransactionConflictException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InMemoryDynamoDbClientTest {
+  
+  private final InMemoryDynamoDbClient client = new InMemoryDynamoDbClient(LatencyProfile.none(), ThrottlingProfile.unlimited());
+  
+  @BeforeEach
+  void createTable() {
+	client.createTable("Delegations", "delegationId", "operation");
+  }
+  
+  @Test
+  void rejectsAPutWhoseConditionFails() {
+	PutItemRequest put = PutItemRequest.builder()
+		.tableName("Delegations")
+		.item(car("madrid", "car#1", "100"))
+		.conditionExpression("attribute_not_exists(delegationId)")
+		.build();
+	client.putItem(put);
+	assertThatThrownBy(() -> client.putItem(put)).isInstanceOf(ConditionalCheckFailedException.class);
+  }
+  
+  @Test
+  void pagesQueriesInSortKeyOrder() {
+	for (int i = 5; i >= 1; i--) {
+	  client.putItem(PutItemRequest.builder().tableName("Delegations").item(car("madrid", "car#" + i, "100")).build());
+	}
+	client.putItem(PutItemRequest.builder().tableName("Delegations").item(car("lisbon", "car#9", "100")).build());
+	List<String> operations = new ArrayList<>();
+	Map<String, AttributeValue> startKey = null;
+	int pages = 0;
+	do {
+	  QueryResponse page = client.query(QueryRequest.builder()
+		  .tableName("Delegations")
+		  .keyConditionExpression("delegationId = :id AND begins_with(operation, :car)")
+		  .expressionAttributeValues(Map.of(":id", s("madrid"), ":car", s("car#")))
+		  .exclusiveStartKey(startKey)
+		  .limit(2)
+		  .build());
+	  page.items().forEach(item -> operations.add(item.get("operation").s()));
+	  startKey = page.hasLastEvaluatedKey() && !page.lastEvaluatedKey().isEmpty() ? page.lastEvaluatedKey() : null;
+	  pages++;
+	} while (startKey != null);
+	assertThat(operations).containsExactly("car#1", "car#2", "car#3", "car#4", "car#5");
+	assertThat(pages).isGreaterThanOrEqualTo(3);
+  }
+  
+  @Test
+  void appliesUpdateExpressions() {
+	client.putItem(PutItemRequest.builder().tableName("Delegations").item(car("madrid", "car#1", "100")).build());
+	client.updateItem(UpdateItemRequest.builder()
+		.tableName("Delegations")
+		.key(key("madrid", "car#1"))
+		.updateExpression("SET price = price + :d ADD bookings :one")
+		.expressionAttributeValues(Map.of(":d", n("20"), ":one", n("1")))
+		.build());
+	Map<String, AttributeValue> item = client.getItem(GetItemRequest.builder().tableName("Delegations").key(key("madrid", "car#1")).build()).item();
+	assertThat(item.get("price").n()).isEqualTo("120");
+	assertThat(item.get("bookings").n()).isEqualTo("1");
+  }
+  
+  @Test
+  void writesNothingWhenATransactionIsCancelled() {
+	client.putItem(PutItemRequest.builder().tableName("Delegations").item(car("madrid", "car#1", "100")).build());
+	TransactWriteItemsRequest transaction = TransactWriteItemsRequest.builder().transactItems(
+		TransactWriteItem.builder().put(Put.builder().tableName("Delegations").item(car("madrid", "car#2", "80")).build()).build(),
+		TransactWriteItem.builder().update(Update.builder()
+			.tableName("Delegations")
+			.key(key("madrid", "car#1"))
+			.updateExpression("SET price = :p")
+			.conditionExpression("price = :expected")
+			.expressionAttributeValues(Map.of(":p", n("90"), ":expected", n("50")))
+			.build()).build())
+		.build();
+	assertThatThrownBy(() -> client.transactWriteItems(transaction))
+		.isInstanceOfSatisfying(TransactionCanceledException.class, e -> assertThat(e.cancellationReasons())
+			.extracting(reason -> reason.code()).containsExactly("None", "ConditionalCheckFailed"));
+	assertThat(client.scan(ScanRequest.builder().tableName("Delegations").build()).items())
+		.singleElement().satisfies(item -> assertThat(item.get("price").n()).isEqualTo("100"));
+  }
+  
+  @Test
+  void cancelsATransactionOnAnItemAnotherTransactionHolds() throws Exception {
+	CountDownLatch holding = new CountDownLatch(1);
+	CountDownLatch release = new CountDownLatch(1);
+	// The first transaction stays in progress until released
+	InMemoryDynamoDbClient slow = new InMemoryDynamoDbClient(operation -> {
+	  if (operation.equals("TransactWriteItems") && holding.getCount() > 0) {
+		holding.countDown();
+		try {
+		  release.await();
+		} catch (InterruptedException e) {
+		  Thread.currentThread().interrupt();
+		}
+	  }
+	  return 0;
+	}, ThrottlingProfile.unlimited());
+	slow.createTable("Delegations", "delegationId", "operation");
+	slow.putItem(PutItemRequest.builder().tableName("Delegations").item(car("madrid", "car#1", "100")).build());
+	TransactWriteItemsRequest first = TransactWriteItemsRequest.builder().transactItems(
+		TransactWriteItem.builder().put(Put.builder().tableName("Delegations").item(car("madrid", "car#1", "90")).build()).build(),
+		TransactWriteItem.builder().put(Put.builder().tableName("Delegations").item(car("madrid", "car#2", "90")).build()).build())
+		.build();
+	TransactWriteItemsRequest second = TransactWriteItemsRequest.builder().transactItems(
+		TransactWriteItem.builder().put(Put.builder().tableName("Delegations").item(car("madrid", "car#3", "80")).build()).build(),
+		TransactWriteItem.builder().put(Put.builder().tableName("Delegations").item(car("madrid", "car#2", "80")).build()).build())
+		.build();
+	
+	ExecutorService executor = Executors.newSingleThreadExecutor();
+	try {
+	  Future<?> running = executor.submit(() -> slow.transactWriteItems(first));
+	  holding.await();
+	  
+	  assertThatThrownBy(() -> slow.transactWriteItems(second))
+		  .isInstanceOfSatisfying(TransactionCanceledException.class, e -> assertThat(e.cancellationReasons())
+			  .extracting(reason -> reason.code()).containsExactly("None", "TransactionConflict"));
+	  assertThatThrownBy(() -> slow.putItem(PutItemRequest.builder().tableName("Delegations").item(car("madrid", "car#1", "70")).build()))
+		  .isInstanceOf(TransactionConflictException.class);
+	  // Reads see the items as they were before the transaction
+	  assertThat(slow.getItem(GetItemRequest.builder().tableName("Delegations").key(key("madrid", "car#1")).build()).item().get("price").n())
+		  .isEqualTo("100");
+	  
+	  release.countDown();
+	  running.get();
+	} finally {
+	  release.countDown();
+	  executor.shutdown();
+	}
+	assertThat(slow.scan(ScanRequest.builder().tableName("Delegations").build()).items())
+		.extracting(item -> item.get("operation").s() + "=" + item.get("price").n())
+		.containsExactlyInAnyOrder("car#1=90", "car#2=90");
+	// Released items can be written again
+	slow.transactWriteItems(second);
+  }
+  
+  @Test
+  void throttlesOnceTheProvisionedCapacityIsSpent() {
+	InMemoryDynamoDbClient throttled = new InMemoryDynamoDbClient(LatencyProfile.none(), ThrottlingProfile.provisioned(1, 1, 1));
+	throttled.createTable("Delegations", "delegationId", "operation");
+	assertThatThrownBy(() -> {
+	  for (int i = 0; i < 10; i++) {
+		throttled.putItem(PutItemRequest.builder().tableName("Delegations").item(car("madrid", "car#" + i, "100")).build());
+	  }
+	}).isInstanceOf(ProvisionedThroughputExceededException.class);
+  }
+  
+  private static Map<String, AttributeValue> car(String delegationId, String operation, String price) {
+	return Map.of("delegationId", s(delegationId), "operation", s(operation), "price", n(price));
+  }
+  
+  private static Map<String, AttributeValue> key(String delegationId, String operation) {
+	return Map.of("delegationId", s(delegationId), "operation", s(operation));
+  }
+  
+  private static AttributeValue s(String value) {
+	return AttributeValue.builder().s(value).build();
+  }
+  
+  private static AttributeValue n(String value) {
+	return AttributeValue.builder().n(value).build();
+  }
+  
+}
@@ -0,0 +1,112 @@
+package com.pedro.apps.rebalancing;
+
+import com.pedro.apps.delegations.Car;
+import com.pedro.apps.delegations.CarCatalogueIndex;
+import com.pedro.apps.delegations.Delegation;
+import com.pedro.apps.delegations.DelegationDirectory;
+import com.pedro.apps.delegations.DelegationRepository;
+import com.pedro.apps.users.Booking;
+import com.pedro.apps.users.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class FleetRebalancingPlannerTest {
+  
+  private final UserRepository userRepository = mock(UserRepository.class);
+  private final DelegationDirectory directory = new DelegationDirectory(mock(DelegationRepository.class));
+  private final CarCatalogueIndex index = new CarCatalogueIndex(mock(DelegationRepository.class));
+  private final FleetRebalancingPlanner planner = new FleetRebalancingPlanner(userRepository, directory, index, 90, 0, 2, 0);
+  
+  @AfterEach
+  void stop() {
+	planner.stop();
+  }
+  
+  @Test
+  void countsCarsAlreadyOutAtTheStartOfTheRange() {
+	directory.load(List.of(delegation("madrid", 40.4f, -3.7f), delegation("toledo", 39.9f, -4.0f)));
+	fleets(Map.of("madrid", 1, "toledo", 3));
+	// Madrid's only car is out until the 2nd, and another customer picks one up there on the 1st
+	pages(List.of(booking("b1", "madrid", "2026-10-25", "2026-11-02")), List.of(booking("b2", "madrid", "2026-11-01", "2026-11-05")));
+	
+	RebalancingPlan plan = planner.plan("2026-11-01", "2026-11-10");
+	
+	assertThat(plan.getTransfers()).singleElement().satisfies(transfer -> {
+	  assertThat(transfer.getFromDelegationId()).isEqualTo("toledo");
+	  assertThat(transfer.getToDelegationId()).isEqualTo("madrid");
+	  assertThat(transfer.getCars()).isEqualTo(1);
+	});
+	assertThat(plan.getUnusedSurplus()).isEqualTo(2);
+  }
+  
+  @Test
+  void reusesThePlanOfARangeInsteadOfScanningAgain() {
+	FleetRebalancingPlanner caching = new FleetRebalancingPlanner(userRepository, directory, index, 90, 0, 2, 60);
+	directory.load(List.of(delegation("madrid", 40.4f, -3.7f), delegation("toledo", 39.9f, -4.0f)));
+	fleets(Map.of("madrid", 1, "toledo", 3));
+	pages(List.of(booking("b1", "madrid", "2026-11-01", "2026-11-05")));
+	try {
+	  RebalancingPlan first = caching.plan("2026-11-01", "2026-11-10");
+	  RebalancingPlan second = caching.plan("2026-11-01", "2026-11-10");
+	  
+	  assertThat(second).isSameAs(first);
+	  verify(userRepository, times(1)).scanBookingsOverlapping(eq("2026-11-01"), eq("2026-11-10"), any());
+	} finally {
+	  caching.stop();
+	}
+  }
+  
+  @SafeVarargs
+  private void pages(List<Booking>... pages) {
+	doAnswer(invocation -> {
+	  Consumer<List<Booking>> consumer = invocation.getArgument(2);
+	  for (List<Booking> page : pages) {
+		consumer.accept(page);
+	  }
+	  return null;
+	}).when(userRepository).scanBookingsOverlapping(eq("2026-11-01"), eq("2026-11-10"), any());
+  }
+  
+  private static Delegation delegation(String delegationId, float lat, float lon) {
+	return new Delegation(delegationId, "profile", delegationId, null, null, lat, lon, 0, null, null);
+  }
+  
+  private void fleets(Map<String, Integer> carsByDelegation) {
+	List<Car> cars = new ArrayList<>();
+	carsByDelegation.forEach((delegationId, count) -> {
+	  for (int i = 0; i < count; i++) {
+		Car car = new Car();
+		car.setDelegationId(delegationId);
+		car.setOperation("car" + i);
+		car.setCarId(delegationId + "-" + i);
+		cars.add(car);
+	  }
+	});
+	index.load(cars);
+  }
+  
+  private static Booking booking(String operation, String delegationId, String startDate, String endDate) {
+	Booking booking = new Booking();
+	booking.setUserId("user-1");
+	booking.setOperation("booking#" + operation);
+	booking.setStartDate(startDate);
+	booking.setEndDate(endDate);
+	booking.setStatusBooking("confirmed");
+	booking.setPickUpDelegation(delegation(delegationId, 0, 0));
+	return booking;
+  }
+  
+}
@@ -0,0 +1,156 @@
+package com.pedro.apps.rebalancing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransportSolverTest {
+  
+  private static final long INF = Long.MAX_VALUE / 4;
+  
+  @Test
+  void doesNotGreedilyTakeTheCheapestPair() {
+	// The cheapest pair (0 -> 0) leaves source 1 with only the expensive sink
+	long[][] flow = new TransportSolver(new long[]{1, 1}, new long[]{1, 1}, new long[][]{{1, 2}, {2, 100}}).solve();
+	assertThat(flow).isDeepEqualTo(new long[][]{{0, 1}, {1, 0}});
+  }
+  
+  @Test
+  void matchesANaiveSolverOnRandomInstances() {
+	Random random = new Random(1);
+	for (int t = 0; t < 300; t++) {
+	  int sources = 1 + random.nextInt(7);
+	  int sinks = 1 + random.nextInt(7);
+	  long[] supply = random.longs(sources, 0, 6).toArray();
+	  long[] demand = random.longs(sinks, 0, 6).toArray();
+	  long[][] cost = new long[sources][];
+	  for (int i = 0; i < sources; i++) {
+		cost[i] = random.longs(sinks, 0, 100).toArray();
+	  }
+	  checkAgainstNaive(supply, demand, cost, new TransportSolver(supply, demand, cost).solve());
+	}
+  }
+  
+  @Test
+  void matchesANaiveSolverAboveTheParallelThreshold() throws ExecutionException, InterruptedException {
+	Random random = new Random(2);
+	int size = 80;
+	long[] supply = random.longs(size, 0, 3).toArray();
+	long[] demand = random.longs(size, 0, 3).toArray();
+	double[][] from = new double[size][2];
+	double[][] to = new double[size][2];
+	for (int i = 0; i < size; i++) {
+	  from[i] = new double[]{random.nextDouble() * 1000, random.nextDouble() * 1000};
+	  to[i] = new double[]{random.nextDouble() * 1000, random.nextDouble() * 1000};
+	}
+	long[][] cost = new long[size][size];
+	for (int i = 0; i < size; i++) {
+	  for (int j = 0; j < size; j++) {
+		cost[i][j] = Math.round(1000 * Math.hypot(from[i][0] - to[j][0], from[i][1] - to[j][1]));
+	  }
+	}
+	ForkJoinPool pool = new ForkJoinPool(4);
+	try {
+	  checkAgainstNaive(supply, demand, cost, pool.submit(() -> new TransportSolver(supply, demand, cost).solve()).get());
+	} finally {
+	  pool.shutdown();
+	}
+  }
+  
+  private static void checkAgainstNaive(long[] supply, long[] demand, long[][] cost, long[][] flow) {
+	long[] sent = new long[supply.length];
+	long[] received = new long[demand.length];
+	long total = 0;
+	long moved = 0;
+	for (int i = 0; i < supply.length; i++) {
+	  for (int j = 0; j < demand.length; j++) {
+		assertThat(flow[i][j]).isNotNegative();
+		sent[i] += flow[i][j];
+		received[j] += flow[i][j];
+		moved += flow[i][j];
+		total += flow[i][j] * cost[i][j];
+	  }
+	}
+	for (int i = 0; i < supply.length; i++) {
+	  assertThat(sent[i]).isLessThanOrEqualTo(supply[i]);
+	}
+	for (int j = 0; j < demand.length; j++) {
+	  assertThat(received[j]).isLessThanOrEqualTo(demand[j]);
+	}
+	assertThat(moved).isEqualTo(Math.min(Arrays.stream(supply).sum(), Arrays.stream(demand).sum()));
+	assertThat(total).isEqualTo(naiveCost(supply, demand, cost));
+  }
+  
+  // Moves one unit at a time along the cheapest path of the residual graph, found with Bellman-Ford.
+  // Returns the total cost of the optimal flow.
+  private static long naiveCost(long[] supply, long[] demand, long[][] cost) {
+	int sources = supply.length;
+	int sinks = demand.length;
+	long[] supplyLeft = supply.clone();
+	long[] demandLeft = demand.clone();
+	long[][] flow = new long[sources][sinks];
+	long total = 0;
+	while (true) {
+	  long[] sourceDistance = new long[sources];
+	  long[] sinkDistance = new long[sinks];
+	  int[] sourceParent = new int[sources];
+	  int[] sinkParent = new int[sinks];
+	  Arrays.fill(sourceDistance, INF);
+	  Arrays.fill(sinkDistance, INF);
+	  for (int i = 0; i < sources; i++) {
+		if (supplyLeft[i] > 0) {
+		  sourceDistance[i] = 0;
+		  sourceParent[i] = -1;
+		}
+	  }
+	  boolean changed = true;
+	  while (changed) {
+		changed = false;
+		for (int i = 0; i < sources; i++) {
+		  for (int j = 0; j < sinks; j++) {
+			if (sourceDistance[i] < INF && sourceDistance[i] + cost[i][j] < sinkDistance[j]) {
+			  sinkDistance[j] = sourceDistance[i] + cost[i][j];
+			  sinkParent[j] = i;
+			  changed = true;
+			}
+			if (flow[i][j] > 0 && sinkDistance[j] < INF && sinkDistance[j] - cost[i][j] < sourceDistance[i]) {
+			  sourceDistance[i] = sinkDistance[j] - cost[i][j];
+			  sourceParent[i] = j;
+			  changed = true;
+			}
+		  }
+		}
+	  }
+	  int target = -1;
+	  for (int j = 0; j < sinks; j++) {
+		if (demandLeft[j] > 0 && sinkDistance[j] < INF && (target < 0 || sinkDistance[j] < sinkDistance[target])) {
+		  target = j;
+		}
+	  }
+	  if (target < 0) {
+		return total;
+	  }
+	  demandLeft[target]--;
+	  total += sinkDistance[target];
+	  int sink = target;
+	  int source = sinkParent[sink];
+	  while (true) {
+		flow[source][sink]++;
+		int previous = sourceParent[source];
+		if (previous < 0) {
+		  break;
+		}
+		flow[source][previous]--;
+		sink = previous;
+		source = sinkParent[sink];
+	  }
+	  supplyLeft[source]--;
+	}
+  }
+  
+}
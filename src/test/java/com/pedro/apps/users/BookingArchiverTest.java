@@ -0,0 +1,99 @@
+package com.pedro.apps.users;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pedro.apps.archive.FileSystemArchiveStore;
+import com.pedro.apps.config.HedgedReads;
+import com.pedro.apps.inmemory.InMemoryDynamoDbClient;
+import com.pedro.apps.inmemory.LatencyProfile;
+import com.pedro.apps.inmemory.ThrottlingProfile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BookingArchiverTest {
+  
+  private final InMemoryDynamoDbClient dynamoDbClient = new InMemoryDynamoDbClient(LatencyProfile.none(), ThrottlingProfile.unlimited());
+  private final UserRepositoryImpl users = new UserRepositoryImpl(
+	  DynamoDbEnhancedClient.builder().dynamoDbClient(dynamoDbClient).build(), dynamoDbClient, new HedgedReads(false, 20, 2, 0.1));
+  private final String longAgo = LocalDate.now().minusYears(2).toString();
+  @TempDir
+  Path directory;
+  private FileSystemArchiveStore store;
+  private BookingArchiver archiver;
+  
+  @BeforeEach
+  void createTable() {
+	dynamoDbClient.createTable("Users", "userId", "operation");
+	store = new FileSystemArchiveStore(directory.toString());
+	archiver = new BookingArchiver(users, store, new ObjectMapper(), 365, "completed,cancelled", 0, 30);
+  }
+  
+  @Test
+  void archivesOnlyFinishedBookingsPastTheRetention() {
+	users.save(booking("user1", "booking0001", longAgo, "completed", 100));
+	users.save(booking("user1", "booking0002", longAgo, "confirmed", 100));
+	users.save(booking("user1", "booking0003", LocalDate.now().toString(), "completed", 100));
+	users.save(booking("user2", "booking0001", longAgo, "cancelled", 100));
+	
+	assertThat(archiver.archiveOldBookings()).isEqualTo(2);
+	
+	assertThat(archiver.findArchivedBookings("user1")).extracting(Booking::getOperation).containsExactly("booking0001");
+	assertThat(archiver.findArchivedBookings("user2")).extracting(Booking::getOperation).containsExactly("booking0001");
+	assertThat(users.findBookingsByUserId("user1")).extracting(Booking::getOperation).containsExactly("booking0002", "booking0003");
+	assertThat(users.findBookingsByUserId("user2")).isEmpty();
+  }
+  
+  @Test
+  void archivesOnlyOnTheNodeHoldingTheLease() {
+	users.save(booking("user1", "booking0001", longAgo, "completed", 100));
+	assertThat(users.acquireLease("booking-archiver", "other-node", System.currentTimeMillis() + 60_000)).isTrue();
+	
+	assertThat(archiver.archiveOldBookings()).isZero();
+	assertThat(users.findBookingsByUserId("user1")).hasSize(1);
+	
+	users.releaseLease("booking-archiver", "other-node");
+	assertThat(archiver.archiveOldBookings()).isEqualTo(1);
+	// The run gave the lease up when it finished
+	assertThat(users.acquireLease("booking-archiver", "other-node", System.currentTimeMillis() + 60_000)).isTrue();
+  }
+  
+  @Test
+  void takesOverALeaseThatExpired() {
+	users.save(booking("user1", "booking0001", longAgo, "completed", 100));
+	users.acquireLease("booking-archiver", "crashed-node", System.currentTimeMillis() - 1);
+	
+	assertThat(archiver.archiveOldBookings()).isEqualTo(1);
+	assertThat(users.findBookingsByUserId("user1")).isEmpty();
+  }
+  
+  @Test
+  void keepsABookingModifiedAfterItWasRead() {
+	Booking read = booking("user1", "booking0001", longAgo, "completed", 100);
+	users.save(read);
+	users.save(booking("user1", "booking0001", longAgo, "completed", 120));
+	
+	assertThat(users.deleteBooking(read)).isFalse();
+	assertThat(users.findBookingsByUserId("user1")).extracting(Booking::getTotalToPayment).containsExactly(120.0);
+	assertThat(users.deleteBooking(users.findBookingsByUserId("user1").get(0))).isTrue();
+  }
+  
+  @Test
+  void refusesArchiveKeysOutsideTheArchiveDirectory() {
+	assertThatThrownBy(() -> store.put("archive/bookings/../../../escaped.wrcb.gz", new byte[1]))
+		.isInstanceOf(IllegalArgumentException.class);
+	assertThatThrownBy(() -> store.get("../escaped")).isInstanceOf(IllegalArgumentException.class);
+	assertThat(archiver.findArchivedBookings("..")).isEmpty();
+	assertThat(directory.getParent().resolve("escaped.wrcb.gz")).doesNotExist();
+  }
+  
+  private static Booking booking(String userId, String operation, String endDate, String status, double total) {
+	return new Booking(userId, operation, null, "ok", endDate, endDate, total, "paid", status, null, null);
+  }
+}
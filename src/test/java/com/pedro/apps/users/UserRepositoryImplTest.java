@@ -0,0 +1,136 @@
+package com.pedro.apps.users;
+
+import com.pedro.apps.changefeed.InMemoryChangeFeed;
+import com.pedro.apps.config.HedgedReads;
+import com.pedro.apps.delegations.Car;
+import com.pedro.apps.delegations.CarKeySharding;
+import com.pedro.apps.delegations.Delegation;
+import com.pedro.apps.delegations.DelegationRepositoryImpl;
+import com.pedro.apps.delegations.DelegationStats;
+import com.pedro.apps.inmemory.InMemoryDynamoDbClient;
+import com.pedro.apps.inmemory.LatencyProfile;
+import com.pedro.apps.inmemory.ThrottlingProfile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class UserRepositoryImplTest {
+  
+  private final InMemoryDynamoDbClient dynamoDbClient = new InMemoryDynamoDbClient(LatencyProfile.none(), ThrottlingProfile.unlimited());
+  private final DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder().dynamoDbClient(dynamoDbClient).build();
+  private final HedgedReads noHedging = new HedgedReads(false, 20, 2, 0.1);
+  private final UserRepositoryImpl users = new UserRepositoryImpl(enhancedClient, dynamoDbClient, noHedging);
+  private DelegationRepositoryImpl delegations;
+  
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void createTables() {
+	dynamoDbClient.createTable("Delegations", "delegationId", "operation");
+	dynamoDbClient.createTable("Users", "userId", "operation");
+	delegations = new DelegationRepositoryImpl(enhancedClient, dynamoDbClient, new CarKeySharding(""), noHedging, mock(ObjectProvider.class));
+  }
+  
+  @AfterEach
+  void stopRepository() {
+	delegations.stop();
+  }
+  
+  @Test
+  void countsALongBookingAndKeepsStatsOutOfTheDelegation() {
+	users.saveBooking(booking("2026-01-15", "2026-04-14", 900));
+	
+	List<DelegationStats> days = delegations.listDailyStats("MAD", "2026-01-01", "2026-04-30");
+	assertThat(days).hasSize(90);
+	assertThat(days.get(0).getOperation()).isEqualTo(DelegationStats.DAY_PREFIX + "2026-01-15");
+	assertThat(days.get(0).getPickUps()).isEqualTo(1);
+	assertThat(days.get(0).getRevenue()).isEqualTo(900);
+	assertThat(days).allSatisfy(day -> assertThat(day.getCarsRented()).isEqualTo(1));
+	assertThat(days.get(89).getReturns()).isEqualTo(1);
+	assertThat(delegations.listDailyStats("MAD", "2026-02-01", "2026-02-03")).extracting(DelegationStats::getOperation)
+		.containsExactly("day#2026-02-01", "day#2026-02-02", "day#2026-02-03");
+	
+	DelegationStats totals = delegations.getStats(List.of("MAD")).get(0);
+	assertThat(totals.getDelegationId()).isEqualTo("MAD");
+	assertThat(totals.getBookingCount()).isEqualTo(1);
+	assertThat(totals.getRentedDays()).isEqualTo(90);
+	// Nothing but the delegation's own items comes back from its partition or from a full listing
+	assertThat(delegations.listByPartitionKey("MAD", Delegation.class)).extracting(Delegation::getOperation).containsExactly("profile");
+	assertThat(delegations.listAllItems(Delegation.class)).extracting(Delegation::getOperation).containsExactly("profile");
+  }
+  
+  @Test
+  void movesTheDayCountersWhenABookingIsRescheduled() {
+	users.saveBooking(booking("2026-03-30", "2026-04-02", 100));
+	users.saveBooking(booking("2026-04-01", "2026-04-02", 100));
+	
+	assertThat(delegations.listDailyStats("MAD", "2026-03-01", "2026-04-30"))
+		.filteredOn(day -> day.getCarsRented() > 0)
+		.extracting(DelegationStats::getOperation)
+		.containsExactly("day#2026-04-01", "day#2026-04-02");
+	assertThat(delegations.getStats(List.of("MAD")).get(0).getRentedDays()).isEqualTo(2);
+  }
+  
+  @Test
+  void countsConcurrentBookingsOfOneDelegationWithoutFailingAny() throws Exception {
+	List<Booking> bookings = new ArrayList<>();
+	for (int i = 0; i < 200; i++) {
+	  Booking booking = booking("2026-05-01", "2026-05-03", 10);
+	  booking.setUserId("user" + i);
+	  bookings.add(booking);
+	}
+	
+	try (ExecutorService executor = Executors.newFixedThreadPool(16)) {
+	  List<Future<?>> saves = new ArrayList<>();
+	  bookings.forEach(booking -> saves.add(executor.submit(() -> users.saveBooking(booking))));
+	  for (Future<?> save : saves) {
+		save.get();
+	  }
+	}
+	
+	DelegationStats totals = delegations.getStats(List.of("MAD")).get(0);
+	assertThat(totals.getBookingCount()).isEqualTo(200);
+	assertThat(totals.getRevenue()).isEqualTo(2000);
+	assertThat(delegations.listDailyStats("MAD", "2026-05-01", "2026-05-03"))
+		.allSatisfy(day -> assertThat(day.getCarsRented()).isEqualTo(200));
+	// The counters are spread over several shard partitions
+	assertThat(dynamoDbClient.scan(r -> r.tableName("Delegations")).items())
+		.extracting(item -> item.get("delegationId").s())
+		.filteredOn(partition -> partition.startsWith(DelegationStats.PARTITION_PREFIX))
+		.hasSizeGreaterThan(2);
+  }
+  
+  @Test
+  void rejectsABookingTooLongForOneTransaction() {
+	Booking booking = booking("2026-01-01", LocalDate.parse("2026-01-01").plusYears(9).toString(), 100);
+	
+	assertThatThrownBy(() -> users.saveBooking(booking)).isInstanceOf(IllegalArgumentException.class);
+	assertThat(users.findBookingsByUserId("user1")).isEmpty();
+	assertThat(delegations.getStats(List.of("MAD"))).isEmpty();
+  }
+  
+  private Booking booking(String startDate, String endDate, double total) {
+	Delegation madrid = new Delegation();
+	madrid.setDelegationId("MAD");
+	madrid.setOperation("profile");
+	delegations.save(madrid);
+	Car car = new Car();
+	car.setDelegationId("MAD");
+	car.setOperation("car0001");
+	car.setBookingDates(Map.of());
+	return new Booking("user1", "booking0001", car, "confirmed", startDate, endDate, total, "paid", "confirmed", madrid, madrid);
+  }
+}
@@ -0,0 +1,141 @@
+package com.pedro.apps.users;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WriteBehindJournalTest {
+  
+  private static final int CAPACITY = 4096;
+  
+  @TempDir
+  Path dir;
+  
+  @Test
+  void replaysUndrainedEntriesAfterACrash() throws IOException {
+	Path file = dir.resolve("journal");
+	WriteBehindJournal journal = new WriteBehindJournal(file, CAPACITY, true);
+	long first = journal.append((byte) 'U', bytes("one"));
+	journal.append((byte) 'B', bytes("two"));
+	journal.append((byte) 'U', bytes("three"));
+	journal.markDrained(first);
+	// No close(): the process dies with the file still mapped
+	
+	List<WriteBehindJournal.Entry> replayed = new WriteBehindJournal(file, CAPACITY, true).readPending(10);
+	
+	assertThat(replayed).extracting(entry -> new String(entry.getPayload(), StandardCharsets.UTF_8)).containsExactly("two", "three");
+	assertThat(replayed).allMatch(WriteBehindJournal.Entry::isValid);
+	assertThat(replayed.get(0).getKind()).isEqualTo((byte) 'B');
+  }
+  
+  @Test
+  void flagsEntriesDamagedOnDisk() throws IOException {
+	Path file = dir.resolve("journal");
+	try (WriteBehindJournal journal = new WriteBehindJournal(file, CAPACITY, true)) {
+	  journal.append((byte) 'U', bytes("good"));
+	  journal.append((byte) 'U', bytes("torn"));
+	}
+	try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+	  long secondPayload = 32 + 9 + 4 + 9;
+	  raw.seek(secondPayload);
+	  raw.write('X');
+	}
+	
+	try (WriteBehindJournal journal = new WriteBehindJournal(file, CAPACITY, true)) {
+	  assertThat(journal.readPending(10)).extracting(WriteBehindJournal.Entry::isValid).containsExactly(true, false);
+	}
+  }
+  
+  @Test
+  void reusesDrainedSpaceAndRejectsEntriesThatDoNotFit() throws IOException {
+	try (WriteBehindJournal journal = new WriteBehindJournal(dir.resolve("journal"), 64, false)) {
+	  long end = journal.append((byte) 'U', new byte[20]);
+	  assertThat(journal.append((byte) 'U', new byte[20])).isEqualTo(-1);
+	  
+	  journal.markDrained(end);
+	  
+	  assertThat(journal.isEmpty()).isTrue();
+	  // The next entry wraps around the end of the file
+	  assertThat(journal.append((byte) 'U', bytes("twenty bytes of data"))).isEqualTo(end + 29);
+	  assertThat(journal.readPending(10)).singleElement().satisfies(entry -> {
+		assertThat(entry.isValid()).isTrue();
+		assertThat(new String(entry.getPayload(), StandardCharsets.UTF_8)).isEqualTo("twenty bytes of data");
+	  });
+	}
+  }
+  
+  @Test
+  void neverFillsUpWhileTheDrainKeepsUpWithoutEverCatchingUp() throws IOException {
+	Path file = dir.resolve("journal");
+	WriteBehindJournal journal = new WriteBehindJournal(file, CAPACITY, true);
+	int next = 0;
+	for (; next < 5; next++) {
+	  journal.append((byte) 'U', bytes("entry-" + next));
+	}
+	// Many times the capacity goes through the journal while the drain stays five entries behind
+	for (int round = 0; round < 2000; round++) {
+	  for (int i = 0; i < 3; i++) {
+		assertThat(journal.append((byte) 'U', bytes("entry-" + next++))).isPositive();
+	  }
+	  List<WriteBehindJournal.Entry> window = journal.readPending(3);
+	  assertThat(window).allMatch(WriteBehindJournal.Entry::isValid);
+	  journal.markDrained(window.get(window.size() - 1).getEndOffset());
+	  assertThat(journal.isEmpty()).isFalse();
+	}
+	
+	// A restart replays exactly the undrained tail, in order
+	List<WriteBehindJournal.Entry> replayed = new WriteBehindJournal(file, CAPACITY, true).readPending(Integer.MAX_VALUE);
+	assertThat(replayed).allMatch(WriteBehindJournal.Entry::isValid);
+	assertThat(replayed).extracting(entry -> new String(entry.getPayload(), StandardCharsets.UTF_8))
+		.containsExactly("entry-" + (next - 5), "entry-" + (next - 4), "entry-" + (next - 3), "entry-" + (next - 2), "entry-" + (next - 1));
+  }
+  
+  @Test
+  void refusesToStartWithAnotherCapacityWhileWritesAreUndrained() throws IOException {
+	Path file = dir.resolve("journal");
+	try (WriteBehindJournal journal = new WriteBehindJournal(file, CAPACITY, true)) {
+	  journal.append((byte) 'U', bytes("pending"));
+	}
+	
+	assertThatThrownBy(() -> new WriteBehindJournal(file, CAPACITY * 2, true))
+		.isInstanceOf(IOException.class)
+		.hasMessageContaining("undrained");
+	try (WriteBehindJournal journal = new WriteBehindJournal(file, CAPACITY, true)) {
+	  assertThat(journal.readPending(10)).hasSize(1);
+	}
+  }
+  
+  @Test
+  void acceptsANewCapacityOnceDrained() throws IOException {
+	Path file = dir.resolve("journal");
+	try (WriteBehindJournal journal = new WriteBehindJournal(file, CAPACITY, true)) {
+	  journal.markDrained(journal.append((byte) 'U', bytes("done")));
+	}
+	
+	try (WriteBehindJournal journal = new WriteBehindJournal(file, CAPACITY / 2, true)) {
+	  assertThat(journal.isEmpty()).isTrue();
+	}
+	assertThat(Files.size(file)).isEqualTo(CAPACITY / 2);
+  }
+  
+  @Test
+  void refusesAFileThatIsNotAJournal() throws IOException {
+	Path file = dir.resolve("journal");
+	Files.write(file, bytes("definitely not a journal header"));
+	
+	assertThatThrownBy(() -> new WriteBehindJournal(file, CAPACITY, true)).isInstanceOf(IOException.class);
+  }
+  
+  private static byte[] bytes(String value) {
+	return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
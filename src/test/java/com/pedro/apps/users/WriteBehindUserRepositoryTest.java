@@ -0,0 +1,88 @@
+package com.pedro.apps.users;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WriteBehindUserRepositoryTest {
+  
+  @TempDir
+  Path dir;
+  
+  private final UserRepositoryImpl delegate = mock(UserRepositoryImpl.class);
+  private WriteBehindUserRepository repository;
+  
+  @AfterEach
+  void tearDown() throws Exception {
+	if (repository != null) {
+	  repository.shutdown();
+	}
+  }
+  
+  @Test
+  void setsAsideUndecodableEntriesAndDrainsTheOnesBehindThem() throws Exception {
+	Path journalPath = dir.resolve("users.journal");
+	try (WriteBehindJournal journal = new WriteBehindJournal(journalPath, 1024 * 1024, true)) {
+	  journal.append((byte) 'U', "{not json".getBytes(StandardCharsets.UTF_8));
+	  journal.append((byte) 'U', new ObjectMapper().writeValueAsBytes(user("u1")));
+	}
+	when(delegate.saveBatch(eq(User.class), anyList())).thenReturn(List.of());
+	
+	repository = new WriteBehindUserRepository(delegate, new ObjectMapper(), journalPath.toString(), 1, true, 2, 5, 1000);
+	
+	verify(delegate, timeout(5000)).saveBatch(eq(User.class), anyList());
+	assertThat(Files.readString(dir.resolve("users.journal.rejected"))).startsWith("U ");
+  }
+  
+  @Test
+  void failsTheCallerInsteadOfWritingAroundAFullJournal() throws Exception {
+	// DynamoDB keeps throttling, so nothing drains
+	when(delegate.saveBatch(eq(User.class), anyList())).thenAnswer(invocation -> invocation.getArgument(1));
+	repository = new WriteBehindUserRepository(delegate, new ObjectMapper(), dir.resolve("users.journal").toString(), 1, true, 1, 5, 200);
+	
+	assertThatThrownBy(() -> {
+	  for (int i = 0; i < 100_000; i++) {
+		repository.save(user("user-" + i));
+	  }
+	}).isInstanceOf(IllegalStateException.class).hasMessageContaining("full");
+	verify(delegate, never()).save(any());
+  }
+  
+  @Test
+  void rejectsAnItemWithoutKeysBeforeJournalingIt() throws Exception {
+	Path journalPath = dir.resolve("users.journal");
+	repository = new WriteBehindUserRepository(delegate, new ObjectMapper(), journalPath.toString(), 1, true, 1, 5, 200);
+	
+	assertThatThrownBy(() -> repository.save(user(null))).isInstanceOf(IllegalArgumentException.class);
+	repository.shutdown();
+	repository = null;
+	
+	try (WriteBehindJournal journal = new WriteBehindJournal(journalPath, 1024 * 1024, true)) {
+	  assertThat(journal.isEmpty()).isTrue();
+	}
+  }
+  
+  private static User user(String userId) {
+	User user = new User();
+	user.setUserId(userId);
+	user.setOperation("profile");
+	return user;
+  }
+}